@@ -30,6 +30,7 @@ import com.thoughtworks.xstream.converters.DataHolder;
 import com.thoughtworks.xstream.converters.UnmarshallingContext;
 import com.thoughtworks.xstream.io.HierarchicalStreamDriver;
 import com.thoughtworks.xstream.io.HierarchicalStreamReader;
+import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.diagnosis.OldDataMonitor;
 import hudson.model.Descriptor;
 import hudson.util.AtomicFileWriter;
@@ -39,6 +40,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.Serializable;
 import java.io.StringWriter;
@@ -47,16 +49,21 @@ import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
 import java.util.Collections;
 import java.util.IdentityHashMap;
 import java.util.Map;
 import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 import javax.xml.XMLConstants;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParserFactory;
 import org.apache.commons.io.IOUtils;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
 import org.xml.sax.Attributes;
 import org.xml.sax.InputSource;
 import org.xml.sax.Locator;
@@ -123,6 +130,7 @@ public final class XmlFile {
     private final XStream xs;
     private final File file;
     private final boolean force;
+    private final boolean compress;
     private static final Map<Object, Void> beingWritten = Collections.synchronizedMap(new IdentityHashMap<>());
     private static final ThreadLocal<File> writing = new ThreadLocal<>();
 
@@ -141,9 +149,20 @@ public final class XmlFile {
      * @since 2.304
      */
     public XmlFile(XStream xs, File file, boolean force) {
+        this(xs, file, force, false);
+    }
+
+    /**
+     * @param compress Whether {@link #write} compresses the file with GZIP.
+     *     Files are read transparently whether they are compressed or not.
+     * @since TODO
+     */
+    @Restricted(NoExternalUse.class)
+    public XmlFile(XStream xs, File file, boolean force, boolean compress) {
         this.xs = xs;
         this.file = file;
         this.force = force;
+        this.compress = compress;
     }
 
     public File getFile() {
@@ -161,7 +180,7 @@ public final class XmlFile {
         if (LOGGER.isLoggable(Level.FINE)) {
             LOGGER.fine("Reading " + file);
         }
-        try (InputStream in = new BufferedInputStream(Files.newInputStream(file.toPath()))) {
+        try (InputStream in = open(file)) {
             return xs.fromXML(in);
         } catch (RuntimeException | Error e) {
             throw new IOException("Unable to read " + file, e);
@@ -188,7 +207,7 @@ public final class XmlFile {
     }
 
     private Object unmarshal(Object o, boolean nullOut) throws IOException {
-        try (InputStream in = new BufferedInputStream(Files.newInputStream(file.toPath()))) {
+        try (InputStream in = open(file)) {
             // TODO: expose XStream the driver from XStream
             if (nullOut) {
                 return ((XStream2) xs).unmarshal(DEFAULT_DRIVER.createReader(in), o, null, true);
@@ -206,18 +225,24 @@ public final class XmlFile {
         }
         mkdirs();
         AtomicFileWriter w = force
-                ? new AtomicFileWriter(file)
-                : new AtomicFileWriter(file.toPath(), StandardCharsets.UTF_8, false, false);
+                ? new AtomicFileWriter(Util.fileToPath(file), StandardCharsets.UTF_8)
+                : new AtomicFileWriter(Util.fileToPath(file), StandardCharsets.UTF_8, false, false);
         try {
-            w.write("<?xml version='1.1' encoding='UTF-8'?>\n");
+            GZIPOutputStream gz = compress ? new GZIPOutputStream(w.getOutputStream(), BUFFER_SIZE) : null;
+            Writer xml = compress ? new OutputStreamWriter(gz, StandardCharsets.UTF_8) : w;
+            xml.write("<?xml version='1.1' encoding='UTF-8'?>\n");
             beingWritten.put(o, null);
             writing.set(file);
             try {
-                xs.toXML(o, w);
+                xs.toXML(o, xml);
             } finally {
                 beingWritten.remove(o);
                 writing.set(null);
             }
+            if (gz != null) {
+                xml.flush();
+                gz.finish();
+            }
             w.commit();
         } catch (RuntimeException e) {
             throw new IOException(e);
@@ -226,6 +251,65 @@ public final class XmlFile {
         }
     }
 
+    /**
+     * Opens a file for reading, decompressing it if it was written {@linkplain #XmlFile(XStream, File, boolean, boolean) compressed}.
+     */
+    private static InputStream open(File file) throws IOException {
+        InputStream in = new BufferedInputStream(Files.newInputStream(file.toPath()), BUFFER_SIZE);
+        try {
+            if (isCompressed(in)) {
+                return new BufferedInputStream(new GZIPInputStream(in, BUFFER_SIZE), BUFFER_SIZE);
+            }
+        } catch (IOException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
+        return in;
+    }
+
+    /**
+     * Checks for the GZIP magic number, which no XML document can start with, leaving the stream where it was.
+     */
+    private static boolean isCompressed(InputStream in) throws IOException {
+        in.mark(2);
+        int b1 = in.read();
+        int b2 = in.read();
+        in.reset();
+        return b1 == (GZIPInputStream.GZIP_MAGIC & 0xFF) && b2 == (GZIPInputStream.GZIP_MAGIC >> 8);
+    }
+
+    /**
+     * Rewrites a file compressed or not, without parsing it.
+     *
+     * @return false if it already was in the requested format
+     * @since TODO
+     */
+    @Restricted(NoExternalUse.class)
+    public static boolean convert(@NonNull File file, boolean compress) throws IOException {
+        Path path = Util.fileToPath(file);
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(path), 2)) {
+            if (isCompressed(in) == compress) {
+                return false;
+            }
+        }
+        AtomicFileWriter w = new AtomicFileWriter(path, StandardCharsets.UTF_8);
+        try {
+            try (InputStream in = open(file)) {
+                if (compress) {
+                    GZIPOutputStream gz = new GZIPOutputStream(w.getOutputStream(), BUFFER_SIZE);
+                    in.transferTo(gz);
+                    gz.finish();
+                } else {
+                    in.transferTo(w.getOutputStream());
+                }
+            }
+            w.commit();
+        } finally {
+            w.abort();
+        }
+        return true;
+    }
+
     /**
      * Provides an XStream replacement for an object unless a call to {@link #write} is currently in progress.
      * As per JENKINS-45892 this may be used by any class which expects to be written at top level to an XML file
@@ -273,7 +357,7 @@ public final class XmlFile {
      */
     public Reader readRaw() throws IOException {
         try {
-            InputStream fileInputStream = Files.newInputStream(file.toPath());
+            InputStream fileInputStream = open(file);
             try {
                 return new InputStreamReader(fileInputStream, sniffEncoding());
             } catch (IOException ex) {
@@ -323,7 +407,7 @@ public final class XmlFile {
             }
         }
 
-        try (InputStream in = Files.newInputStream(file.toPath())) {
+        try (InputStream in = open(file)) {
             InputSource input = new InputSource(file.toURI().toASCIIString());
             input.setByteStream(in);
             SAXParserFactory spf = SAXParserFactory.newInstance();
@@ -382,6 +466,8 @@ public final class XmlFile {
 
     private static final Logger LOGGER = Logger.getLogger(XmlFile.class.getName());
 
+    private static final int BUFFER_SIZE = 8192;
+
     private static final HierarchicalStreamDriver DEFAULT_DRIVER = XStream2.getDefaultDriver();
 
     private static final XStream DEFAULT_XSTREAM = new XStream2(DEFAULT_DRIVER);
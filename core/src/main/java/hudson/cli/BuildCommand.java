@@ -31,6 +31,7 @@ import hudson.console.ModelHyperlinkNote;
 import hudson.model.Cause.UserIdCause;
 import hudson.model.CauseAction;
 import hudson.model.Item;
+import hudson.model.Items;
 import hudson.model.Job;
 import hudson.model.ParameterDefinition;
 import hudson.model.ParameterValue;
@@ -48,6 +49,7 @@ import java.io.PrintStream;
 import java.nio.file.NoSuchFileException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -74,6 +76,9 @@ public class BuildCommand extends CLICommand {
     @Argument(metaVar = "JOB", usage = "Name of the job to build", required = true)
     public Job<?, ?> job;
 
+    @Argument(index = 1, metaVar = "JOB", usage = "Names of further jobs to build at the same time", multiValued = true)
+    public List<String> moreJobs = new ArrayList<>();
+
     @Option(name = "-f", usage = "Follow the build progress. Like -s only interrupts are not passed through to the build.")
     public boolean follow = false;
 
@@ -99,6 +104,10 @@ public class BuildCommand extends CLICommand {
 
     @Override
     protected int run() throws Exception {
+        if (!moreJobs.isEmpty()) {
+            return buildAll();
+        }
+
         job.checkPermission(Item.BUILD);
 
         ParametersAction a = null;
@@ -154,15 +163,7 @@ public class BuildCommand extends CLICommand {
                 return 0;
         }
 
-        if (!job.isBuildable()) {
-            String msg = Messages.BuildCommand_CLICause_CannotBuildUnknownReasons(job.getFullDisplayName());
-            if (job instanceof ParameterizedJobMixIn.ParameterizedJob && ((ParameterizedJobMixIn.ParameterizedJob) job).isDisabled()) {
-                msg = Messages.BuildCommand_CLICause_CannotBuildDisabled(job.getFullDisplayName());
-            } else if (job.isHoldOffBuildUntilSave()) {
-                msg = Messages.BuildCommand_CLICause_CannotBuildConfigNotSaved(job.getFullDisplayName());
-            }
-            throw new IllegalStateException(msg);
-        }
+        checkBuildable(job);
 
         Queue.Item item = ParameterizedJobMixIn.scheduleBuild2(job, 0, new CauseAction(new CLICause(Jenkins.getAuthentication2().getName())), a);
         QueueTaskFuture<? extends Run<?, ?>> f = item != null ? (QueueTaskFuture) item.getFuture() : null;
@@ -219,6 +220,70 @@ public class BuildCommand extends CLICommand {
         return 0;
     }
 
+    private static void checkBuildable(Job<?, ?> job) {
+        if (!job.isBuildable()) {
+            String msg = Messages.BuildCommand_CLICause_CannotBuildUnknownReasons(job.getFullDisplayName());
+            if (job instanceof ParameterizedJobMixIn.ParameterizedJob && ((ParameterizedJobMixIn.ParameterizedJob) job).isDisabled()) {
+                msg = Messages.BuildCommand_CLICause_CannotBuildDisabled(job.getFullDisplayName());
+            } else if (job.isHoldOffBuildUntilSave()) {
+                msg = Messages.BuildCommand_CLICause_CannotBuildConfigNotSaved(job.getFullDisplayName());
+            }
+            throw new IllegalStateException(msg);
+        }
+    }
+
+    /**
+     * Schedules all the given jobs with a single {@link Queue#scheduleAll} call.
+     * Only the plain asynchronous scheduling is supported in that case.
+     */
+    private int buildAll() throws Exception {
+        if (follow || sync || wait || checkSCM || consoleOutput || !parameters.isEmpty()) {
+            throw new IllegalStateException("The -f, -s, -w, -c, -v and -p options can only be used when building a single job.");
+        }
+
+        boolean errorOccurred = false;
+        final Jenkins jenkins = Jenkins.get();
+
+        final LinkedHashSet<String> names = new LinkedHashSet<>();
+        names.add(job.getFullName());
+        names.addAll(moreJobs);
+
+        List<Job<?, ?>> jobs = new ArrayList<>();
+        for (String job_s : names) {
+            try {
+                Job<?, ?> j = jenkins.getItemByFullName(job_s, Job.class);
+                if (j == null) {
+                    Job<?, ?> nearest = Items.findNearest(Job.class, job_s, jenkins);
+                    throw new IllegalArgumentException(nearest == null ?
+                        "No such job \u2018" + job_s + "\u2019 exists." :
+                        String.format("No such job \u2018%s\u2019 exists. Perhaps you meant \u2018%s\u2019?",
+                                job_s, nearest.getFullName()));
+                }
+                j.checkPermission(Item.BUILD);
+                checkBuildable(j);
+                jobs.add(j);
+            } catch (Exception e) {
+                stderr.println(job_s + ": " + e.getMessage());
+                errorOccurred = true;
+            }
+        }
+
+        final String startedBy = Jenkins.getAuthentication2().getName();
+        List<Queue.Item> items = ParameterizedJobMixIn.scheduleBuilds(jobs, 0,
+                j -> List.of(new CauseAction(new CLICause(startedBy))));
+        for (int i = 0; i < items.size(); i++) {
+            if (items.get(i) == null) {
+                stderr.println(jobs.get(i).getFullName() + ": " + BUILD_SCHEDULING_REFUSED);
+                errorOccurred = true;
+            }
+        }
+
+        if (errorOccurred) {
+            throw new AbortException(CLI_LISTPARAM_SUMMARY_ERROR_TEXT);
+        }
+        return 0;
+    }
+
     @Override
     protected void printUsageSummary(PrintStream stderr) {
         stderr.println(
@@ -233,7 +298,9 @@ public class BuildCommand extends CLICommand {
             "however, unlike -s, interrupting the command will not interrupt\n" +
             "the job (exit code 125 indicates the command was interrupted).\n" +
             "With the -c option, a build will only run if there has been\n" +
-            "an SCM change."
+            "an SCM change.\n" +
+            "Several jobs can be given to schedule all of them at once,\n" +
+            "in which case none of the above options may be used."
         );
     }
 
@@ -24,13 +24,20 @@
 
 package hudson.console;
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.DescriptorExtensionList;
+import hudson.ExtensionListListener;
 import hudson.ExtensionPoint;
 import hudson.model.Descriptor;
 import jakarta.servlet.ServletException;
+import java.io.DataInputStream;
 import java.io.IOException;
 import java.net.URL;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import jenkins.model.Jenkins;
 import org.kohsuke.stapler.StaplerRequest2;
@@ -90,10 +97,76 @@ public abstract class ConsoleAnnotationDescriptor extends Descriptor<ConsoleNote
         rsp.serveFile(req, hasResource("/style.css"), TimeUnit.DAYS.toMillis(1));
     }
 
+    /**
+     * Reads back a note written by {@link ConsoleNote#writeCompact}.
+     *
+     * @param in the data written by the note
+     * @return null if the data is not understood
+     * @since TODO
+     */
+    protected @CheckForNull ConsoleNote<?> readCompact(@NonNull DataInputStream in) throws IOException {
+        return null;
+    }
+
     /**
      * Returns all the registered {@link ConsoleAnnotationDescriptor} descriptors.
      */
     public static DescriptorExtensionList<ConsoleNote<?>, ConsoleAnnotationDescriptor> all() {
         return (DescriptorExtensionList) Jenkins.get().getDescriptorList(ConsoleNote.class);
     }
+
+    /**
+     * Identifies a class of notes in the compact encoding.
+     * This is a hash of the class name, so that it is the same for every log and controller,
+     * and notes can be read from anywhere in a log.
+     */
+    static int compactId(@NonNull Class<?> c) {
+        return c.getName().hashCode();
+    }
+
+    /**
+     * Registered descriptors by {@link #compactId}, leaving out those whose ids collide.
+     */
+    private static volatile Dictionary dictionary;
+
+    /**
+     * The list last given a listener resetting {@link #dictionary}.
+     */
+    private static volatile DescriptorExtensionList<?, ?> listening;
+
+    private record Dictionary(DescriptorExtensionList<ConsoleNote<?>, ConsoleAnnotationDescriptor> list, Map<Integer, ConsoleAnnotationDescriptor> byId) {}
+
+    /**
+     * Finds the descriptor of the notes of a class in the compact encoding.
+     *
+     * @return null if there is none, or if it cannot be identified unambiguously
+     */
+    static @CheckForNull ConsoleAnnotationDescriptor byCompactId(int id) {
+        DescriptorExtensionList<ConsoleNote<?>, ConsoleAnnotationDescriptor> list = all();
+        Dictionary d = dictionary;
+        if (d == null || d.list != list) {
+            Map<Integer, ConsoleAnnotationDescriptor> byId = new HashMap<>();
+            Set<Integer> collisions = new HashSet<>();
+            for (ConsoleAnnotationDescriptor descriptor : list) {
+                int i = compactId(descriptor.clazz);
+                ConsoleAnnotationDescriptor other = byId.put(i, descriptor);
+                if (other != null && other.clazz != descriptor.clazz) {
+                    collisions.add(i);
+                }
+            }
+            byId.keySet().removeAll(collisions);
+            d = new Dictionary(list, byId);
+            if (listening != list) {
+                listening = list;
+                list.addListener(new ExtensionListListener() {
+                    @Override
+                    public void onChange() {
+                        dictionary = null;
+                    }
+                });
+            }
+            dictionary = d;
+        }
+        return d.byId.get(id);
+    }
 }
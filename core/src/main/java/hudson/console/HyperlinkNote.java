@@ -28,6 +28,8 @@ import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.Extension;
 import hudson.MarkupText;
 import hudson.Util;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.function.BiFunction;
 import java.util.logging.Level;
@@ -79,6 +81,17 @@ public class HyperlinkNote extends ConsoleNote {
         return "";
     }
 
+    @Override
+    protected boolean writeCompact(@NonNull DataOutputStream out) throws IOException {
+        // subclasses from plugins may have more state; long URLs may not fit writeUTF
+        if (getClass() != HyperlinkNote.class && getClass() != ModelHyperlinkNote.class || url.length() > 0x3FFF) {
+            return false;
+        }
+        out.writeUTF(url);
+        out.writeInt(length);
+        return true;
+    }
+
     public static String encodeTo(String url, String text) {
         return encodeTo(url, text, HyperlinkNote::new);
     }
@@ -106,6 +119,18 @@ public class HyperlinkNote extends ConsoleNote {
         public String getDisplayName() {
             return "Hyperlinks";
         }
+
+        @Override
+        protected ConsoleNote<?> readCompact(@NonNull DataInputStream in) throws IOException {
+            String url = in.readUTF();
+            int length = in.readInt();
+            if (clazz == HyperlinkNote.class) {
+                return new HyperlinkNote(url, length);
+            } else if (clazz == ModelHyperlinkNote.class) {
+                return new ModelHyperlinkNote(url, length);
+            }
+            return null;
+        }
     }
 
     private static final Logger LOGGER = Logger.getLogger(HyperlinkNote.class.getName());
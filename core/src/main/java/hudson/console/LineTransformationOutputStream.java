@@ -24,9 +24,10 @@
 
 package hudson.console;
 
-import hudson.util.ByteArrayOutputStream2;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Objects;
 
 /**
  * Filtering {@link OutputStream} that buffers text by line, so that the derived class
@@ -38,8 +39,21 @@ import java.io.OutputStream;
  * @since 1.349
  */
 public abstract class LineTransformationOutputStream extends OutputStream {
+    /**
+     * Lines up to this size are buffered without allocating memory once the buffer has grown to it.
+     */
+    private static final int RETAINED_BUFFER_SIZE = 4096;
+
     private boolean sawCR;
-    private ByteArrayOutputStream2 buf = new ByteArrayOutputStream2();
+    private byte[] buf = new byte[128];
+    /**
+     * Number of valid bytes in {@link #buf}.
+     */
+    private int size;
+    /**
+     * {@link #buf} while it is temporarily replaced by a larger array for a long line.
+     */
+    private byte[] retained;
 
     /**
      * Called for each end of the line.
@@ -52,12 +66,36 @@ public abstract class LineTransformationOutputStream extends OutputStream {
      */
     protected abstract void eol(byte[] b, int len) throws IOException;
 
+    /**
+     * Called for each end of the line, possibly with the array given to {@link #write(byte[], int, int)}
+     * when it contains the whole line, so that lines are neither copied nor buffered.
+     * Override this rather than {@link #eol(byte[], int)}, which should then call this with an offset of 0,
+     * to benefit from this. The array must then neither be modified nor kept.
+     *
+     * <p>
+     * By default, the line is copied to a buffer and passed to {@link #eol(byte[], int)}.
+     *
+     * @param b an array containing the whole line, including the EOL code like CR/LF
+     * @param off the offset of the line in {@code b}
+     * @param len the length of the line
+     * @since TODO
+     */
+    protected void eol(byte[] b, int off, int len) throws IOException {
+        if (b != buf) {
+            append(b, off, off + len);
+        }
+        eol(buf, size);
+    }
+
     @Override
     public void write(int b) throws IOException {
         if (sawCR && b != '\n') {
             eol();
         }
-        buf.write(b);
+        if (size == buf.length) {
+            grow(size + 1);
+        }
+        buf[size++] = (byte) b;
         if (b == '\n') {
             eol();
         } else if (b == '\r') {
@@ -66,22 +104,83 @@ public abstract class LineTransformationOutputStream extends OutputStream {
     }
 
     private void eol() throws IOException {
-        eol(buf.getBuffer(), buf.size());
+        try {
+            eol(buf, 0, size);
+        } finally {
+            reset();
+        }
+    }
 
-        // reuse the buffer under normal circumstances, but don't let the line buffer grow unbounded
-        if (buf.size() > 4096)
-            buf = new ByteArrayOutputStream2();
-        else
-            buf.reset();
+    /**
+     * Empties the buffer, which may not grow unbounded.
+     */
+    private void reset() {
+        size = 0;
         sawCR = false;
+        if (retained != null) {
+            buf = retained;
+            retained = null;
+        }
+    }
+
+    /**
+     * Processes a line ending in an array given to {@link #write(byte[], int, int)}.
+     *
+     * @param from the start of the rest of the line in {@code b}
+     * @param to the end of the line in {@code b}
+     */
+    private void line(byte[] b, int from, int to) throws IOException {
+        if (size == 0) {
+            try {
+                eol(b, from, to - from);
+            } finally {
+                // the default implementation buffers the line
+                reset();
+            }
+        } else {
+            append(b, from, to);
+            eol();
+        }
+    }
+
+    private void append(byte[] b, int from, int to) {
+        int len = to - from;
+        if (size + len > buf.length) {
+            grow(size + len);
+        }
+        System.arraycopy(b, from, buf, size, len);
+        size += len;
+    }
+
+    private void grow(int minCapacity) {
+        int capacity = Math.max(minCapacity, buf.length * 2);
+        if (capacity > RETAINED_BUFFER_SIZE && retained == null) {
+            // keep the buffer of regular lines for the next line
+            retained = buf;
+        }
+        buf = Arrays.copyOf(buf, capacity);
     }
 
     @Override
     public void write(byte[] b, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, b.length);
         int end = off + len;
-
-        for (int i = off; i < end; i++)
-            write(b[i]);
+        // start of the bytes of b which were not processed yet
+        int start = off;
+        for (int i = off; i < end; i++) {
+            byte c = b[i];
+            if (sawCR && c != '\n') {
+                line(b, start, i);
+                start = i;
+            }
+            if (c == '\n') {
+                line(b, start, i + 1);
+                start = i + 1;
+            } else if (c == '\r') {
+                sawCR = true;
+            }
+        }
+        append(b, start, end);
     }
 
     @Override
@@ -96,7 +195,7 @@ public abstract class LineTransformationOutputStream extends OutputStream {
      * actually neither flushing nor closing the stream.
      */
     public void forceEol() throws IOException {
-        if (buf.size() > 0) {
+        if (size > 0) {
             /*
                 because LargeText cuts output at the line end boundary, this is
                 possible only for the very end of the console output, if the output ends without NL.
@@ -24,8 +24,6 @@
 
 package hudson.console;
 
-import java.io.ByteArrayInputStream;
-import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.charset.Charset;
@@ -54,11 +52,17 @@ public class PlainTextConsoleOutputStream extends LineTransformationOutputStream
      */
     @Override
     protected void eol(byte[] in, int sz) throws IOException {
+        eol(in, 0, sz);
+    }
+
+    @Override
+    protected void eol(byte[] in, int off, int len) throws IOException {
+        int sz = off + len;
 
-        int next = ConsoleNote.findPreamble(in, 0, sz);
+        int next = ConsoleNote.findPreamble(in, off, len);
 
         // perform byte[]->char[] while figuring out the char positions of the BLOBs
-        int written = 0;
+        int written = off;
         while (next >= 0) {
             if (next > written) {
                 out.write(in, written, next - written);
@@ -67,18 +71,14 @@ public class PlainTextConsoleOutputStream extends LineTransformationOutputStream
                 assert next == written;
             }
 
-            int rest = sz - next;
-            ByteArrayInputStream b = new ByteArrayInputStream(in, next, rest);
-
-            try {
-                ConsoleNote.skip(new DataInputStream(b));
-            } catch (IOException x) {
-                LOGGER.log(Level.FINE, "Failed to skip annotation from \"" + SourceCodeEscapers.javaCharEscaper().escape(new String(in, next, rest, Charset.defaultCharset())) + "\"", x);
+            int end = ConsoleNote.findPostamble(in, next, sz - next);
+            if (end == -1) {
+                if (LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.fine("Failed to skip annotation from \"" + SourceCodeEscapers.javaCharEscaper().escape(new String(in, next, sz - next, Charset.defaultCharset())) + "\"");
+                }
+                end = sz;
             }
-
-            int bytesUsed = rest - b.available(); // bytes consumed by annotations
-            written += bytesUsed;
-
+            written = end;
 
             next = ConsoleNote.findPreamble(in, written, sz - written);
         }
@@ -898,6 +898,10 @@ public /*transient*/ abstract class Computer extends Actionable implements Acces
             if (executors.size() < numExecutors) {
                 Executor e = new Executor(this, number);
                 executors.add(e);
+                Jenkins jenkins = Jenkins.getInstanceOrNull();
+                if (jenkins != null) {
+                    jenkins.getQueue().onExecutorParked(e);
+                }
             }
         }
 
@@ -1063,6 +1067,10 @@ public /*transient*/ abstract class Computer extends Actionable implements Acces
             synchronized (Computer.this) {
                 executors.remove(e);
                 oneOffExecutors.remove(e);
+                Jenkins jenkins = Jenkins.getInstanceOrNull();
+                if (jenkins != null) {
+                    jenkins.getQueue().onExecutorRemoved(e);
+                }
                 addNewExecutorIfNecessary();
                 if (!isAlive()) {
                     AbstractCIBase ciBase = Jenkins.getInstanceOrNull();
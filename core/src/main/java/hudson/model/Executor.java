@@ -53,6 +53,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Vector;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -67,6 +68,7 @@ import jenkins.model.Jenkins;
 import jenkins.model.queue.AsynchronousExecution;
 import jenkins.security.QueueItemAuthenticatorConfiguration;
 import jenkins.security.QueueItemAuthenticatorDescriptor;
+import jenkins.util.SystemProperties;
 import net.jcip.annotations.GuardedBy;
 import org.kohsuke.accmod.Restricted;
 import org.kohsuke.accmod.restrictions.DoNotUse;
@@ -134,6 +136,12 @@ public class Executor extends Thread implements ModelObject, IExecutor {
     @GuardedBy("lock")
     private boolean started;
 
+    /**
+     * When running on a virtual thread (see {@link #VIRTUAL_THREADS}), that thread.
+     * This {@link Thread} object itself is then never started, so thread operations are redirected to it.
+     */
+    private volatile Thread virtualThread;
+
     /**
      * When the executor is interrupted, we allow the code that interrupted the thread to override the
      * result code it prefers.
@@ -156,7 +164,7 @@ public class Executor extends Thread implements ModelObject, IExecutor {
 
     @Override
     public void interrupt() {
-        if (Thread.currentThread() == this) {
+        if (Thread.currentThread() == this || Thread.currentThread() == virtualThread) {
             // If you catch an InterruptedException the "correct" options are limited to one of two choices:
             //   1. Propagate the exception;
             //   2. Restore the Thread.currentThread().interrupted() flag
@@ -180,7 +188,7 @@ public class Executor extends Thread implements ModelObject, IExecutor {
             // incorrect, then the Run.execute's catch (InterruptedException) block will either set the result
             // or have been escaped - in which case the result of the run has been sealed anyway so it does not
             // matter.
-            super.interrupt();
+            interruptThread();
         } else {
             interrupt(Result.ABORTED);
         }
@@ -239,13 +247,31 @@ public class Executor extends Thread implements ModelObject, IExecutor {
             if (asynchronousExecution != null) {
                 asynchronousExecution.interrupt(forShutdown);
             } else {
-                super.interrupt();
+                interruptThread();
             }
         } finally {
             lock.writeLock().unlock();
         }
     }
 
+    private void interruptThread() {
+        Thread t = virtualThread;
+        if (t != null) {
+            t.interrupt();
+        } else {
+            super.interrupt();
+        }
+    }
+
+    /**
+     * Also reflects the interrupted status of the virtual thread running this executor, if any.
+     */
+    @Override
+    public boolean isInterrupted() {
+        Thread t = virtualThread;
+        return t != null ? t.isInterrupted() : super.isInterrupted();
+    }
+
     public Result abortResult() {
         // this method is almost always called as a result of the current thread being interrupted
         // as a result we need to clean the interrupt flag so that the lock's lock method doesn't
@@ -431,6 +457,10 @@ public class Executor extends Thread implements ModelObject, IExecutor {
                 }
 
                 setName(getName() + " : executing " + executable);
+                Thread t = virtualThread;
+                if (t != null) {
+                    t.setName(getName());
+                }
                 Authentication auth = workUnit.context.item.authenticate2();
                 LOGGER.log(FINE, "{0} is now executing {1} as {2}", new Object[] {getName(), executable, auth});
                 if (LOGGER.isLoggable(FINE) && auth.equals(ACL.SYSTEM2)) { // i.e., unspecified
@@ -508,7 +538,7 @@ public class Executor extends Thread implements ModelObject, IExecutor {
             owner.remove((OneOffExecutor) this);
         }
         executableEstimatedDuration = DEFAULT_ESTIMATED_DURATION;
-        queue.scheduleMaintenance();
+        queue.onExecutorFinished(getCurrentWorkUnit());
     }
 
     @Restricted(NoExternalUse.class)
@@ -638,7 +668,8 @@ public class Executor extends Thread implements ModelObject, IExecutor {
     public boolean isActive() {
         lock.readLock().lock();
         try {
-            return !started || asynchronousExecution != null || isAlive();
+            Thread t = virtualThread;
+            return !started || asynchronousExecution != null || (t != null ? t.isAlive() : isAlive());
         } finally {
             lock.readLock().unlock();
         }
@@ -802,7 +833,23 @@ public class Executor extends Thread implements ModelObject, IExecutor {
         lock.writeLock().lock();
         try {
             this.workUnit = task;
-            super.start();
+            ThreadFactory virtualThreads = VIRTUAL_THREADS ? VirtualThreads.FACTORY : null;
+            if (virtualThreads != null) {
+                Thread t = virtualThreads.newThread(() -> {
+                    // so that currentExecutor() works
+                    IMPERSONATION.set(this);
+                    try {
+                        run();
+                    } finally {
+                        IMPERSONATION.remove();
+                    }
+                });
+                t.setName(getName());
+                virtualThread = t;
+                t.start();
+            } else {
+                super.start();
+            }
             started = true;
         } finally {
             lock.writeLock().unlock();
@@ -935,6 +982,7 @@ public class Executor extends Thread implements ModelObject, IExecutor {
 
     /**
      * Returns the executor of the current thread or null if current thread is not an executor.
+     * This also works for executors running on virtual threads.
      */
     public static @CheckForNull Executor currentExecutor() {
         Thread t = Thread.currentThread();
@@ -979,5 +1027,31 @@ public class Executor extends Thread implements ModelObject, IExecutor {
      */
     private static final ThreadLocal<Executor> IMPERSONATION = new ThreadLocal<>();
 
+    /**
+     * When enabled, executors run their work on virtual threads rather than each starting its own platform thread,
+     * provided the Java runtime supports them (Java 21 or newer).
+     * The {@link Executor} objects, their interruption and {@link #currentExecutor()} behave the same,
+     * but code checking whether {@link Thread#currentThread()} is an {@link Executor} will not find it.
+     */
+    @Restricted(NoExternalUse.class)
+    public static /* Script Console modifiable */ boolean VIRTUAL_THREADS = SystemProperties.getBoolean(Executor.class.getName() + ".virtualThreads");
+
+    /**
+     * Looked up reflectively, as virtual threads are not available on all supported Java versions.
+     */
+    private static final class VirtualThreads {
+        static final ThreadFactory FACTORY = create();
+
+        private static @CheckForNull ThreadFactory create() {
+            try {
+                Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+                return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                LOGGER.log(WARNING, "Virtual threads are not available, executors will keep using platform threads", e);
+                return null;
+            }
+        }
+    }
+
     private static final Logger LOGGER = Logger.getLogger(Executor.class.getName());
 }
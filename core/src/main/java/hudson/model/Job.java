@@ -98,6 +98,9 @@ import jenkins.model.ModelObjectWithChildren;
 import jenkins.model.PeepholePermalink;
 import jenkins.model.ProjectNamingStrategy;
 import jenkins.model.RunIdMigrator;
+import jenkins.model.lazy.BuildNumberCache;
+import jenkins.model.lazy.BuildStatistics;
+import jenkins.model.lazy.BuildSummaryIndex;
 import jenkins.model.lazy.LazyBuildMixIn;
 import jenkins.scm.RunWithSCM;
 import jenkins.security.HexStringConfidentialKey;
@@ -723,6 +726,7 @@ public abstract class Job<JobT extends Job<JobT, RunT>, RunT extends Run<JobT, R
     @Override public void delete() throws IOException, InterruptedException {
         super.delete();
         Util.deleteRecursive(getBuildDir());
+        BuildNumberCache.delete(getBuildDir());
     }
 
     @Restricted(NoExternalUse.class)
@@ -773,7 +777,27 @@ public abstract class Job<JobT extends Job<JobT, RunT>, RunT extends Run<JobT, R
     @Exported(name = "allBuilds", visibility = -2)
     @WithBridgeMethods(List.class)
     public RunList<RunT> getBuilds() {
-        return RunList.fromRuns(_getRuns().values());
+        SortedMap<Integer, ? extends RunT> runs = _getRuns();
+        BuildSummaryIndex summaries = getBuildSummaryIndex(runs);
+        if (summaries != null) {
+            return RunList.fromRuns(runs.values(), summaries);
+        }
+        return RunList.fromRuns(runs.values());
+    }
+
+    /**
+     * Gets the summaries of the builds, if {@link #_getRuns} keeps them.
+     */
+    @Restricted(NoExternalUse.class)
+    public @CheckForNull BuildSummaryIndex getBuildSummaryIndex() {
+        return getBuildSummaryIndex(_getRuns());
+    }
+
+    private static @CheckForNull BuildSummaryIndex getBuildSummaryIndex(SortedMap<Integer, ?> runs) {
+        if (BuildSummaryIndex.ENABLED && runs instanceof RunMap<?> runMap && runMap.baseDirInitialized()) {
+            return runMap.getSummaryIndex();
+        }
+        return null;
     }
 
     /**
@@ -1080,6 +1104,13 @@ public abstract class Job<JobT extends Job<JobT, RunT>, RunT extends Run<JobT, R
         return r.getBuildsOverThreshold(numberOfBuilds, threshold);
     }
 
+    private static final ClassValue<Boolean> CUSTOM_ESTIMATED_DURATION_CANDIDATES = new ClassValue<>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            return Util.isOverridden(Job.class, type, "getEstimatedDurationCandidates");
+        }
+    };
+
     /**
      * Returns candidate build for calculating the estimated duration of the current run.
      *
@@ -1125,8 +1156,16 @@ public abstract class Job<JobT extends Job<JobT, RunT>, RunT extends Run<JobT, R
     }
 
     public long getEstimatedDuration() {
-        List<RunT> builds = getEstimatedDurationCandidates();
+        // the statistics know about the last builds without loading any, but only pick them as the default candidates do
+        BuildSummaryIndex summaries = getBuildSummaryIndex();
+        if (summaries != null && !CUSTOM_ESTIMATED_DURATION_CANDIDATES.get(getClass())) {
+            long estimate = summaries.getStatistics().getEstimatedDuration();
+            if (estimate != -1) {
+                return estimate;
+            }
+        }
 
+        List<RunT> builds = getEstimatedDurationCandidates();
         if (builds.isEmpty())     return -1;
 
         long totalDuration = 0;
@@ -1347,6 +1386,11 @@ public abstract class Job<JobT extends Job<JobT, RunT>, RunT extends Run<JobT, R
         // we can give a simple view of build health from the last five builds
         int failCount = 0;
         int totalCount = 0;
+        BuildSummaryIndex summaries = getBuildSummaryIndex();
+        BuildStatistics.Stability stability = summaries != null ? summaries.getStatistics().getStability(5) : null;
+        if (stability != null) {
+            return getBuildStabilityHealthReport(stability.total(), stability.failed());
+        }
         RunT i = getLastBuild();
         RunT u = getLastFailedBuild();
         if (i != null && u == null) {
@@ -1386,6 +1430,10 @@ public abstract class Job<JobT extends Job<JobT, RunT>, RunT extends Run<JobT, R
             }
             i = i.getPreviousBuild();
         }
+        return getBuildStabilityHealthReport(totalCount, failCount);
+    }
+
+    private static HealthReport getBuildStabilityHealthReport(int totalCount, int failCount) {
         if (totalCount > 0) {
             int score = (int) ((100.0 * (totalCount - failCount)) / totalCount);
 
@@ -59,10 +59,13 @@ import hudson.model.queue.FoldableAction;
 import hudson.model.queue.FutureImpl;
 import hudson.model.queue.MappingWorksheet;
 import hudson.model.queue.MappingWorksheet.Mapping;
+import hudson.model.queue.QueueMaintenanceMetrics;
 import hudson.model.queue.QueueListener;
 import hudson.model.queue.QueueSorter;
 import hudson.model.queue.QueueTaskDispatcher;
+import hudson.model.queue.QueueTaskDispatcherTimings;
 import hudson.model.queue.QueueTaskFuture;
+import hudson.model.queue.ScheduleRequest;
 import hudson.model.queue.ScheduleResult;
 import hudson.model.queue.ScheduleResult.Created;
 import hudson.model.queue.SubTask;
@@ -70,6 +73,7 @@ import hudson.model.queue.Tasks;
 import hudson.model.queue.WorkUnit;
 import hudson.model.queue.WorkUnitContext;
 import hudson.security.ACL;
+import hudson.security.ACLContext;
 import hudson.security.AccessControlled;
 import hudson.security.Permission;
 import hudson.triggers.SafeTimerTask;
@@ -85,23 +89,31 @@ import java.nio.channels.ClosedByInterruptException;
 import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
 import java.nio.file.StandardCopyOption;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Objects;
+import java.util.RandomAccess;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
@@ -188,6 +200,12 @@ public class Queue extends ResourceController implements Saveable {
      */
     private final Set<WaitingItem> waitingList = new TreeSet<>();
 
+    /**
+     * {@link #waitingList} indexed by {@link Task}, so that finding the items of a task does not need to scan it.
+     */
+    @GuardedBy("lock")
+    private final Map<Task, List<WaitingItem>> waitingListByTask = new HashMap<>();
+
     /**
      * {@link Task}s that can be built immediately
      * but blocked because another build is in progress,
@@ -210,7 +228,27 @@ public class Queue extends ResourceController implements Saveable {
      */
     private final ItemList<BuildableItem> pendings = new ItemList<>();
 
-    private transient volatile Snapshot snapshot = new Snapshot(waitingList, blockedProjects, buildables, pendings);
+    /**
+     * Incremented each time a new {@link #snapshot} is published.
+     */
+    @GuardedBy("lock")
+    private transient long snapshotVersion;
+
+    /**
+     * Incremented each time an item enters, leaves or moves within {@link #waitingList}, {@link #blockedProjects},
+     * {@link #buildables} or {@link #pendings}, so that {@link #updateSnapshot} only publishes a new snapshot when
+     * they changed.
+     */
+    @GuardedBy("lock")
+    private transient long modifications;
+
+    /**
+     * Value of {@link #modifications} when the current {@link #snapshot} was made.
+     */
+    @GuardedBy("lock")
+    private transient long snapshotModifications;
+
+    private transient volatile Snapshot snapshot = new Snapshot(0, waitingList, blockedProjects, buildables, pendings);
 
     /**
      * Items that left queue would stay here for a while to enable tracking via {@link Item#getId()}.
@@ -276,13 +314,17 @@ public class Queue extends ResourceController implements Saveable {
             if (reason != null) {
                 return reason;
             }
+            QueueTaskDispatcherTimings timings = Jenkins.get().getQueue().dispatcherTimings;
             for (QueueTaskDispatcher d : QueueTaskDispatcher.all()) {
+                long start = System.nanoTime();
                 try {
                     reason = d.canTake(node, item);
                 } catch (Throwable t) {
                     // We cannot guarantee the task can be taken by the node because something wrong happened
                     LOGGER.log(Level.WARNING, t, () -> String.format("Exception evaluating if the node '%s' can take the task '%s'", node.getNodeName(), item.task.getName()));
                     reason = CauseOfBlockage.fromMessage(Messages._Queue_ExceptionCanTake());
+                } finally {
+                    timings.record(d, "canTake", start);
                 }
 
                 if (reason != null) {
@@ -325,6 +367,12 @@ public class Queue extends ResourceController implements Saveable {
         }
     }
 
+    /**
+     * Created on demand when {@link #JOURNAL} is enabled.
+     */
+    @GuardedBy("lock")
+    private transient QueueJournal journal;
+
     private transient volatile LoadBalancer loadBalancer;
 
     private transient volatile QueueSorter sorter;
@@ -332,7 +380,7 @@ public class Queue extends ResourceController implements Saveable {
     private final transient AtmostOneTaskExecutor<Void> maintainerThread = new AtmostOneTaskExecutor<>(new Callable<>() {
         @Override
         public Void call() throws Exception {
-            maintain();
+            maintain(drainMaintenanceRequest());
             return null;
         }
 
@@ -346,6 +394,38 @@ public class Queue extends ResourceController implements Saveable {
 
     private final transient Condition condition = lock.newCondition();
 
+    /**
+     * {@link Executor}s known to be parked, kept up to date by {@link Computer} as executors get created and removed,
+     * so that an incremental {@link #maintain()} pass does not need to walk every {@link Computer}.
+     * Resynchronized on every full pass.
+     */
+    private final transient Set<Executor> parkedExecutors = ConcurrentHashMap.newKeySet();
+
+    /**
+     * One-shot maintenance scheduled for when the quiet period of the first {@link WaitingItem} expires,
+     * so that waiting items are promoted on time without polling the {@link #waitingList}.
+     */
+    @GuardedBy("lock")
+    private transient Future<?> wakeUp;
+
+    /**
+     * The time at which {@link #wakeUp} fires, in milliseconds since the epoch.
+     */
+    @GuardedBy("lock")
+    private transient long wakeUpTime;
+
+    private final transient QueueTaskDispatcherTimings dispatcherTimings = new QueueTaskDispatcherTimings();
+
+    private final transient QueueMaintenanceMetrics maintenanceMetrics = new QueueMaintenanceMetrics(dispatcherTimings);
+
+    private final transient Object maintenanceRequestLock = new Object();
+
+    /**
+     * Changes accumulated since the maintainer thread last picked up work.
+     */
+    @GuardedBy("maintenanceRequestLock")
+    private transient MaintenanceRequest maintenanceRequest = new MaintenanceRequest();
+
     public Queue(@NonNull LoadBalancer loadBalancer) {
         this.loadBalancer =  loadBalancer.sanitize();
         // if all the executors are busy doing something, then the queue won't be maintained in
@@ -396,6 +476,8 @@ public class Queue extends ResourceController implements Saveable {
         try { try {
             // Clear items, for the benefit of reloading.
             waitingList.clear();
+            modifications++;
+            waitingListByTask.clear();
             blockedProjects.clear();
             buildables.clear();
             pendings.clear();
@@ -449,6 +531,11 @@ public class Queue extends ResourceController implements Saveable {
                 File bk = new File(queueFile.getPath() + ".bak");
                 Files.move(queueFile.toPath(), bk.toPath(), StandardCopyOption.REPLACE_EXISTING);
             }
+
+            QueueJournal journal = getJournal();
+            if (journal != null) {
+                replay(journal);
+            }
         } catch (IOException | InvalidPathException e) {
             LOGGER.log(Level.WARNING, "Failed to load the queue file " + getXMLQueueFile(), e);
         } finally { updateSnapshot(); } } finally {
@@ -456,6 +543,96 @@ public class Queue extends ResourceController implements Saveable {
         }
     }
 
+    /**
+     * Applies the changes recorded in the journal on top of the items loaded from {@code queue.xml},
+     * then writes the result back so that the journal can start afresh.
+     */
+    @GuardedBy("lock")
+    private void replay(QueueJournal journal) {
+        Map<Long, Item> byId = new HashMap<>();
+        for (Item item : liveGetItems()) {
+            byId.put(item.getId(), item);
+        }
+        List<Item> replayed = new ArrayList<>();
+        journal.replay(added -> {
+            replayed.add(added);
+            Item existing = byId.put(added.getId(), added);
+            if (existing != null) {
+                existing.leave(this);
+            }
+            added.enter(this);
+        }, id -> {
+            Item existing = byId.remove(id);
+            if (existing != null) {
+                existing.leave(this);
+            }
+        });
+        advanceIds(replayed);
+        journal.backup();
+        save();
+    }
+
+    /**
+     * Makes sure that the ids of replayed items, which were added after {@code queue.xml} recorded the last id,
+     * are not given out again, including to those which left the queue meanwhile.
+     * Other {@link QueueIdStrategy} implementations are left alone, as they may not generate ids from a counter.
+     */
+    private static void advanceIds(List<Item> replayed) {
+        QueueIdStrategy strategy = QueueIdStrategy.get();
+        if (replayed.isEmpty() || !(strategy instanceof QueueIdStrategy.DefaultStrategy)) {
+            return;
+        }
+        State current = new State();
+        strategy.persist(current);
+        long maxReplayed = replayed.stream().mapToLong(Item::getId).max().getAsLong();
+        if (current.properties.get(strategy.getClass().getName()) instanceof Long counter && counter >= maxReplayed) {
+            return;
+        }
+        // without the counter, the strategy continues from the highest id of the items
+        State state = new State();
+        state.items.addAll(replayed);
+        strategy.load(state);
+    }
+
+    /**
+     * Gets all the items currently in the queue, regardless of permissions.
+     */
+    @GuardedBy("lock")
+    private List<Item> liveGetItems() {
+        List<Item> all = new ArrayList<>(waitingList);
+        all.addAll(blockedProjects);
+        all.addAll(buildables);
+        all.addAll(pendings);
+        return all;
+    }
+
+    @GuardedBy("lock")
+    private @CheckForNull QueueJournal getJournal() {
+        if (!JOURNAL) {
+            return null;
+        }
+        if (journal == null) {
+            journal = new QueueJournal(new File(getXMLQueueFile().getPath() + ".journal"));
+        }
+        return journal;
+    }
+
+    /**
+     * Writes the pending journal records, if {@link #JOURNAL} is enabled.
+     */
+    /*package*/ void flushJournal() {
+        QueueJournal journal;
+        lock.lock();
+        try {
+            journal = getJournal();
+        } finally {
+            lock.unlock();
+        }
+        if (journal != null) {
+            journal.flush();
+        }
+    }
+
     /**
      * Persists the queue contents to the disk.
      */
@@ -467,6 +644,8 @@ public class Queue extends ResourceController implements Saveable {
         }
 
         XmlFile queueFile = new XmlFile(XSTREAM, getXMLQueueFile());
+        QueueJournal journal;
+        long journalMark = -1;
         lock.lock();
         try {
             // write out the queue state we want to save
@@ -477,15 +656,21 @@ public class Queue extends ResourceController implements Saveable {
                 if (item.task instanceof TransientTask)  continue;
                 state.items.add(item);
             }
+            journal = getJournal();
+            long mark = journal != null ? journal.mark() : 0;
 
             try {
                 queueFile.write(state);
+                journalMark = mark;
             } catch (IOException e) {
                 LOGGER.log(e instanceof ClosedByInterruptException ? Level.FINE : Level.WARNING, "Failed to write out the queue file " + getXMLQueueFile(), e);
             }
         } finally {
             lock.unlock();
         }
+        if (journal != null && journalMark >= 0) {
+            journal.compact(journalMark);
+        }
         SaveableListener.fireOnChange(this, queueFile);
     }
 
@@ -595,6 +780,65 @@ public class Queue extends ResourceController implements Saveable {
         }
     }
 
+    /**
+     * Schedules the execution of several tasks at once.
+     *
+     * <p>
+     * Each request is handled as by {@link #schedule2(Task, int, List)}, including the {@link QueueDecisionHandler}
+     * vetoes and the folding of actions into items already in the queue, but the whole batch is processed under a
+     * single acquisition of the queue lock, the items already in the queue are looked up in one pass, and a single
+     * maintenance is scheduled once all of them were added. This is much cheaper than scheduling the tasks one by one
+     * when many of them get triggered together, for example by a webhook notifying a change in a repository used by
+     * lots of jobs.
+     *
+     * <p>
+     * A task appearing several times in the batch is deduplicated against the item created for its first occurrence,
+     * just as if it had been scheduled twice in a row.
+     *
+     * @param requests the tasks to schedule; actions lists may contain null, which are ignored
+     * @return the results, in the order of the requests
+     * @since TODO
+     */
+    public @NonNull List<ScheduleResult> scheduleAll(@NonNull Collection<? extends ScheduleRequest> requests) {
+        List<ScheduleResult> results = new ArrayList<>(requests.size());
+        if (requests.isEmpty()) {
+            return results;
+        }
+        Set<Task> toMaintain = new LinkedHashSet<>();
+        lock.lock();
+        try { try {
+            Map<Task, List<Item>> liveItems = liveGetItems(requests);
+            for (ScheduleRequest r : requests) {
+                Task p = r.getTask();
+                List<Action> actions = new ArrayList<>(r.getActions());
+                actions.removeIf(Objects::isNull);
+
+                boolean vetoed = false;
+                for (QueueDecisionHandler h : QueueDecisionHandler.all()) {
+                    if (!h.shouldSchedule(p, actions)) {
+                        vetoed = true;
+                        break;
+                    }
+                }
+                if (vetoed) {
+                    results.add(ScheduleResult.refused());
+                    continue;
+                }
+
+                List<Item> items = liveItems.computeIfAbsent(p, k -> new ArrayList<>());
+                ScheduleResult result = scheduleInternal(p, r.getQuietPeriod(), actions, items, toMaintain);
+                if (result.isCreated()) {
+                    items.add(result.getCreateItem());
+                }
+                results.add(result);
+            }
+        } finally { updateSnapshot(); } } finally {
+            lock.unlock();
+        }
+        scheduleMaintenance(toMaintain);
+        return results;
+    }
+
     /**
      * Schedules an execution of a task.
      *
@@ -611,68 +855,89 @@ public class Queue extends ResourceController implements Saveable {
     private @NonNull ScheduleResult scheduleInternal(Task p, int quietPeriod, List<Action> actions) {
         lock.lock();
         try { try {
-            Calendar due = new GregorianCalendar();
-            due.add(Calendar.SECOND, quietPeriod);
-
-            // Do we already have this task in the queue? Because if so, we won't schedule a new one.
-            List<Item> duplicatesInQueue = new ArrayList<>();
-            for (Item item : liveGetItems(p)) {
-                boolean shouldScheduleItem = false;
-                for (QueueAction action : item.getActions(QueueAction.class)) {
-                    shouldScheduleItem |= action.shouldSchedule(actions);
-                }
-                for (QueueAction action : Util.filter(actions, QueueAction.class)) {
-                    shouldScheduleItem |= action.shouldSchedule(new ArrayList<>(item.getAllActions()));
-                }
-                if (!shouldScheduleItem) {
-                    duplicatesInQueue.add(item);
-                }
+            return scheduleInternal(p, quietPeriod, actions, liveGetItems(p), null);
+        } finally { updateSnapshot(); } } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Must be called with the lock held. Does not publish a snapshot, which is left to the caller,
+     * so that {@link #scheduleAll} publishes a single one for the whole batch.
+     *
+     * @param liveItems the items of the task currently in the queue, as computed by {@link #liveGetItems(Task)}
+     * @param toMaintain if not null, collects the task for a later maintenance pass instead of scheduling one
+     */
+    private @NonNull ScheduleResult scheduleInternal(Task p, int quietPeriod, List<Action> actions, List<Item> liveItems, @CheckForNull Collection<Task> toMaintain) {
+        Calendar due = new GregorianCalendar();
+        due.add(Calendar.SECOND, quietPeriod);
+
+        // Do we already have this task in the queue? Because if so, we won't schedule a new one.
+        List<Item> duplicatesInQueue = new ArrayList<>();
+        for (Item item : liveItems) {
+            boolean shouldScheduleItem = false;
+            for (QueueAction action : item.getActions(QueueAction.class)) {
+                shouldScheduleItem |= action.shouldSchedule(actions);
+            }
+            for (QueueAction action : Util.filter(actions, QueueAction.class)) {
+                shouldScheduleItem |= action.shouldSchedule(new ArrayList<>(item.getAllActions()));
+            }
+            if (!shouldScheduleItem) {
+                duplicatesInQueue.add(item);
             }
-            if (duplicatesInQueue.isEmpty()) {
-                LOGGER.log(Level.FINE, "{0} added to queue", p);
+        }
+        if (duplicatesInQueue.isEmpty()) {
+            LOGGER.log(Level.FINE, "{0} added to queue", p);
 
-                // put the item in the queue
-                WaitingItem added = new WaitingItem(due, p, actions);
-                added.enter(this);
-                scheduleMaintenance();   // let an executor know that a new item is in the queue.
-                return ScheduleResult.created(added);
+            // put the item in the queue
+            WaitingItem added = new WaitingItem(due, p, actions);
+            added.enter(this);
+            if (toMaintain != null) {
+                toMaintain.add(p);
+            } else {
+                scheduleMaintenance(p, null);   // let an executor know that a new item is in the queue.
             }
+            return ScheduleResult.created(added);
+        }
 
-            LOGGER.log(Level.FINE, "{0} is already in the queue", p);
+        LOGGER.log(Level.FINE, "{0} is already in the queue", p);
 
-            // but let the actions affect the existing stuff.
-            for (Item item : duplicatesInQueue) {
-                for (FoldableAction a : Util.filter(actions, FoldableAction.class)) {
-                    a.foldIntoExisting(item, p, actions);
-                    if (LOGGER.isLoggable(Level.FINE)) {
-                        LOGGER.log(Level.FINE, "after folding {0}, {1} includes {2}", new Object[] {a, item, item.getAllActions()});
-                    }
+        // but let the actions affect the existing stuff.
+        for (Item item : duplicatesInQueue) {
+            for (FoldableAction a : Util.filter(actions, FoldableAction.class)) {
+                a.foldIntoExisting(item, p, actions);
+                if (LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.log(Level.FINE, "after folding {0}, {1} includes {2}", new Object[] {a, item, item.getAllActions()});
                 }
             }
+        }
 
-            boolean queueUpdated = false;
-            for (WaitingItem wi : Util.filter(duplicatesInQueue, WaitingItem.class)) {
-                // make sure to always use the shorter of the available due times
-                if (wi.timestamp.before(due))
-                    continue;
-
-                // waitingList is sorted, so when we change a timestamp we need to maintain order
-                wi.leave(this);
-                wi.timestamp = due;
-                wi.enter(this);
-                queueUpdated = true;
-            }
+        boolean queueUpdated = false;
+        for (WaitingItem wi : Util.filter(duplicatesInQueue, WaitingItem.class)) {
+            // make sure to always use the shorter of the available due times
+            if (wi.timestamp.before(due))
+                continue;
 
-            if (queueUpdated) scheduleMaintenance();
+            // waitingList is sorted, so when we change a timestamp we need to maintain order
+            wi.leave(this);
+            wi.timestamp = due;
+            wi.enter(this);
+            queueUpdated = true;
+        }
 
-            // REVISIT: when there are multiple existing items in the queue that matches the incoming one,
-            // whether the new one should affect all existing ones or not is debatable. I for myself
-            // thought this would only affect one, so the code was bit of surprise, but I'm keeping the current
-            // behaviour.
-            return ScheduleResult.existing(duplicatesInQueue.get(0));
-        } finally { updateSnapshot(); } } finally {
-            lock.unlock();
+        if (queueUpdated) {
+            if (toMaintain != null) {
+                toMaintain.add(p);
+            } else {
+                scheduleMaintenance(p, null);
+            }
         }
+
+        // REVISIT: when there are multiple existing items in the queue that matches the incoming one,
+        // whether the new one should affect all existing ones or not is debatable. I for myself
+        // thought this would only affect one, so the code was bit of surprise, but I'm keeping the current
+        // behaviour.
+        return ScheduleResult.existing(duplicatesInQueue.get(0));
     }
 
 
@@ -722,10 +987,9 @@ public class Queue extends ResourceController implements Saveable {
         lock.lock();
         try { try {
             LOGGER.log(Level.FINE, "Cancelling {0}", p);
-            for (WaitingItem item : waitingList) {
-                if (item.task.equals(p)) {
-                    return item.cancel(this);
-                }
+            List<WaitingItem> waitingItems = liveGetWaitingItems(p);
+            if (!waitingItems.isEmpty()) {
+                return waitingItems.get(0).cancel(this);
             }
             // use bitwise-OR to make sure that both branches get evaluated all the time
             return blockedProjects.cancel(p) != null | buildables.cancel(p) != null;
@@ -735,7 +999,11 @@ public class Queue extends ResourceController implements Saveable {
     }
 
     private void updateSnapshot() {
-        Snapshot revised = new Snapshot(waitingList, blockedProjects, buildables, pendings);
+        if (modifications == snapshotModifications) {
+            return;
+        }
+        snapshotModifications = modifications;
+        Snapshot revised = new Snapshot(++snapshotVersion, waitingList, blockedProjects, buildables, pendings);
         if (LOGGER.isLoggable(Level.FINEST)) {
             LOGGER.log(Level.FINEST, "{0} → {1}; leftItems={2}", new Object[] {snapshot, revised, leftItems.asMap()});
         }
@@ -899,27 +1167,46 @@ public class Queue extends ResourceController implements Saveable {
     }
 
     public Item getItem(long id) {
-        Snapshot snapshot = this.snapshot;
-        for (Item item : snapshot.blockedProjects) {
-            if (item.id == id)
-                return item;
-        }
-        for (Item item : snapshot.buildables) {
-            if (item.id == id)
-                return item;
-        }
-        for (Item item : snapshot.pendings) {
-            if (item.id == id)
-                return item;
-        }
-        for (Item item : snapshot.waitingList) {
-            if (item.id == id) {
-                return item;
-            }
+        Item item = snapshot.getItem(id);
+        if (item != null) {
+            return item;
         }
         return leftItems.getIfPresent(id);
     }
 
+    /**
+     * Gets the version of the snapshot currently served by the read methods of this queue, which is incremented
+     * whenever items enter, leave or move within the queue. Callers polling the queue can use it to skip unchanged
+     * states. Changes to the items themselves, such as actions folded into them, do not increment it.
+     *
+     * @since TODO
+     */
+    @Restricted(NoExternalUse.class)
+    public long getSnapshotVersion() {
+        return snapshot.version;
+    }
+
+    /**
+     * Gets the time spent in each {@link QueueTaskDispatcher} by this queue.
+     *
+     * @since TODO
+     */
+    @Restricted(NoExternalUse.class)
+    public @NonNull QueueTaskDispatcherTimings getDispatcherTimings() {
+        return dispatcherTimings;
+    }
+
+    /**
+     * Gets the latency metrics of {@link #maintain()}, which are also served at {@code queue/metrics/api/json}.
+     *
+     * @since TODO
+     */
+    @Restricted(NoExternalUse.class)
+    public @NonNull QueueMaintenanceMetrics getMetrics() {
+        Jenkins.get().checkPermission(Jenkins.SYSTEM_READ);
+        return maintenanceMetrics;
+    }
+
     /**
      * Gets all the {@link BuildableItem}s that are waiting for an executor in the given {@link Computer}.
      */
@@ -1031,16 +1318,7 @@ public class Queue extends ResourceController implements Saveable {
      */
     public /* @java.annotation.Nonnegative */ int countBuildableItemsFor(@CheckForNull Label l) {
         Snapshot snapshot = this.snapshot;
-        int r = 0;
-        for (BuildableItem bi : snapshot.buildables)
-            for (SubTask st : bi.task.getSubTasks())
-                if (null == l || bi.getAssignedLabelFor(st) == l)
-                    r++;
-        for (BuildableItem bi : snapshot.pendings)
-            for (SubTask st : bi.task.getSubTasks())
-                if (null == l || bi.getAssignedLabelFor(st) == l)
-                    r++;
-        return r;
+        return l == null ? snapshot.countBuildableSubTasks() : snapshot.countBuildableSubTasksFor(l);
     }
 
     /**
@@ -1054,17 +1332,7 @@ public class Queue extends ResourceController implements Saveable {
      * @since 1.615
      */
     public /* @java.annotation.Nonnegative */ int strictCountBuildableItemsFor(@CheckForNull Label l) {
-        Snapshot _snapshot = this.snapshot;
-        int r = 0;
-        for (BuildableItem bi : _snapshot.buildables)
-            for (SubTask st : bi.task.getSubTasks())
-                if (bi.getAssignedLabelFor(st) == l)
-                    r++;
-        for (BuildableItem bi : _snapshot.pendings)
-            for (SubTask st : bi.task.getSubTasks())
-                if (bi.getAssignedLabelFor(st) == l)
-                    r++;
-        return r;
+        return snapshot.countBuildableSubTasksFor(l);
     }
 
     /**
@@ -1080,25 +1348,8 @@ public class Queue extends ResourceController implements Saveable {
      * @return null if the project is not in the queue.
      */
     public Item getItem(Task t) {
-        Snapshot snapshot = this.snapshot;
-        for (Item item : snapshot.blockedProjects) {
-            if (item.task.equals(t))
-                return item;
-        }
-        for (Item item : snapshot.buildables) {
-            if (item.task.equals(t))
-                return item;
-        }
-        for (Item item : snapshot.pendings) {
-            if (item.task.equals(t))
-                return item;
-        }
-        for (Item item : snapshot.waitingList) {
-            if (item.task.equals(t)) {
-                return item;
-            }
-        }
-        return null;
+        List<Item> items = snapshot.getItems(t);
+        return items.isEmpty() ? null : items.get(0);
     }
 
     /**
@@ -1120,10 +1371,36 @@ public class Queue extends ResourceController implements Saveable {
                     LOGGER.log(Level.FINE, "ignoring {0} during scheduleInternal", thePendings);
                 }
             }
-            for (Item item : waitingList) {
-                if (item.task.equals(t)) {
-                    result.add(item);
-                }
+            result.addAll(liveGetWaitingItems(t));
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the items of the given task in {@link #waitingList}, in the order of that list.
+     */
+    @GuardedBy("lock")
+    private List<WaitingItem> liveGetWaitingItems(Task t) {
+        List<WaitingItem> items = waitingListByTask.get(t);
+        if (items == null) {
+            return Collections.emptyList();
+        }
+        List<WaitingItem> result = new ArrayList<>(items);
+        Collections.sort(result);
+        return result;
+    }
+
+    /**
+     * Like {@link #liveGetItems(Task)}, but for the tasks of many requests at once.
+     */
+    private Map<Task, List<Item>> liveGetItems(Collection<? extends ScheduleRequest> requests) {
+        lock.lock();
+        try {
+            Map<Task, List<Item>> result = new HashMap<>();
+            for (ScheduleRequest r : requests) {
+                result.computeIfAbsent(r.getTask(), this::liveGetItems);
             }
             return result;
         } finally {
@@ -1137,29 +1414,7 @@ public class Queue extends ResourceController implements Saveable {
      * @return empty if the project is not in the queue.
      */
     public List<Item> getItems(Task t) {
-        Snapshot snapshot = this.snapshot;
-        List<Item> result = new ArrayList<>();
-        for (Item item : snapshot.blockedProjects) {
-            if (item.task.equals(t)) {
-                result.add(item);
-            }
-        }
-        for (Item item : snapshot.buildables) {
-            if (item.task.equals(t)) {
-                result.add(item);
-            }
-        }
-        for (Item item : snapshot.pendings) {
-            if (item.task.equals(t)) {
-                result.add(item);
-            }
-        }
-        for (Item item : snapshot.waitingList) {
-            if (item.task.equals(t)) {
-                result.add(item);
-            }
-        }
-        return result;
+        return new ArrayList<>(snapshot.getItems(t));
     }
 
     /**
@@ -1187,6 +1442,43 @@ public class Queue extends ResourceController implements Saveable {
         }
     }
 
+    /**
+     * Computes in parallel, against the current snapshot, the causes of blockage of the blocked items which a
+     * maintenance pass is about to re-evaluate.
+     *
+     * @param request the incremental request restricting the items to evaluate, or null for all of them
+     * @return the causes of blockage of the items found blocked; items found runnable are left out
+     */
+    private Map<Item, CauseOfBlockage> evaluateBlockages(@CheckForNull MaintenanceRequest request) {
+        final Snapshot frozen = snapshot;
+        List<BlockedItem> items = new ArrayList<>(frozen.blockedProjects);
+        if (request != null) {
+            items.removeIf(p -> !request.tasks.contains(p.task));
+        }
+        if (items.size() < 2) {
+            return Collections.emptyMap();
+        }
+        final Authentication auth = Jenkins.getAuthentication2();
+        final Map<Item, CauseOfBlockage> result = new ConcurrentHashMap<>();
+        try {
+            BlockageEvaluationPool.POOL.submit(() -> items.parallelStream().forEach(p -> {
+                try (ACLContext ctx = ACL.as2(auth)) {
+                    CauseOfBlockage causeOfBlockage = getCauseOfBlockageForItem(p, frozen);
+                    if (causeOfBlockage != null) {
+                        result.put(p, causeOfBlockage);
+                    }
+                }
+            })).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Collections.emptyMap();
+        } catch (ExecutionException e) {
+            LOGGER.log(Level.WARNING, "Failed to evaluate the blocked items in parallel, falling back to serial evaluation", e);
+            return Collections.emptyMap();
+        }
+        return result;
+    }
+
     /**
      * Checks the queue and runs anything that can be run.
      *
@@ -1198,9 +1490,118 @@ public class Queue extends ResourceController implements Saveable {
     @WithBridgeMethods(void.class)
     public Future<?> scheduleMaintenance() {
         // LOGGER.info("Scheduling maintenance");
+        synchronized (maintenanceRequestLock) {
+            maintenanceRequest.full = true;
+        }
         return maintainerThread.submit();
     }
 
+    /**
+     * Schedules a maintenance pass which, in {@link #INCREMENTAL_MAINTENANCE} mode, only needs to look at the items
+     * affected by the given change.
+     *
+     * @param task a task that was scheduled or finished executing, if any
+     * @param freed a node on which an executor just got parked, if any
+     */
+    private void scheduleMaintenance(@CheckForNull Task task, @CheckForNull Node freed) {
+        if (!INCREMENTAL_MAINTENANCE) {
+            scheduleMaintenance();
+            return;
+        }
+        synchronized (maintenanceRequestLock) {
+            if (task != null) {
+                maintenanceRequest.tasks.add(task);
+            }
+            if (freed != null) {
+                maintenanceRequest.freedNodes.add(freed);
+            }
+        }
+        maintainerThread.submit();
+    }
+
+    /**
+     * Schedules a single maintenance pass covering all the given tasks, if any.
+     */
+    private void scheduleMaintenance(Collection<Task> tasks) {
+        if (tasks.isEmpty()) {
+            return;
+        }
+        if (!INCREMENTAL_MAINTENANCE) {
+            scheduleMaintenance();
+            return;
+        }
+        synchronized (maintenanceRequestLock) {
+            maintenanceRequest.tasks.addAll(tasks);
+        }
+        maintainerThread.submit();
+    }
+
+    /**
+     * Makes sure a maintenance pass happens as soon as the first item of the {@link #waitingList} is due.
+     * A wake-up scheduled for an earlier time is kept, as the pass it triggers reschedules the next one.
+     */
+    @GuardedBy("lock")
+    private void scheduleWakeUp() {
+        if (waitingList.isEmpty()) {
+            return;
+        }
+        long due = peek().timestamp.getTimeInMillis();
+        if (wakeUp != null && !wakeUp.isDone()) {
+            if (wakeUpTime <= due) {
+                return;
+            }
+            wakeUp.cancel(false);
+        }
+        wakeUpTime = due;
+        wakeUp = Timer.get().schedule(() -> scheduleMaintenance(null, null),
+                Math.max(0, due - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Gets the time at which the next {@link #scheduleWakeUp() wake-up} is due, or 0 if none is scheduled.
+     */
+    /*package*/ long getNextWakeUp() {
+        lock.lock();
+        try {
+            return wakeUp != null && !wakeUp.isDone() ? wakeUpTime : 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private MaintenanceRequest drainMaintenanceRequest() {
+        synchronized (maintenanceRequestLock) {
+            MaintenanceRequest r = maintenanceRequest;
+            maintenanceRequest = new MaintenanceRequest();
+            return r;
+        }
+    }
+
+    /**
+     * Called by {@link Computer} when a new parked {@link Executor} was created, which is how a freed up
+     * executor slot shows up.
+     */
+    /*package*/ void onExecutorParked(Executor e) {
+        parkedExecutors.add(e);
+        if (INCREMENTAL_MAINTENANCE) {
+            scheduleMaintenance(null, e.getOwner().getNode());
+        }
+    }
+
+    /**
+     * Called by {@link Computer} when an {@link Executor} is discarded.
+     */
+    /*package*/ void onExecutorRemoved(Executor e) {
+        parkedExecutors.remove(e);
+    }
+
+    /**
+     * Called by {@link Executor} when it is done with its work unit.
+     */
+    /*package*/ void onExecutorFinished(@CheckForNull WorkUnit wu) {
+        scheduleMaintenance(wu != null ? wu.context.task : null, null);
+    }
+
     /**
      * Checks if the given item should be prevented from entering into the {@link #buildables} state
      * and instead stay in the {@link #blockedProjects} state.
@@ -1209,18 +1610,29 @@ public class Queue extends ResourceController implements Saveable {
      */
     @CheckForNull
     private CauseOfBlockage getCauseOfBlockageForItem(Item i) {
+        return getCauseOfBlockageForItem(i, null);
+    }
+
+    /**
+     * @param frozen if not null, the snapshot to check for other items of the same task instead of the live state,
+     *               which allows calling this method without holding {@link #lock}
+     */
+    private CauseOfBlockage getCauseOfBlockageForItem(Item i, @CheckForNull Snapshot frozen) {
         CauseOfBlockage causeOfBlockage = getCauseOfBlockageForTask(i.task);
         if (causeOfBlockage != null) {
             return causeOfBlockage;
         }
 
         for (QueueTaskDispatcher d : QueueTaskDispatcher.all()) {
+            long start = System.nanoTime();
             try {
                 causeOfBlockage = d.canRun(i);
             } catch (Throwable t) {
                 // We cannot guarantee the task can be run because something wrong happened
                 LOGGER.log(Level.WARNING, t, () -> String.format("Exception evaluating if the queue can run the task '%s'", i.task.getName()));
                 causeOfBlockage = CauseOfBlockage.fromMessage(Messages._Queue_ExceptionCanRun());
+            } finally {
+                dispatcherTimings.record(d, "canRun", start);
             }
             if (causeOfBlockage != null)
                 return causeOfBlockage;
@@ -1235,7 +1647,7 @@ public class Queue extends ResourceController implements Saveable {
             // it should also return non-null value for `task.getCauseOfBlockage` in case of on-going execution.
             // But both are public non-final methods, so, we need to keep backward compatibility here.
             // And check one more time across all `buildables` and `pendings` for O(N) each.
-            if (!i.task.isConcurrentBuild() && (buildables.containsKey(i.task) || pendings.containsKey(i.task))) {
+            if (!i.task.isConcurrentBuild() && (frozen != null ? frozen.hasBuildableItem(i.task) : buildables.containsKey(i.task) || pendings.containsKey(i.task))) {
                 return CauseOfBlockage.fromMessage(Messages._Queue_InProgress());
             }
         }
@@ -1486,21 +1898,64 @@ public class Queue extends ResourceController implements Saveable {
      * Jenkins internally invokes this method by itself whenever there's a change that can affect
      * the scheduling (such as new node becoming online, # of executors change, a task completes execution, etc.),
      * and it also gets invoked periodically (see {@link Queue.MaintainTask}.)
+     *
+     * <p>
+     * This always performs a full pass; see {@link #INCREMENTAL_MAINTENANCE} for the passes triggered internally.
      */
     public void maintain() {
+        maintain(null);
+    }
+
+    /**
+     * Queue maintenance, possibly restricted to the changes described by the given request.
+     *
+     * <p>
+     * An incremental pass takes the parked executors from {@link #parkedExecutors} instead of walking every
+     * {@link Computer}, only re-evaluates the blocked items of the tasks named in the request, and only tries to
+     * assign executors to buildable items that are new or whose label matches a node that freed an executor.
+     * Anything else, such as pending items whose executor disappeared, is left to the next full pass.
+     *
+     * @param request the changes to look at, or null for a full pass
+     */
+    private void maintain(@CheckForNull MaintenanceRequest request) {
         Jenkins jenkins = Jenkins.getInstanceOrNull();
         if (jenkins == null) {
             return;
         }
+        final boolean full = !INCREMENTAL_MAINTENANCE || request == null || request.full;
+        final QueueMaintenanceMetrics metrics = maintenanceMetrics;
+        final long started = metrics.start();
+        metrics.countPass(full);
+        // evaluated before taking the lock, so that slow dispatchers do not hold up everything else
+        final Map<Item, CauseOfBlockage> knownBlockages;
+        // the evaluating threads may need the lock too, which they could not get while the caller holds it
+        if (PARALLEL_BLOCKAGE_EVALUATION && !lock.isHeldByCurrentThread()) {
+            long phase = metrics.start();
+            knownBlockages = evaluateBlockages(full ? null : request);
+            metrics.record(QueueMaintenanceMetrics.Phase.PARALLEL_BLOCKAGE_EVALUATION, phase);
+        } else {
+            knownBlockages = Collections.emptyMap();
+        }
+        long phase = metrics.start();
         lock.lock();
+        metrics.record(QueueMaintenanceMetrics.Phase.LOCK_WAIT, phase);
         try { try {
 
-            LOGGER.log(Level.FINE, "Queue maintenance started on {0} with {1}", new Object[] {this, snapshot});
+            LOGGER.log(Level.FINE, "Queue maintenance ({0}) started on {1} with {2}", new Object[] {full ? "full" : request, this, snapshot});
 
+            phase = metrics.start();
             // The executors that are currently waiting for a job to run.
             Map<Executor, JobOffer> parked = new HashMap<>();
 
-            { // update parked (and identify any pending items whose executor has disappeared)
+            if (!full) { // trust the executors we have been told about
+                for (Executor e : parkedExecutors) {
+                    if (!e.isParking()) {
+                        parkedExecutors.remove(e);
+                    } else if (!e.isInterrupted()) {
+                        parked.put(e, new JobOffer(e));
+                    }
+                }
+            } else { // update parked (and identify any pending items whose executor has disappeared)
                 List<BuildableItem> lostPendings = new ArrayList<>(pendings);
                 for (Computer c : jenkins.getComputers()) {
                     for (Executor e : c.getAllExecutors()) {
@@ -1535,13 +1990,26 @@ public class Queue extends ResourceController implements Saveable {
                     pendings.remove(p);
                     makeBuildable(p); // TODO whatever this is for, the return value is being ignored, so this does nothing at all
                 }
+                parkedExecutors.retainAll(parked.keySet());
+                parkedExecutors.addAll(parked.keySet());
             }
+            metrics.record(QueueMaintenanceMetrics.Phase.PARKED_EXECUTORS, phase);
 
             final QueueSorter s = sorter;
 
+            // buildable items which an incremental pass does not need to look at again unless affected by the request
+            final Set<BuildableItem> knownBuildables = Collections.newSetFromMap(new IdentityHashMap<>());
+            if (!full) {
+                knownBuildables.addAll(buildables);
+            }
+
+            phase = metrics.start();
             { // blocked -> buildable
                 // copy as we'll mutate the list and we want to process in a potentially different order
                 List<BlockedItem> blockedItems = new ArrayList<>(blockedProjects.values());
+                if (!full) {
+                    blockedItems.removeIf(p -> !request.tasks.contains(p.task));
+                }
                 // if facing a cycle of blocked tasks, ensure we process in the desired sort order
                 if (s != null) {
                     s.sortBlockedItems(blockedItems);
@@ -1551,7 +2019,11 @@ public class Queue extends ResourceController implements Saveable {
                 for (BlockedItem p : blockedItems) {
                     String taskDisplayName = LOGGER.isLoggable(Level.FINEST) ? p.task.getFullDisplayName() : null;
                     LOGGER.log(Level.FINEST, "Current blocked item: {0}", taskDisplayName);
-                    CauseOfBlockage causeOfBlockage = getCauseOfBlockageForItem(p);
+                    // items found runnable are checked again, as the items unblocked before them may block them
+                    CauseOfBlockage causeOfBlockage = knownBlockages.get(p);
+                    if (causeOfBlockage == null) {
+                        causeOfBlockage = getCauseOfBlockageForItem(p);
+                    }
                     if (causeOfBlockage == null) {
                         LOGGER.log(Level.FINEST,
                                 "BlockedItem {0}: blocked -> buildable as the build is not blocked and new tasks are allowed",
@@ -1572,7 +2044,9 @@ public class Queue extends ResourceController implements Saveable {
                     }
                 }
             }
+            metrics.record(QueueMaintenanceMetrics.Phase.BLOCKED, phase);
 
+            phase = metrics.start();
             // waitingList -> buildable/blocked
             while (!waitingList.isEmpty()) {
                 WaitingItem top = peek();
@@ -1601,7 +2075,10 @@ public class Queue extends ResourceController implements Saveable {
                     new BlockedItem(top, causeOfBlockage).enter(this);
                 }
             }
+            scheduleWakeUp();
+            metrics.record(QueueMaintenanceMetrics.Phase.WAITING, phase);
 
+            phase = metrics.start();
             if (s != null) {
                 try {
                     s.sortBuildableItems(buildables);
@@ -1615,9 +2092,21 @@ public class Queue extends ResourceController implements Saveable {
             // Ensure that identification of blocked tasks is using the live state: JENKINS-27708 & JENKINS-27871
             updateSnapshot();
 
+            final OfferIndex offers = new OfferIndex(parked.values());
+            // buildable items which an incremental pass does not need to look at again
+            final Set<BuildableItem> unaffected = Collections.newSetFromMap(new IdentityHashMap<>());
+            if (!full) {
+                unaffected.addAll(knownBuildables);
+                unaffected.removeAll(request.affected(knownBuildables));
+            }
+
             // allocate buildable jobs to executors
             for (BuildableItem p : new ArrayList<>(
                     buildables)) { // copy as we'll mutate the list in the loop
+                if (unaffected.contains(p)) {
+                    // nothing changed which could let this one run now
+                    continue;
+                }
                 // one last check to make sure this build is not blocked.
                 CauseOfBlockage causeOfBlockage = getCauseOfBlockageForItem(p);
                 if (causeOfBlockage != null) {
@@ -1642,29 +2131,33 @@ public class Queue extends ResourceController implements Saveable {
                     }
                 } else {
 
-                    List<JobOffer> candidates = new ArrayList<>(parked.size());
+                    List<JobOffer> candidates = new ArrayList<>();
                     Map<Node, CauseOfBlockage> reasonMap = new HashMap<>();
-                    for (JobOffer j : parked.values()) {
-                        Node offerNode = j.getNode();
-                        CauseOfBlockage reason;
-                        if (reasonMap.containsKey(offerNode)) {
-                            reason = reasonMap.get(offerNode);
-                        } else {
-                            reason = j.getCauseOfBlockage(p);
-                            reasonMap.put(offerNode, reason);
-                        }
-                        if (reason == null) {
-                            LOGGER.log(Level.FINEST,
-                                    "{0} is a potential candidate for task {1}",
-                                    new Object[]{j, taskDisplayName});
-                            candidates.add(j);
-                        } else {
-                            LOGGER.log(Level.FINEST, "{0} rejected {1}: {2}", new Object[] {j, taskDisplayName, reason});
+                    // only look at the nodes which can satisfy the label of this item
+                    for (Node offerNode : offers.nodesFor(p.getAssignedLabel())) {
+                        CauseOfBlockage reason = null;
+                        for (JobOffer j : offers.on(offerNode)) {
+                            if (reasonMap.containsKey(offerNode)) {
+                                reason = reasonMap.get(offerNode);
+                            } else {
+                                reason = j.getCauseOfBlockage(p);
+                                reasonMap.put(offerNode, reason);
+                            }
+                            if (reason == null) {
+                                LOGGER.log(Level.FINEST,
+                                        "{0} is a potential candidate for task {1}",
+                                        new Object[]{j, taskDisplayName});
+                                candidates.add(j);
+                            } else {
+                                LOGGER.log(Level.FINEST, "{0} rejected {1}: {2}", new Object[] {j, taskDisplayName, reason});
+                            }
                         }
                     }
 
                     MappingWorksheet ws = new MappingWorksheet(p, candidates);
+                    long mapping = metrics.start();
                     Mapping m = loadBalancer.map(p.task, ws);
+                    metrics.record(QueueMaintenanceMetrics.Phase.LOAD_BALANCER, mapping);
                     if (m == null) {
                         // if we couldn't find the executor that fits,
                         // just leave it in the buildables list and
@@ -1702,8 +2195,10 @@ public class Queue extends ResourceController implements Saveable {
                     updateSnapshot();
                 }
             }
+            metrics.record(QueueMaintenanceMetrics.Phase.BUILDABLE, phase);
         } finally { updateSnapshot(); } } finally {
             lock.unlock();
+            metrics.record(QueueMaintenanceMetrics.Phase.MAINTAIN, started);
         }
     }
 
@@ -1713,6 +2208,15 @@ public class Queue extends ResourceController implements Saveable {
      * @return a thunk to actually prepare it (after leaving an earlier list), or null if it cannot be run now
      */
     private @CheckForNull Runnable makeBuildable(final BuildableItem p) {
+        long start = maintenanceMetrics.start();
+        try {
+            return tryMakeBuildable(p);
+        } finally {
+            maintenanceMetrics.record(QueueMaintenanceMetrics.Phase.MAKE_BUILDABLE, start);
+        }
+    }
+
+    private @CheckForNull Runnable tryMakeBuildable(final BuildableItem p) {
         if (p.task instanceof FlyweightTask) {
             String taskDisplayName = LOGGER.isLoggable(Level.FINEST) ? p.task.getFullDisplayName() : null;
             if (!isBlockedByShutdown(p.task)) {
@@ -2570,6 +3074,13 @@ public class Queue extends ResourceController implements Saveable {
         @Override
         /*package*/ void enter(Queue q) {
             if (q.waitingList.add(this)) {
+                q.modifications++;
+                q.waitingListByTask.computeIfAbsent(task, k -> new ArrayList<>(1)).add(this);
+                q.scheduleWakeUp();
+                QueueJournal journal = q.getJournal();
+                if (journal != null && !(task instanceof TransientTask)) {
+                    journal.added(this);
+                }
                 Listeners.notify(QueueListener.class, true, l -> l.onEnterWaiting(this));
             }
         }
@@ -2578,6 +3089,11 @@ public class Queue extends ResourceController implements Saveable {
         /*package*/ boolean leave(Queue q) {
             boolean r = q.waitingList.remove(this);
             if (r) {
+                q.modifications++;
+                List<WaitingItem> items = q.waitingListByTask.get(task);
+                if (items != null && items.remove(this) && items.isEmpty()) {
+                    q.waitingListByTask.remove(task);
+                }
                 Listeners.notify(QueueListener.class, true, l -> l.onLeaveWaiting(this));
             }
             return r;
@@ -2817,6 +3333,10 @@ public class Queue extends ResourceController implements Saveable {
         @Override
         void enter(Queue q) {
             q.leftItems.put(getId(), this);
+            QueueJournal journal = q.getJournal();
+            if (journal != null && !(task instanceof TransientTask)) {
+                journal.removed(getId());
+            }
             Listeners.notify(QueueListener.class, true, l -> l.onLeft(this));
         }
 
@@ -2829,6 +3349,32 @@ public class Queue extends ResourceController implements Saveable {
 
     private static final Logger LOGGER = Logger.getLogger(Queue.class.getName());
 
+    /**
+     * When enabled, maintenance triggered by executors becoming available or tasks being scheduled or completed
+     * only re-evaluates the affected items, while explicit {@link #scheduleMaintenance()} calls and the periodic
+     * {@link MaintainTask} still perform a full pass.
+     * Items blocked for reasons unrelated to their own task (such as resources or throttling) are therefore
+     * only re-evaluated by full passes.
+     */
+    @Restricted(NoExternalUse.class)
+    public static /* Script Console modifiable */ boolean INCREMENTAL_MAINTENANCE = SystemProperties.getBoolean(Queue.class.getName() + ".incrementalMaintenance");
+
+    /**
+     * When enabled, items entering and leaving the queue are recorded in an append-only journal next to
+     * {@code queue.xml}, so that changes made after the last {@link #save()} survive a crash.
+     * {@link Saver} then effectively acts as the periodic compaction of the journal into {@code queue.xml}.
+     */
+    @Restricted(NoExternalUse.class)
+    public static /* Script Console modifiable */ boolean JOURNAL = SystemProperties.getBoolean(Queue.class.getName() + ".journal");
+
+    /**
+     * When enabled, each maintenance pass first computes the causes of blockage of the blocked items in parallel,
+     * without holding the queue lock, and only re-checks under the lock the items found runnable.
+     * {@link QueueTaskDispatcher}s and {@link Task#getCauseOfBlockage()} must then be safe to call concurrently.
+     */
+    @Restricted(NoExternalUse.class)
+    public static /* Script Console modifiable */ boolean PARALLEL_BLOCKAGE_EVALUATION = SystemProperties.getBoolean(Queue.class.getName() + ".parallelBlockageEvaluation");
+
     /**
      * This {@link XStream} instance is used to persist {@link Task}s.
      */
@@ -2901,6 +3447,115 @@ public class Queue extends ResourceController implements Saveable {
         });
     }
 
+    /**
+     * Changes that happened since the last {@link #maintain()} pass, used to limit the work of an incremental pass.
+     */
+    private static final class MaintenanceRequest {
+        /**
+         * Whether everything needs to be re-evaluated, as requested through {@link #scheduleMaintenance()}.
+         */
+        boolean full;
+
+        /**
+         * Tasks which were scheduled or which finished executing.
+         */
+        final Set<Task> tasks = new HashSet<>();
+
+        /**
+         * Nodes on which an {@link Executor} got parked.
+         */
+        final Set<Node> freedNodes = new HashSet<>();
+
+        /**
+         * Selects the buildable items which could be affected by these changes.
+         * Items are grouped by {@link Label} so that each distinct label is only matched once against the freed nodes.
+         */
+        Set<BuildableItem> affected(Collection<BuildableItem> items) {
+            Set<BuildableItem> r = Collections.newSetFromMap(new IdentityHashMap<>());
+            Map<Label, List<BuildableItem>> byLabel = new HashMap<>();
+            for (BuildableItem p : items) {
+                if (tasks.contains(p.task)) {
+                    r.add(p);
+                } else if (!freedNodes.isEmpty()) {
+                    byLabel.computeIfAbsent(p.getAssignedLabel(), k -> new ArrayList<>()).add(p);
+                }
+            }
+            for (Map.Entry<Label, List<BuildableItem>> e : byLabel.entrySet()) {
+                Label label = e.getKey();
+                if (label == null || freedNodes.stream().anyMatch(label::contains)) {
+                    r.addAll(e.getValue());
+                }
+            }
+            return r;
+        }
+
+        @Override
+        public String toString() {
+            return "incremental: tasks=" + tasks + " freedNodes=" + freedNodes;
+        }
+    }
+
+    /**
+     * Pool evaluating causes of blockage for {@link #PARALLEL_BLOCKAGE_EVALUATION}, created on first use.
+     */
+    private static final class BlockageEvaluationPool {
+        static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), pool -> {
+            ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            t.setName("Queue blockage evaluation #" + t.getPoolIndex());
+            return t;
+        }, null, false);
+    }
+
+    /**
+     * The parked {@link JobOffer}s of a maintenance pass indexed by {@link Node}, along with the nodes satisfying
+     * each {@link Label} seen so far, so that matching a buildable item only considers executors able to run it
+     * rather than every parked executor.
+     */
+    private static final class OfferIndex {
+        private final Map<Node, List<JobOffer>> byNode = new HashMap<>();
+        private final Map<Label, List<Node>> nodesByLabel = new HashMap<>();
+
+        OfferIndex(Collection<JobOffer> offers) {
+            for (JobOffer j : offers) {
+                // a null node is kept so that its offers still report the removal as the reason
+                byNode.computeIfAbsent(j.getNode(), k -> new ArrayList<>()).add(j);
+            }
+        }
+
+        /**
+         * Gets the nodes with parked executors which could run an item with the given label.
+         *
+         * @param label the assigned label, or null for any node
+         */
+        List<Node> nodesFor(@CheckForNull Label label) {
+            return nodesByLabel.computeIfAbsent(label, l -> {
+                if (l == null) {
+                    return new ArrayList<>(byNode.keySet());
+                }
+                List<Node> r = new ArrayList<>();
+                Set<Node> labelNodes = l.getNodes();
+                if (labelNodes.size() < byNode.size()) {
+                    for (Node n : labelNodes) {
+                        if (byNode.containsKey(n)) {
+                            r.add(n);
+                        }
+                    }
+                } else {
+                    for (Node n : byNode.keySet()) {
+                        if (n != null && labelNodes.contains(n)) {
+                            r.add(n);
+                        }
+                    }
+                }
+                return r;
+            });
+        }
+
+        List<JobOffer> on(@CheckForNull Node node) {
+            return byNode.getOrDefault(node, Collections.emptyList());
+        }
+    }
+
     /**
      * Regularly invokes {@link Queue#maintain()} and clean itself up when
      * {@link Queue} gets GC-ed.
@@ -2928,42 +3583,40 @@ public class Queue extends ResourceController implements Saveable {
     }
 
     /**
-     * {@link ArrayList} of {@link Item} with more convenience methods.
+     * {@link List} of {@link Item} with more convenience methods.
+     * Items are also indexed by {@link Task}, so that looking up the items of a task does not need to scan the list.
+     * All the modifications go through {@link #add(int, Item)}, {@link #set}, {@link #remove(int)},
+     * {@link #clear} or {@link #sort}, which keep the index consistent with the list, in the same order.
      */
-    private class ItemList<T extends Item> extends ArrayList<T> {
+    private class ItemList<T extends Item> extends AbstractList<T> implements RandomAccess {
+        private final ArrayList<T> items = new ArrayList<>();
+        private final Map<Task, List<T>> byTask = new HashMap<>();
+
         public T get(Task task) {
-            for (T item : this) {
-                if (item.task.equals(task)) {
-                    return item;
-                }
-            }
-            return null;
+            List<T> forTask = byTask.get(task);
+            return forTask == null ? null : forTask.get(0);
         }
 
         public List<T> getAll(Task task) {
-            List<T> result = new ArrayList<>();
-            for (T item : this) {
-                if (item.task.equals(task)) {
-                    result.add(item);
-                }
-            }
-            return result;
+            List<T> forTask = byTask.get(task);
+            return forTask == null ? new ArrayList<>() : new ArrayList<>(forTask);
         }
 
         public boolean containsKey(Task task) {
-            return get(task) != null;
+            return byTask.containsKey(task);
         }
 
         public T remove(Task task) {
-            Iterator<T> it = iterator();
-            while (it.hasNext()) {
-                T t = it.next();
-                if (t.task.equals(task)) {
-                    it.remove();
-                    return t;
+            T t = get(task);
+            if (t != null) {
+                for (int i = 0; i < items.size(); i++) {
+                    if (items.get(i) == t) {
+                        remove(i);
+                        break;
+                    }
                 }
             }
-            return null;
+            return t;
         }
 
         public void put(Task task, T item) {
@@ -2971,6 +3624,82 @@ public class Queue extends ResourceController implements Saveable {
             add(item);
         }
 
+        @Override
+        public T get(int index) {
+            return items.get(index);
+        }
+
+        @Override
+        public int size() {
+            return items.size();
+        }
+
+        @Override
+        public void add(int index, T item) {
+            items.add(index, item);
+            modCount++;
+            modifications++;
+            if (index == items.size() - 1) {
+                byTask.computeIfAbsent(item.task, k -> new ArrayList<>(1)).add(item);
+            } else {
+                reindex();
+            }
+        }
+
+        @Override
+        public T set(int index, T item) {
+            T old = items.set(index, item);
+            modifications++;
+            reindex();
+            return old;
+        }
+
+        @Override
+        public T remove(int index) {
+            T item = items.remove(index);
+            modCount++;
+            modifications++;
+            List<T> sameTask = byTask.get(item.task);
+            if (sameTask != null) {
+                for (int i = 0; i < sameTask.size(); i++) {
+                    if (sameTask.get(i) == item) {
+                        sameTask.remove(i);
+                        break;
+                    }
+                }
+                if (sameTask.isEmpty()) {
+                    byTask.remove(item.task);
+                }
+            }
+            return item;
+        }
+
+        @Override
+        public void clear() {
+            items.clear();
+            modCount++;
+            modifications++;
+            byTask.clear();
+        }
+
+        /**
+         * Sorts in place rather than by {@link #set} for each item, as {@link QueueSorter} does to {@link #buildables}.
+         */
+        @Override
+        public void sort(Comparator<? super T> c) {
+            items.sort(c);
+            modCount++;
+            modifications++;
+            reindex();
+        }
+
+        private void reindex() {
+            byTask.clear();
+            for (T item : items) {
+                byTask.computeIfAbsent(item.task, k -> new ArrayList<>(1)).add(item);
+            }
+        }
+
         public ItemList<T> values() {
             return this;
         }
@@ -2994,23 +3723,115 @@ public class Queue extends ResourceController implements Saveable {
         }
     }
 
+    /**
+     * Immutable view of the queue content, which read methods use without taking {@link #lock}.
+     *
+     * <p>
+     * Lookup tables by id, by task and by label are computed on first use, so each of them is built at most once
+     * per published snapshot no matter how many readers poll it.
+     */
     private static class Snapshot {
+        private final long version;
         private final Set<WaitingItem> waitingList;
         private final List<BlockedItem> blockedProjects;
         private final List<BuildableItem> buildables;
         private final List<BuildableItem> pendings;
 
-        Snapshot(Set<WaitingItem> waitingList, List<BlockedItem> blockedProjects, List<BuildableItem> buildables,
+        private volatile Map<Long, Item> itemsById;
+        private volatile Map<Task, List<Item>> itemsByTask;
+        private volatile Map<Label, Integer> buildableSubTasksByLabel;
+
+        Snapshot(long version, Set<WaitingItem> waitingList, List<BlockedItem> blockedProjects, List<BuildableItem> buildables,
                         List<BuildableItem> pendings) {
-            this.waitingList = new LinkedHashSet<>(waitingList);
-            this.blockedProjects = new ArrayList<>(blockedProjects);
-            this.buildables = new ArrayList<>(buildables);
-            this.pendings = new ArrayList<>(pendings);
+            this.version = version;
+            this.waitingList = Collections.unmodifiableSet(new LinkedHashSet<>(waitingList));
+            this.blockedProjects = Collections.unmodifiableList(new ArrayList<>(blockedProjects));
+            this.buildables = Collections.unmodifiableList(new ArrayList<>(buildables));
+            this.pendings = Collections.unmodifiableList(new ArrayList<>(pendings));
+        }
+
+        /**
+         * Items in the order in which lookups by task have always reported them.
+         */
+        private List<Item> lookupOrder() {
+            List<Item> all = new ArrayList<>(blockedProjects.size() + buildables.size() + pendings.size() + waitingList.size());
+            all.addAll(blockedProjects);
+            all.addAll(buildables);
+            all.addAll(pendings);
+            all.addAll(waitingList);
+            return all;
+        }
+
+        @CheckForNull
+        Item getItem(long id) {
+            Map<Long, Item> m = itemsById;
+            if (m == null) {
+                m = new HashMap<>();
+                for (Item item : lookupOrder()) {
+                    m.putIfAbsent(item.id, item);
+                }
+                itemsById = m;
+            }
+            return m.get(id);
+        }
+
+        boolean hasBuildableItem(Task t) {
+            for (Item item : getItems(t)) {
+                if (item instanceof BuildableItem) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @NonNull
+        List<Item> getItems(Task t) {
+            Map<Task, List<Item>> m = itemsByTask;
+            if (m == null) {
+                m = new HashMap<>();
+                for (Item item : lookupOrder()) {
+                    m.computeIfAbsent(item.task, k -> new ArrayList<>(1)).add(item);
+                }
+                itemsByTask = m;
+            }
+            return m.getOrDefault(t, Collections.emptyList());
+        }
+
+        /**
+         * Counts the buildable and pending subtasks by assigned label, including a {@code null} key for subtasks
+         * without one.
+         */
+        private Map<Label, Integer> buildableSubTasksByLabel() {
+            Map<Label, Integer> m = buildableSubTasksByLabel;
+            if (m == null) {
+                m = new HashMap<>();
+                for (List<BuildableItem> list : List.of(buildables, pendings)) {
+                    for (BuildableItem bi : list) {
+                        for (SubTask st : bi.task.getSubTasks()) {
+                            m.merge(bi.getAssignedLabelFor(st), 1, Integer::sum);
+                        }
+                    }
+                }
+                buildableSubTasksByLabel = m;
+            }
+            return m;
+        }
+
+        int countBuildableSubTasksFor(@CheckForNull Label l) {
+            return buildableSubTasksByLabel().getOrDefault(l, 0);
+        }
+
+        int countBuildableSubTasks() {
+            int r = 0;
+            for (int count : buildableSubTasksByLabel().values()) {
+                r += count;
+            }
+            return r;
         }
 
         @Override
         public String toString() {
-            return "Queue.Snapshot{waitingList=" + waitingList + ";blockedProjects=" + blockedProjects + ";buildables=" + buildables + ";pendings=" + pendings + "}";
+            return "Queue.Snapshot{version=" + version + ";waitingList=" + waitingList + ";blockedProjects=" + blockedProjects + ";buildables=" + buildables + ";pendings=" + pendings + "}";
         }
     }
 
@@ -0,0 +1,261 @@
+package hudson.model;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.util.AtomicFileWriter;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.util.SystemProperties;
+import jenkins.util.Timer;
+import net.jcip.annotations.GuardedBy;
+
+/**
+ * Append-only log of the items entering and leaving the {@link Queue}, so that {@link Queue#load()} can restore
+ * the changes made since {@code queue.xml} was last written.
+ *
+ * <p>
+ * Records are kept in memory and appended to the file by a background flush at most
+ * {@link #FLUSH_DELAY_MILLIS} after they were made. Each {@link Queue#save()} compacts the journal by dropping the
+ * records already reflected in {@code queue.xml}. Records are idempotent: replaying an addition of an item which is
+ * already in the queue replaces it, and replaying a removal of an unknown item does nothing, so a crash between
+ * writing {@code queue.xml} and compacting the journal is harmless.
+ *
+ * <p>
+ * Each line holds a sequence number, {@code +} and the Base64-encoded XML of an added item, or {@code -} and the
+ * id of a removed item.
+ */
+final class QueueJournal {
+
+    /**
+     * Upper bound on the time between a change to the queue and its record reaching the journal file.
+     */
+    static /* not final */ long FLUSH_DELAY_MILLIS = SystemProperties.getLong(QueueJournal.class.getName() + ".flushDelayMillis", 1000L);
+
+    private final File file;
+
+    private final Object lock = new Object();
+
+    @GuardedBy("lock")
+    private List<Record> pending = new ArrayList<>();
+
+    @GuardedBy("lock")
+    private long sequence;
+
+    @GuardedBy("lock")
+    private Future<?> nextFlush;
+
+    /**
+     * Serializes the writers of {@link #file}.
+     */
+    private final Object fileLock = new Object();
+
+    QueueJournal(@NonNull File file) {
+        this.file = file;
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    /**
+     * Records an item entering the queue.
+     * Called with the queue lock held, so that the item is serialized in the state it entered with.
+     */
+    void added(@NonNull Queue.Item item) {
+        String xml = Queue.XSTREAM.toXML(item);
+        record(new Record("+ " + Base64.getEncoder().encodeToString(xml.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    void removed(long id) {
+        record(new Record("- " + id));
+    }
+
+    private void record(Record r) {
+        synchronized (lock) {
+            r.sequence = ++sequence;
+            pending.add(r);
+            if (nextFlush == null || nextFlush.isDone()) {
+                nextFlush = Timer.get().schedule(this::flush, FLUSH_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Gets the sequence number of the latest record, which {@link #compact} can later drop once the queue state
+     * including it has been written.
+     */
+    long mark() {
+        synchronized (lock) {
+            return sequence;
+        }
+    }
+
+    /**
+     * Appends the pending records to the file.
+     */
+    void flush() {
+        List<Record> records;
+        synchronized (lock) {
+            records = pending;
+            pending = new ArrayList<>();
+            nextFlush = null;
+        }
+        if (records.isEmpty()) {
+            return;
+        }
+        synchronized (fileLock) {
+            try {
+                Files.createDirectories(file.toPath().getParent());
+                try (Writer w = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                    for (Record r : records) {
+                        w.write(r.toLine());
+                        w.write('\n');
+                    }
+                }
+            } catch (IOException | InvalidPathException e) {
+                LOGGER.log(Level.WARNING, "Failed to append to the queue journal " + file, e);
+            }
+        }
+    }
+
+    /**
+     * Drops the records up to the given {@link #mark()}, which are reflected in a freshly written {@code queue.xml}.
+     * Rewrites the file, so should be called without holding the queue lock.
+     */
+    void compact(long mark) {
+        synchronized (lock) {
+            pending.removeIf(r -> r.sequence <= mark);
+        }
+        synchronized (fileLock) {
+            try {
+                if (!file.exists()) {
+                    return;
+                }
+                List<String> kept = new ArrayList<>();
+                for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+                    long seq = sequenceOf(line);
+                    if (seq > mark) {
+                        kept.add(line);
+                    }
+                }
+                if (kept.isEmpty()) {
+                    Files.delete(file.toPath());
+                    return;
+                }
+                AtomicFileWriter w = new AtomicFileWriter(file.toPath(), StandardCharsets.UTF_8);
+                try {
+                    for (String line : kept) {
+                        w.write(line);
+                        w.write('\n');
+                    }
+                    w.commit();
+                } finally {
+                    w.abort();
+                }
+            } catch (IOException | InvalidPathException e) {
+                LOGGER.log(Level.WARNING, "Failed to compact the queue journal " + file, e);
+            }
+        }
+    }
+
+    /**
+     * Reads the journal file back in order.
+     * Lines which cannot be decoded, such as a partially written last line, are skipped.
+     *
+     * @param onAdded receives the items which were added
+     * @param onRemoved receives the ids of the items which were removed
+     */
+    void replay(Consumer<Queue.Item> onAdded, LongConsumer onRemoved) {
+        synchronized (fileLock) {
+            if (!file.exists()) {
+                return;
+            }
+            try (BufferedReader r = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = r.readLine()) != null) {
+                    try {
+                        String[] tokens = line.split(" ", 3);
+                        if (tokens.length != 3) {
+                            throw new IllegalArgumentException("truncated record");
+                        }
+                        if (tokens[1].equals("+")) {
+                            String xml = new String(Base64.getDecoder().decode(tokens[2]), StandardCharsets.UTF_8);
+                            Object o = Queue.XSTREAM.fromXML(xml);
+                            if (o instanceof Queue.Item && ((Queue.Item) o).task != null) {
+                                onAdded.accept((Queue.Item) o);
+                            }
+                        } else if (tokens[1].equals("-")) {
+                            onRemoved.accept(Long.parseLong(tokens[2]));
+                        } else {
+                            throw new IllegalArgumentException("unknown operation " + tokens[1]);
+                        }
+                    } catch (RuntimeException e) {
+                        LOGGER.log(Level.WARNING, "Skipping unreadable queue journal record in " + file, e);
+                    }
+                }
+            } catch (IOException | InvalidPathException e) {
+                LOGGER.log(Level.WARNING, "Failed to read the queue journal " + file, e);
+            }
+        }
+    }
+
+    /**
+     * Moves the journal file aside once its content has been loaded, as is done for {@code queue.xml}.
+     */
+    void backup() {
+        synchronized (fileLock) {
+            try {
+                if (file.exists()) {
+                    Files.move(file.toPath(), new File(file.getPath() + ".bak").toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            } catch (IOException | InvalidPathException e) {
+                LOGGER.log(Level.WARNING, "Failed to back up the queue journal " + file, e);
+            }
+        }
+        synchronized (lock) {
+            pending.clear();
+        }
+    }
+
+    private static long sequenceOf(String line) {
+        int space = line.indexOf(' ');
+        try {
+            return Long.parseLong(space < 0 ? line : line.substring(0, space));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static final class Record {
+        long sequence;
+        /**
+         * The operation and its argument, encoded when recorded.
+         */
+        private final String payload;
+
+        Record(String payload) {
+            this.payload = payload;
+        }
+
+        String toLine() {
+            return sequence + " " + payload;
+        }
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(QueueJournal.class.getName());
+}
@@ -108,19 +108,27 @@ import java.util.Objects;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.zip.GZIPInputStream;
 import jenkins.console.ConsoleUrlProvider;
+import jenkins.console.LogIndex;
+import jenkins.console.RenderedConsoleCache;
 import jenkins.console.WithConsoleUrl;
 import jenkins.model.ArtifactManager;
 import jenkins.model.ArtifactManagerConfiguration;
 import jenkins.model.ArtifactManagerFactory;
 import jenkins.model.BuildDiscarder;
+import jenkins.model.BuildRecordCompression;
+import jenkins.model.BuildTrash;
 import jenkins.model.HistoricalBuild;
 import jenkins.model.Jenkins;
 import jenkins.model.JenkinsLocationConfiguration;
 import jenkins.model.RunAction2;
 import jenkins.model.StandardArtifactManager;
+import jenkins.model.lazy.BuildNumberCache;
 import jenkins.model.lazy.BuildReference;
+import jenkins.model.lazy.BuildSummaryIndex;
 import jenkins.model.lazy.LazyBuildMixIn;
 import jenkins.security.MasterToSlaveCallable;
 import jenkins.security.stapler.StaplerNotDispatchable;
@@ -1471,7 +1479,11 @@ public abstract class Run<JobT extends Job<JobT, RunT>, RunT extends Run<JobT, R
                 }
             }
         }
-        getLogText().writeHtmlTo(start, out.asWriter());
+        if (RenderedConsoleCache.ENABLED && !isLogUpdated()) {
+            RenderedConsoleCache.get().writeHtmlTo(this, start, out.asWriter());
+        } else {
+            getLogText().writeHtmlTo(start, out.asWriter());
+        }
     }
 
     /**
@@ -1562,6 +1574,7 @@ public abstract class Run<JobT extends Job<JobT, RunT>, RunT extends Run<JobT, R
 
             isPendingDelete = true;
         }
+        RunSaveCoalescer.discard(this);
 
         File rootDir = getRootDir();
         if (!rootDir.isDirectory()) {
@@ -1592,24 +1605,19 @@ public abstract class Run<JobT extends Job<JobT, RunT>, RunT extends Run<JobT, R
             File tmp = new File(rootDir.getParentFile(), '.' + rootDir.getName());
 
             if (tmp.exists()) {
-                Util.deleteRecursive(tmp);
+                BuildNumberCache.update(rootDir.getParentFile(), () -> Util.deleteRecursive(tmp));
             }
             try {
-                Files.move(
+                BuildNumberCache.removeBuild(rootDir.getParentFile(), number, () -> Files.move(
                         Util.fileToPath(rootDir),
                         Util.fileToPath(tmp),
                         StandardCopyOption.ATOMIC_MOVE
-                );
+                ));
             } catch (UnsupportedOperationException | SecurityException ex) {
                 throw new IOException(rootDir + " is in use", ex);
             }
 
-            Util.deleteRecursive(tmp);
-            // some user reported that they see some left-over .xyz files in the workspace,
-            // so just to make sure we've really deleted it, schedule the deletion on VM exit, too.
-            if (tmp.exists()) {
-                tmp.deleteOnExit();
-            }
+            BuildTrash.reclaim(rootDir.getParentFile(), tmp);
             LOGGER.log(FINE, "{0}: {1} successfully deleted", new Object[] {this, rootDir});
             removeRunFromParent();
         }
@@ -1905,7 +1913,8 @@ public abstract class Run<JobT extends Job<JobT, RunT>, RunT extends Run<JobT, R
         // gets reflected to the file immediately, which can then be
         // served to the browser immediately
         try {
-            return Files.newOutputStream(getLogFile().toPath(), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            File logFile = getLogFile();
+            return LogIndex.indexing(logFile, Files.newOutputStream(logFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.APPEND));
         } catch (InvalidPathException e) {
             throw new IOException(e);
         }
@@ -1981,6 +1990,8 @@ public abstract class Run<JobT extends Job<JobT, RunT>, RunT extends Run<JobT, R
             result = Result.FAILURE;
             LOGGER.log(WARNING, "{0}: No build result is set, so marking as failure. This should not happen.", this);
         }
+        // the last save happened before the build was marked as completed
+        updateBuildSummary();
 
         RunListener.fireFinalized(this);
     }
@@ -1991,12 +2002,38 @@ public abstract class Run<JobT extends Job<JobT, RunT>, RunT extends Run<JobT, R
     @Override
     public synchronized void save() throws IOException {
         if (BulkChange.contains(this))   return;
+        if (RunSaveCoalescer.defer(this)) return;
+        write();
+    }
+
+    /**
+     * Writes a save deferred by {@link RunSaveCoalescer}, unless the build was deleted meanwhile.
+     */
+    /*package*/ synchronized void writeDeferred() throws IOException {
+        if (isPendingDelete) {
+            return;
+        }
+        write();
+    }
+
+    private void write() throws IOException {
         getDataFile().write(this);
         SaveableListener.fireOnChange(this, getDataFile());
+        updateBuildSummary();
+    }
+
+    /**
+     * Records the summary of this build, which only adds to the index if it changed since last recorded.
+     */
+    private void updateBuildSummary() {
+        BuildSummaryIndex summaries = project.getBuildSummaryIndex();
+        if (summaries != null) {
+            summaries.record(this);
+        }
     }
 
     private @NonNull XmlFile getDataFile() {
-        return new XmlFile(XSTREAM, new File(getRootDir(), "build.xml"));
+        return new XmlFile(XSTREAM, new File(getRootDir(), "build.xml"), true, BuildRecordCompression.ENABLED);
     }
 
     protected Object writeReplace() {
@@ -2041,6 +2078,18 @@ public abstract class Run<JobT extends Job<JobT, RunT>, RunT extends Run<JobT, R
             return Collections.emptyList();
         }
 
+        LogIndex index = LogIndex.of(getLogFile());
+        if (index.isIndexed()) {
+            List<String> lastLines = new ArrayList<>(Math.min(maxLines, 128));
+            long offset = index.readLastLines(maxLines, lastLines, getCharset());
+            if (!lastLines.isEmpty()) {
+                if (offset > 0) {
+                    lastLines.set(0, "[...truncated " + Functions.humanReadableByteSize(offset) + "...]");
+                }
+                return ConsoleNote.removeNotes(lastLines);
+            }
+        }
+
         int lines = 0;
         long filePointer;
         final List<String> lastLines = new ArrayList<>(Math.min(maxLines, 128));
@@ -2228,6 +2277,15 @@ public abstract class Run<JobT extends Job<JobT, RunT>, RunT extends Run<JobT, R
     }
 
     private void doConsoleTextImpl(StaplerRequest2 req, StaplerResponse2 rsp) throws IOException {
+        String start = req.getParameter("start");
+        String end = req.getParameter("end");
+        if (start != null || end != null) {
+            doConsoleTextLines(start, end, rsp);
+            return;
+        }
+        if (!isLogUpdated() && doConsoleTextTransfer(req, rsp)) {
+            return;
+        }
         rsp.setContentType("text/plain;charset=UTF-8");
         try (InputStream input = getLogInputStream();
              OutputStream os = rsp.getOutputStream();
@@ -2236,6 +2294,135 @@ public abstract class Run<JobT extends Job<JobT, RunT>, RunT extends Run<JobT, R
         }
     }
 
+    /**
+     * Sends out the raw console output of a completed build directly from the log file,
+     * honoring conditional and single range requests.
+     *
+     * @return false if the log cannot be sent that way, in which case nothing was sent
+     * @see LogIndex#isTransferable
+     */
+    private boolean doConsoleTextTransfer(StaplerRequest2 req, StaplerResponse2 rsp) throws IOException {
+        File logFile = getLogFile();
+        LogIndex index = LogIndex.of(logFile);
+        if (!index.isTransferable()) {
+            return false;
+        }
+        long lastModified = logFile.lastModified();
+        String etag = "\"" + Long.toHexString(logFile.length()) + "-" + Long.toHexString(lastModified) + "\"";
+        rsp.setHeader("ETag", etag);
+        rsp.setDateHeader("Last-Modified", lastModified);
+        rsp.setHeader("Accept-Ranges", "bytes");
+        String ifNoneMatch = req.getHeader("If-None-Match");
+        long ifModifiedSince = ifNoneMatch == null ? req.getDateHeader("If-Modified-Since") : -1;
+        if (ifNoneMatch != null && (ifNoneMatch.equals("*") || Arrays.asList(ifNoneMatch.split("\\s*,\\s*")).contains(etag))
+                || ifModifiedSince != -1 && lastModified / 1000 <= ifModifiedSince / 1000) {
+            rsp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return true;
+        }
+        long length = index.getPlainTextLength();
+        long start = 0;
+        long end = length;
+        String range = req.getHeader("Range");
+        String ifRange = req.getHeader("If-Range");
+        if (range != null && (ifRange == null || ifRange.equals(etag))) {
+            Matcher m = SINGLE_BYTE_RANGE.matcher(range.trim());
+            if (m.matches()) {
+                try {
+                    if (m.group(1).isEmpty()) {
+                        start = Math.max(0, length - Long.parseLong(m.group(2)));
+                    } else {
+                        start = Long.parseLong(m.group(1));
+                        if (!m.group(2).isEmpty()) {
+                            end = Math.min(length, Long.parseLong(m.group(2)) + 1);
+                        }
+                    }
+                } catch (NumberFormatException x) {
+                    // out of range of long: serve everything, as for any other unsupported range
+                    start = 0;
+                    end = length;
+                }
+                if (start >= end) {
+                    rsp.setHeader("Content-Range", "bytes */" + length);
+                    rsp.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    return true;
+                }
+                if (start > 0 || end < length) {
+                    rsp.setHeader("Content-Range", "bytes " + start + "-" + (end - 1) + "/" + length);
+                    rsp.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                }
+            }
+        }
+        rsp.setContentType("text/plain;charset=UTF-8");
+        rsp.setContentLengthLong(end - start);
+        if (!"HEAD".equals(req.getMethod())) {
+            try (OutputStream os = rsp.getOutputStream()) {
+                index.transferPlainText(start, end, os);
+            }
+        }
+        return true;
+    }
+
+    private static final Pattern SINGLE_BYTE_RANGE = Pattern.compile("bytes=(\\d*)-(\\d*)");
+
+    /**
+     * Sends out some lines of the raw console output.
+     *
+     * @param start the first line, starting from 1, or if negative, counting from the last line; the first line if null
+     * @param end the last line, included; the last line if null
+     */
+    private void doConsoleTextLines(@CheckForNull String start, @CheckForNull String end, StaplerResponse2 rsp) throws IOException {
+        long first;
+        long last;
+        try {
+            first = start != null ? Long.parseLong(start) : 1;
+            last = end != null ? Long.parseLong(end) : Long.MAX_VALUE;
+        } catch (NumberFormatException x) {
+            rsp.sendError(HttpServletResponse.SC_BAD_REQUEST, "start and end must be line numbers");
+            return;
+        }
+        LogIndex index = LogIndex.of(getLogFile());
+        if (first < 0) {
+            first = Math.max(1, index.getLineCount() + first + 1);
+        }
+        rsp.setContentType("text/plain;charset=UTF-8");
+        long from = first > 0 && first <= last ? index.getLineOffset(first - 1) : -1;
+        if (from == -1) {
+            return;
+        }
+        long to = last == Long.MAX_VALUE ? -1 : index.getLineOffset(last);
+        try (InputStream input = index.open(from);
+             OutputStream os = rsp.getOutputStream();
+             PlainTextConsoleOutputStream out = new PlainTextConsoleOutputStream(os)) {
+            if (to == -1) {
+                IOUtils.copyLarge(input, out);
+            } else {
+                IOUtils.copyLarge(input, out, 0, to - from);
+            }
+        }
+    }
+
+    /**
+     * Used from {@code console.jelly} to show the log from a given line.
+     *
+     * @param line a line number, starting from 1
+     * @return an offset from which {@link #writeLogTo} starts with that line, or 0 if there is no such line
+     */
+    @Restricted(NoExternalUse.class)
+    public long getLogOffsetOfLine(@CheckForNull String line) throws IOException {
+        long n;
+        try {
+            n = line != null ? Long.parseLong(line) : 0;
+        } catch (NumberFormatException x) {
+            return 0;
+        }
+        if (n <= 1) {
+            return 0;
+        }
+        // writeLogTo skips to the line following the offset
+        long offset = LogIndex.of(getLogFile()).getLineOffset(n - 1);
+        return offset > 0 ? offset - 1 : 0;
+    }
+
     /**
      * Handles incremental log output.
      * @deprecated as of 1.352
@@ -47,7 +47,9 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import jenkins.model.RunIdMigrator;
 import jenkins.model.lazy.AbstractLazyLoadRunMap;
+import jenkins.model.lazy.BuildNumberCache;
 import jenkins.model.lazy.BuildReference;
+import jenkins.model.lazy.BuildSummaryIndex;
 import jenkins.model.lazy.LazyBuildMixIn;
 import org.kohsuke.accmod.Restricted;
 import org.kohsuke.accmod.restrictions.NoExternalUse;
@@ -72,6 +74,8 @@ public final class RunMap<R extends Run<?, R>> extends AbstractLazyLoadRunMap<R>
 
     private Constructor<R> cons;
 
+    private final BuildSummaryIndex summaryIndex = new BuildSummaryIndex(this);
+
     /** Normally overwritten by {@link LazyBuildMixIn#onLoad} or {@link LazyBuildMixIn#onCreatedFromScratch}, in turn created during {@link Job#onLoad}. */
     @Restricted(NoExternalUse.class)
     public RunIdMigrator runIdMigrator = new RunIdMigrator();
@@ -157,9 +161,21 @@ public final class RunMap<R extends Run<?, R>> extends AbstractLazyLoadRunMap<R>
     public boolean removeValue(R run) {
         run.dropLinks();
         runIdMigrator.delete(dir, run.getId());
+        if (BuildSummaryIndex.ENABLED) {
+            summaryIndex.forget(run.getNumber());
+        }
         return super.removeValue(run);
     }
 
+    /**
+     * Gets the summaries of the builds in this map.
+     * @since TODO
+     */
+    @Restricted(NoExternalUse.class)
+    public @NonNull BuildSummaryIndex getSummaryIndex() {
+        return summaryIndex;
+    }
+
     /**
      * Gets the read-only view of this map.
      */
@@ -220,7 +236,7 @@ public final class RunMap<R extends Run<?, R>> extends AbstractLazyLoadRunMap<R>
             proposeNewNumber(r.getNumber());
         }
         try {
-            Util.createDirectories(rootDir.toPath());
+            BuildNumberCache.addBuild(rootDir.getParentFile(), r.getNumber(), () -> Util.createDirectories(rootDir.toPath()));
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
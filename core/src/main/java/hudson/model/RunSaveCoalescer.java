@@ -0,0 +1,151 @@
+package hudson.model;
+
+import hudson.init.Terminator;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.util.SystemProperties;
+import jenkins.util.Timer;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Coalesces the saves of running builds, so that actions updating a build many times in a row, such as test result
+ * publishers, do not rewrite {@code build.xml} each time.
+ *
+ * <p>
+ * While enabled, {@link Run#save} of a build which is {@linkplain Run#isBuilding() building}, and was saved before,
+ * only marks it dirty. Dirty builds are written in the background, each at most once per {@link #INTERVAL}.
+ * Any other save, notably the one made as the build completes, is written immediately and supersedes a pending one.
+ * Pending saves are also written when Jenkins shuts down.
+ *
+ * @since TODO
+ */
+@Restricted(NoExternalUse.class)
+public final class RunSaveCoalescer {
+
+    /**
+     * Maximal delay, in milliseconds, before the save of a running build is written.
+     * Zero, the default, writes each save immediately.
+     */
+    public static /* Script Console modifiable */ long INTERVAL = SystemProperties.getLong(RunSaveCoalescer.class.getName() + ".interval", 0L);
+
+    /**
+     * Dirty builds, with the time they were first saved since last written.
+     */
+    private static final Map<Run<?, ?>, Long> pending = new ConcurrentHashMap<>();
+
+    private static final AtomicBoolean scheduled = new AtomicBoolean();
+
+    private static final AtomicLong coalesced = new AtomicLong();
+    private static final AtomicLong written = new AtomicLong();
+    private static final AtomicLong totalLatency = new AtomicLong();
+    private static final AtomicLong maxLatency = new AtomicLong();
+
+    private RunSaveCoalescer() {}
+
+    /**
+     * Defers the save of a build if possible.
+     *
+     * @return true if the build will be written later, false if it must be written now
+     */
+    static boolean defer(Run<?, ?> r) {
+        long interval = INTERVAL;
+        // the first save is never deferred, so that a build can always be loaded
+        if (interval <= 0 || !r.isBuilding() || !new File(r.getRootDir(), "build.xml").isFile()) {
+            pending.remove(r);
+            return false;
+        }
+        if (pending.putIfAbsent(r, System.nanoTime()) != null) {
+            coalesced.incrementAndGet();
+        }
+        if (scheduled.compareAndSet(false, true)) {
+            Timer.get().schedule(RunSaveCoalescer::flushPending, interval, TimeUnit.MILLISECONDS);
+        }
+        return true;
+    }
+
+    /**
+     * Forgets about a pending save, such as when the build is written anyway or deleted.
+     */
+    static void discard(Run<?, ?> r) {
+        pending.remove(r);
+    }
+
+    private static void flushPending() {
+        scheduled.set(false);
+        flushAll();
+        if (!pending.isEmpty() && scheduled.compareAndSet(false, true)) {
+            Timer.get().schedule(RunSaveCoalescer::flushPending, Math.max(1, INTERVAL), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Writes all pending saves.
+     */
+    @Terminator
+    public static void flushAll() {
+        for (Map.Entry<Run<?, ?>, Long> e : pending.entrySet()) {
+            Run<?, ?> r = e.getKey();
+            long since = e.getValue();
+            if (!pending.remove(r, since)) {
+                // saved meanwhile
+                continue;
+            }
+            try {
+                r.writeDeferred();
+            } catch (IOException | RuntimeException x) {
+                LOGGER.log(Level.WARNING, "Failed to save " + r, x);
+                continue;
+            }
+            long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - since);
+            written.incrementAndGet();
+            totalLatency.addAndGet(latency);
+            maxLatency.accumulateAndGet(latency, Math::max);
+        }
+    }
+
+    /**
+     * Number of builds with a save not yet written.
+     */
+    public static int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Number of saves made redundant by a later save of the same build since startup.
+     */
+    public static long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    /**
+     * Number of deferred saves written since startup.
+     */
+    public static long getWrittenCount() {
+        return written.get();
+    }
+
+    /**
+     * Average time, in milliseconds, between the first deferred save of a build and its write.
+     */
+    public static long getAverageLatency() {
+        long n = written.get();
+        return n == 0 ? 0 : totalLatency.get() / n;
+    }
+
+    /**
+     * Longest time, in milliseconds, between the first deferred save of a build and its write.
+     */
+    public static long getMaxLatency() {
+        return maxLatency.get();
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(RunSaveCoalescer.class.getName());
+}
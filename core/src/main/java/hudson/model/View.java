@@ -29,6 +29,7 @@ import static jakarta.servlet.http.HttpServletResponse.SC_BAD_REQUEST;
 
 import com.thoughtworks.xstream.converters.ConversionException;
 import com.thoughtworks.xstream.io.StreamException;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import hudson.DescriptorExtensionList;
@@ -95,6 +96,7 @@ import jenkins.model.item_category.Categories;
 import jenkins.model.item_category.Category;
 import jenkins.model.item_category.ItemCategory;
 import jenkins.security.stapler.StaplerNotDispatchable;
+import jenkins.util.SystemProperties;
 import jenkins.util.xml.XMLUtils;
 import jenkins.widgets.HasWidgets;
 import net.sf.json.JSONObject;
@@ -104,6 +106,7 @@ import org.jenkins.ui.symbol.Symbol;
 import org.jenkins.ui.symbol.SymbolRequest;
 import org.kohsuke.accmod.Restricted;
 import org.kohsuke.accmod.restrictions.DoNotUse;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
 import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.HttpResponse;
 import org.kohsuke.stapler.HttpResponses;
@@ -935,6 +938,48 @@ public abstract class View extends AbstractModelObject implements AccessControll
         return new RunList(this);
     }
 
+    /**
+     * Gets a page of {@link #getBuilds}, as shown by {@code builds.jelly}.
+     * Only the builds on the page are loaded.
+     *
+     * @param after the {@link RunList#cursorOf cursor} of the last build on the previous page, if any
+     * @param limit the number of builds on the page, if not the default
+     * @since TODO
+     */
+    @Restricted(NoExternalUse.class)
+    public BuildsPage getBuildsPage(@CheckForNull String after, @CheckForNull String limit) {
+        int size = BUILDS_PAGE_SIZE;
+        if (limit != null) {
+            try {
+                size = Math.max(1, Math.min(Integer.parseInt(limit), MAX_BUILDS_PAGE_SIZE));
+            } catch (NumberFormatException x) {
+                // keep the default
+            }
+        }
+        List<Run> builds = new ArrayList<>(size);
+        for (Object r : getBuilds().after(after).limit(size)) {
+            builds.add((Run) r);
+        }
+        return new BuildsPage(builds, builds.size() == size ? RunList.cursorOf(builds.get(size - 1)) : null);
+    }
+
+    /**
+     * A page of builds of a view.
+     *
+     * @param builds the builds on the page, newest first
+     * @param next the cursor to the next page, or null if this is the last one
+     * @since TODO
+     */
+    @Restricted(NoExternalUse.class)
+    public record BuildsPage(@NonNull List<Run> builds, @CheckForNull String next) {}
+
+    /**
+     * Default number of builds on a page of {@code builds}.
+     */
+    private static final int BUILDS_PAGE_SIZE = SystemProperties.getInteger(View.class.getName() + ".buildsPageSize", 100);
+
+    private static final int MAX_BUILDS_PAGE_SIZE = 1000;
+
     @Deprecated
     @Restricted(DoNotUse.class)
     public BuildTimelineWidget getTimeline() {
@@ -0,0 +1,292 @@
+package hudson.model.queue;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.model.Api;
+import hudson.model.LoadBalancer;
+import hudson.model.Queue;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.kohsuke.stapler.HttpResponse;
+import org.kohsuke.stapler.HttpResponses;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+import org.kohsuke.stapler.interceptor.RequirePOST;
+
+/**
+ * Latency histograms of the phases of {@link Queue#maintain()}, served at {@code /queue/metrics/api/json}.
+ *
+ * <p>
+ * Recording a phase costs two {@link System#nanoTime()} calls and a few uncontended increments, which is negligible
+ * next to the work of a maintenance pass. It can nonetheless be turned off entirely with {@link #ENABLED}.
+ *
+ * @since TODO
+ */
+@Restricted(NoExternalUse.class)
+@ExportedBean
+public final class QueueMaintenanceMetrics {
+
+    /**
+     * Parts of a maintenance pass which are timed.
+     */
+    public enum Phase {
+        /** Whole pass, including waiting for the queue lock. */
+        MAINTAIN,
+        /** Waiting for the queue lock. */
+        LOCK_WAIT,
+        /** Finding the parked executors, and recovering the pending items of executors which went away. */
+        PARKED_EXECUTORS,
+        /** Computing the causes of blockage in parallel, before taking the lock. */
+        PARALLEL_BLOCKAGE_EVALUATION,
+        /** Re-evaluating the blocked items. */
+        BLOCKED,
+        /** Promoting the waiting items whose quiet period expired. */
+        WAITING,
+        /** Sorting the buildable items and matching them with executors. */
+        BUILDABLE,
+        /** Each call to {@link LoadBalancer#map}. */
+        LOAD_BALANCER,
+        /** Each attempt to make an item buildable. */
+        MAKE_BUILDABLE;
+
+        String getName() {
+            String[] words = name().toLowerCase(Locale.ENGLISH).split("_");
+            StringBuilder b = new StringBuilder(words[0]);
+            for (int i = 1; i < words.length; i++) {
+                b.append(Character.toUpperCase(words[i].charAt(0))).append(words[i], 1, words[i].length());
+            }
+            return b.toString();
+        }
+    }
+
+    /**
+     * Whether maintenance passes and {@link QueueTaskDispatcher} calls are timed.
+     */
+    public static /* Script Console modifiable */ boolean ENABLED = !SystemProperties.getBoolean(QueueMaintenanceMetrics.class.getName() + ".disabled");
+
+    private final Map<Phase, Histogram> histograms = new EnumMap<>(Phase.class);
+
+    private final LongAdder fullPasses = new LongAdder();
+
+    private final LongAdder incrementalPasses = new LongAdder();
+
+    private final QueueTaskDispatcherTimings dispatcherTimings;
+
+    public QueueMaintenanceMetrics(@NonNull QueueTaskDispatcherTimings dispatcherTimings) {
+        this.dispatcherTimings = dispatcherTimings;
+        for (Phase phase : Phase.values()) {
+            histograms.put(phase, new Histogram(phase.getName()));
+        }
+    }
+
+    /**
+     * Starts timing a phase.
+     *
+     * @return the value to pass to {@link #record}, which is 0 when {@link #ENABLED disabled}
+     */
+    public long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records the end of a phase started by {@link #start()}.
+     */
+    public void record(@NonNull Phase phase, long start) {
+        if (start != 0) {
+            histograms.get(phase).add(System.nanoTime() - start);
+        }
+    }
+
+    public void countPass(boolean full) {
+        if (ENABLED) {
+            (full ? fullPasses : incrementalPasses).increment();
+        }
+    }
+
+    public @NonNull Histogram getHistogram(@NonNull Phase phase) {
+        return histograms.get(phase);
+    }
+
+    @Exported
+    public boolean isEnabled() {
+        return ENABLED;
+    }
+
+    @Exported
+    public long getFullPasses() {
+        return fullPasses.sum();
+    }
+
+    @Exported
+    public long getIncrementalPasses() {
+        return incrementalPasses.sum();
+    }
+
+    @Exported(inline = true)
+    public @NonNull List<Histogram> getPhases() {
+        return new ArrayList<>(histograms.values());
+    }
+
+    @Exported(inline = true)
+    public @NonNull List<QueueTaskDispatcherTimings.Timing> getDispatchers() {
+        return dispatcherTimings.getTimings();
+    }
+
+    public Api getApi() {
+        return new Api(this);
+    }
+
+    @RequirePOST
+    public HttpResponse doReset() {
+        Jenkins.get().checkPermission(Jenkins.ADMINISTER);
+        reset();
+        return HttpResponses.forwardToPreviousPage();
+    }
+
+    public void reset() {
+        for (Histogram h : histograms.values()) {
+            h.reset();
+        }
+        fullPasses.reset();
+        incrementalPasses.reset();
+        dispatcherTimings.reset();
+    }
+
+    /**
+     * Histogram of durations with buckets growing by powers of two, from under a microsecond to over 16 seconds.
+     */
+    @ExportedBean(defaultVisibility = 2)
+    public static final class Histogram {
+        private static final int BUCKETS = 26;
+
+        private final String name;
+        private final LongAdder[] buckets = new LongAdder[BUCKETS];
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        Histogram(String name) {
+            this.name = name;
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void add(long nanos) {
+            long micros = Math.max(0, nanos / 1000);
+            int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+            buckets[bucket].increment();
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+        }
+
+        void reset() {
+            for (LongAdder b : buckets) {
+                b.reset();
+            }
+            count.reset();
+            totalNanos.reset();
+            maxNanos.reset();
+        }
+
+        /**
+         * Upper bound of the given bucket in microseconds, or {@link Long#MAX_VALUE} for the last one.
+         */
+        private static long upperBoundMicros(int bucket) {
+            return bucket == BUCKETS - 1 ? Long.MAX_VALUE : 1L << bucket;
+        }
+
+        @Exported
+        public String getName() {
+            return name;
+        }
+
+        @Exported
+        public long getCount() {
+            return count.sum();
+        }
+
+        @Exported
+        public double getTotalMillis() {
+            return totalNanos.sum() / 1e6;
+        }
+
+        @Exported
+        public double getMeanMillis() {
+            long c = getCount();
+            return c == 0 ? 0 : getTotalMillis() / c;
+        }
+
+        @Exported
+        public double getMaxMillis() {
+            return maxNanos.get() / 1e6;
+        }
+
+        /**
+         * Estimates a percentile as the upper bound of the bucket it falls in, so within a factor of two.
+         *
+         * @param percentile between 0 and 100
+         */
+        public double getPercentileMillis(double percentile) {
+            long[] counts = getBucketCounts();
+            long total = 0;
+            for (long c : counts) {
+                total += c;
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(total * percentile / 100);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= Math.max(1, rank)) {
+                    return i == BUCKETS - 1 ? getMaxMillis() : upperBoundMicros(i) / 1e3;
+                }
+            }
+            return getMaxMillis();
+        }
+
+        @Exported
+        public double getP50Millis() {
+            return getPercentileMillis(50);
+        }
+
+        @Exported
+        public double getP95Millis() {
+            return getPercentileMillis(95);
+        }
+
+        @Exported
+        public double getP99Millis() {
+            return getPercentileMillis(99);
+        }
+
+        /**
+         * Number of durations per bucket, where bucket {@code i} holds the durations under {@code 2^i} microseconds
+         * not counted in the previous buckets, and the last bucket holds everything longer.
+         */
+        @Exported
+        public long[] getBucketCounts() {
+            long[] counts = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = buckets[i].sum();
+            }
+            return counts;
+        }
+
+        @Override
+        public String toString() {
+            return name + ": " + getCount() + " samples, mean " + getMeanMillis() + "ms, max " + getMaxMillis() + "ms";
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package hudson.model.queue;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+/**
+ * Time spent by the queue in each {@link QueueTaskDispatcher}, so that slow dispatchers can be identified.
+ * Calls to {@link QueueTaskDispatcher#canRun} and {@link QueueTaskDispatcher#canTake(hudson.model.Node, hudson.model.Queue.BuildableItem)}
+ * are accounted separately.
+ *
+ * @since TODO
+ */
+@Restricted(NoExternalUse.class)
+@ExportedBean
+public final class QueueTaskDispatcherTimings {
+
+    private final ConcurrentMap<String, Timing> timings = new ConcurrentHashMap<>();
+
+    /**
+     * Records a call which started at the given {@link System#nanoTime()}.
+     *
+     * @param method the dispatcher method that was called, such as {@code canRun}
+     */
+    public void record(@NonNull QueueTaskDispatcher dispatcher, @NonNull String method, long startNanos) {
+        if (!QueueMaintenanceMetrics.ENABLED) {
+            return;
+        }
+        long elapsed = System.nanoTime() - startNanos;
+        timings.computeIfAbsent(dispatcher.getClass().getName() + "#" + method, Timing::new).add(elapsed);
+    }
+
+    /**
+     * Gets the timings, slowest in total first.
+     */
+    @Exported(inline = true)
+    public @NonNull List<Timing> getTimings() {
+        List<Timing> result = new ArrayList<>(timings.values());
+        result.sort(Comparator.comparingLong(Timing::getTotalNanos).reversed());
+        return result;
+    }
+
+    public void reset() {
+        timings.clear();
+    }
+
+    @ExportedBean(defaultVisibility = 2)
+    public static final class Timing {
+        private final String name;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        Timing(String name) {
+            this.name = name;
+        }
+
+        void add(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+        }
+
+        /**
+         * The dispatcher class and method, such as {@code org.example.ThrottleDispatcher#canRun}.
+         */
+        @Exported
+        public String getName() {
+            return name;
+        }
+
+        @Exported
+        public long getCount() {
+            return count.sum();
+        }
+
+        long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        @Exported
+        public long getTotalMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(getTotalNanos());
+        }
+
+        @Exported
+        public double getAverageMillis() {
+            long c = getCount();
+            return c == 0 ? 0 : getTotalNanos() / 1e6 / c;
+        }
+
+        @Exported
+        public double getMaxMillis() {
+            return maxNanos.get() / 1e6;
+        }
+
+        @Override
+        public String toString() {
+            return name + ": " + getCount() + " calls, " + getTotalMillis() + "ms total, " + getMaxMillis() + "ms max";
+        }
+    }
+}
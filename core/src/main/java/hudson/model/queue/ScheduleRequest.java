@@ -0,0 +1,53 @@
+package hudson.model.queue;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.model.Action;
+import hudson.model.Queue;
+import hudson.model.Queue.Task;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One task to be scheduled by {@link Queue#scheduleAll}, along with the arguments
+ * {@link Queue#schedule2(Task, int, List)} would take.
+ *
+ * @since TODO
+ */
+public final class ScheduleRequest {
+    private final Task task;
+    private final int quietPeriod;
+    private final List<Action> actions;
+
+    /**
+     * @param actions
+     *      These actions can be used for associating information scoped to a particular build, to
+     *      the task being queued. This list can contain null, and those will be silently ignored.
+     */
+    public ScheduleRequest(@NonNull Task task, int quietPeriod, @NonNull List<Action> actions) {
+        this.task = task;
+        this.quietPeriod = quietPeriod;
+        this.actions = Collections.unmodifiableList(actions);
+    }
+
+    public ScheduleRequest(@NonNull Task task, int quietPeriod, Action... actions) {
+        this(task, quietPeriod, Arrays.asList(actions));
+    }
+
+    public @NonNull Task getTask() {
+        return task;
+    }
+
+    public int getQuietPeriod() {
+        return quietPeriod;
+    }
+
+    public @NonNull List<Action> getActions() {
+        return actions;
+    }
+
+    @Override
+    public String toString() {
+        return "ScheduleRequest[" + task + ", quietPeriod=" + quietPeriod + "]";
+    }
+}
@@ -34,6 +34,7 @@ import hudson.model.Job;
 import hudson.model.Run;
 import hudson.util.RunList;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
@@ -41,12 +42,15 @@ import java.util.Collections;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import jenkins.model.BuildDiscarder;
 import jenkins.model.BuildDiscarderDescriptor;
+import jenkins.model.lazy.BuildSummary;
+import jenkins.model.lazy.BuildSummaryIndex;
 import jenkins.util.io.CompositeIOException;
 import org.jenkinsci.Symbol;
 import org.kohsuke.stapler.DataBoundConstructor;
@@ -165,14 +169,9 @@ public class LogRotator extends BuildDiscarder {
         Run lstb = removeLastBuild ? null : job.getLastStableBuild();
 
         if (numToKeep != -1) {
-            // Note that RunList.size is deprecated, and indeed here we are loading all the builds of the job.
-            // However we would need to load the first numToKeep anyway, just to skip over them;
-            // and we would need to load the rest anyway, to delete them.
-            // (Using RunMap.headMap would not suffice, since we do not know if some recent builds have been deleted for other reasons,
-            // so simply subtracting numToKeep from the currently last build number might cause us to delete too many.)
-            RunList<? extends Run<?, ?>> builds = job.getBuilds();
-            for (Run r : builds.subList(Math.min(builds.size(), numToKeep), builds.size())) {
-                if (shouldKeepRun(r, lsb, lstb)) {
+            for (int n : olderThan(job, numToKeep)) {
+                Run r = job.getBuildByNumber(n);
+                if (r == null || shouldKeepRun(r, lsb, lstb)) {
                     continue;
                 }
                 LOGGER.log(FINE, "{0} is to be removed", r);
@@ -184,24 +183,21 @@ public class LogRotator extends BuildDiscarder {
         if (daysToKeep != -1) {
             Calendar cal = new GregorianCalendar();
             cal.add(Calendar.DAY_OF_YEAR, -daysToKeep);
-            Run r = job.getFirstBuild();
-            while (r != null) {
-                if (tooNew(r, cal)) {
-                    break;
-                }
-                if (!shouldKeepRun(r, lsb, lstb)) {
-                    LOGGER.log(FINE, "{0} is to be removed", r);
-                    try { r.delete(); }
-                    catch (IOException ex) { exceptionMap.computeIfAbsent(r, key -> new HashSet<>()).add(ex); }
+            for (int n : startedBefore(job, cal)) {
+                Run r = job.getBuildByNumber(n);
+                if (r == null || shouldKeepRun(r, lsb, lstb)) {
+                    continue;
                 }
-                r = r.getNextBuild();
+                LOGGER.log(FINE, "{0} is to be removed", r);
+                try { r.delete(); }
+                catch (IOException ex) { exceptionMap.computeIfAbsent(r, key -> new HashSet<>()).add(ex); }
             }
         }
 
         if (artifactNumToKeep != null && artifactNumToKeep != -1) {
-            RunList<? extends Run<?, ?>> builds = job.getBuilds();
-            for (Run r : builds.subList(Math.min(builds.size(), artifactNumToKeep), builds.size())) {
-                if (shouldKeepRun(r, lsb, lstb)) {
+            for (int n : olderThan(job, artifactNumToKeep)) {
+                Run r = job.getBuildByNumber(n);
+                if (r == null || shouldKeepRun(r, lsb, lstb)) {
                     continue;
                 }
                 LOGGER.log(FINE, "{0} is to be purged of artifacts", r);
@@ -213,17 +209,14 @@ public class LogRotator extends BuildDiscarder {
         if (artifactDaysToKeep != null && artifactDaysToKeep != -1) {
             Calendar cal = new GregorianCalendar();
             cal.add(Calendar.DAY_OF_YEAR, -artifactDaysToKeep);
-            Run r = job.getFirstBuild();
-            while (r != null) {
-                if (tooNew(r, cal)) {
-                    break;
-                }
-                if (!shouldKeepRun(r, lsb, lstb)) {
-                    LOGGER.log(FINE, "{0} is to be purged of artifacts", r);
-                    try { r.deleteArtifacts(); }
-                    catch (IOException ex) { exceptionMap.computeIfAbsent(r, key -> new HashSet<>()).add(ex); }
+            for (int n : startedBefore(job, cal)) {
+                Run r = job.getBuildByNumber(n);
+                if (r == null || shouldKeepRun(r, lsb, lstb)) {
+                    continue;
                 }
-                r = r.getNextBuild();
+                LOGGER.log(FINE, "{0} is to be purged of artifacts", r);
+                try { r.deleteArtifacts(); }
+                catch (IOException ex) { exceptionMap.computeIfAbsent(r, key -> new HashSet<>()).add(ex); }
             }
         }
 
@@ -237,6 +230,72 @@ public class LogRotator extends BuildDiscarder {
         }
     }
 
+    /**
+     * Selects the builds of a job but for the given number of newest ones.
+     * When the job keeps {@link BuildSummaryIndex summaries} of its builds, none of them is loaded here,
+     * so that only those actually considered for removal are.
+     *
+     * @return build numbers, newest first
+     */
+    private static List<Integer> olderThan(Job<?, ?> job, int count) {
+        List<Integer> numbers = new ArrayList<>();
+        BuildSummaryIndex summaries = job.getBuildSummaryIndex();
+        if (summaries != null) {
+            int skipped = 0;
+            for (BuildSummary s : summaries.newestFirst(true)) {
+                if (skipped < count) {
+                    skipped++;
+                } else {
+                    numbers.add(s.getNumber());
+                }
+            }
+        } else {
+            // Note that RunList.size is deprecated, and indeed here we are loading all the builds of the job.
+            // However we would need to load the first numToKeep anyway, just to skip over them;
+            // and we would need to load the rest anyway, to delete them.
+            // (Using RunMap.headMap would not suffice, since we do not know if some recent builds have been deleted for other reasons,
+            // so simply subtracting numToKeep from the currently last build number might cause us to delete too many.)
+            RunList<? extends Run<?, ?>> builds = job.getBuilds();
+            for (Run<?, ?> r : builds.subList(Math.min(builds.size(), count), builds.size())) {
+                numbers.add(r.getNumber());
+            }
+        }
+        return numbers;
+    }
+
+    /**
+     * Selects the oldest builds of a job, up to the first one which is too new.
+     * Like {@link #olderThan}, this loads no build when the job keeps summaries of them.
+     *
+     * @return build numbers, oldest first
+     */
+    private static List<Integer> startedBefore(Job<?, ?> job, Calendar cal) {
+        List<Integer> numbers = new ArrayList<>();
+        BuildSummaryIndex summaries = job.getBuildSummaryIndex();
+        if (summaries != null) {
+            List<BuildSummary> newestFirst = new ArrayList<>();
+            summaries.newestFirst(true).forEach(newestFirst::add);
+            for (int i = newestFirst.size() - 1; i >= 0; i--) {
+                BuildSummary s = newestFirst.get(i);
+                if (s.getTimeInMillis() >= cal.getTimeInMillis()) {
+                    LOGGER.log(FINER, "{0} #{1} is not to be removed or purged of artifacts because it’s still new", new Object[] {job, s.getNumber()});
+                    break;
+                }
+                numbers.add(s.getNumber());
+            }
+        } else {
+            Run<?, ?> r = job.getFirstBuild();
+            while (r != null) {
+                if (tooNew(r, cal)) {
+                    break;
+                }
+                numbers.add(r.getNumber());
+                r = r.getNextBuild();
+            }
+        }
+        return numbers;
+    }
+
     private boolean shouldKeepRun(Run r, Run lsb, Run lstb) {
         if (r.isKeepLog()) {
             LOGGER.log(FINER, "{0} is not to be removed or purged of artifacts because it’s marked as a keeper", r);
@@ -257,7 +316,7 @@ public class LogRotator extends BuildDiscarder {
         return false;
     }
 
-    private boolean tooNew(Run r, Calendar cal) {
+    private static boolean tooNew(Run r, Calendar cal) {
         if (!r.getTimestamp().before(cal)) {
             LOGGER.log(FINER, "{0} is not to be removed or purged of artifacts because it’s still new", r);
             return true;
@@ -46,7 +46,17 @@ public class MavenConsoleAnnotator extends LineTransformationOutputStream.Delega
 
     @Override
     protected void eol(byte[] b, int len) throws IOException {
-        String line = charset.decode(ByteBuffer.wrap(b, 0, len)).toString();
+        eol(b, 0, len);
+    }
+
+    @Override
+    protected void eol(byte[] b, int off, int len) throws IOException {
+        // all the notes are for lines starting with [INFO], [WARNING] or [ERROR]: do not decode the others
+        if (len == 0 || b[off] != '[') {
+            out.write(b, off, len);
+            return;
+        }
+        String line = charset.decode(ByteBuffer.wrap(b, off, len)).toString();
 
         // trim off CR/LF from the end
         line = trimEOL(line);
@@ -71,7 +81,7 @@ public class MavenConsoleAnnotator extends LineTransformationOutputStream.Delega
         if (m.find())
             new MavenErrorNote().encodeTo(out);
 
-        out.write(b, 0, len);
+        out.write(b, off, len);
     }
 
 }
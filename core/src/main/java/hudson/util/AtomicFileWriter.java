@@ -30,6 +30,7 @@ import hudson.Functions;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Writer;
 import java.lang.ref.Cleaner;
 import java.nio.channels.FileChannel;
@@ -44,6 +45,8 @@ import java.nio.file.StandardOpenOption;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import jenkins.util.SystemProperties;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
 
 /**
  * Buffered {@link FileWriter} that supports atomic operations.
@@ -189,6 +192,33 @@ public class AtomicFileWriter extends Writer {
         core.flush();
     }
 
+    /**
+     * Gets a stream writing bytes as they are to the temporary file, such as compressed data,
+     * rather than encoding characters with the charset of this writer.
+     * Closing it does nothing, as the file is closed by {@link #commit} or {@link #abort}.
+     *
+     * @since TODO
+     */
+    @Restricted(NoExternalUse.class)
+    public @NonNull OutputStream getOutputStream() {
+        return new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                core.writeBytes(new byte[] {(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                core.writeBytes(b, off, len);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                core.flush();
+            }
+        };
+    }
+
     @Override
     public void close() throws IOException {
         core.close();
@@ -73,6 +73,16 @@ public class FileChannelWriter extends Writer implements Channel {
         channel.write(byteBuffer);
     }
 
+    /**
+     * Writes bytes as they are, regardless of the charset.
+     */
+    void writeBytes(byte[] b, int off, int len) throws IOException {
+        ByteBuffer byteBuffer = ByteBuffer.wrap(b, off, len);
+        while (byteBuffer.hasRemaining()) {
+            channel.write(byteBuffer);
+        }
+    }
+
     @Override
     public void flush() throws IOException {
         if (forceOnFlush) {
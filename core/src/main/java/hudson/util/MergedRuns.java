@@ -0,0 +1,291 @@
+package hudson.util;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.model.Job;
+import hudson.model.Run;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.function.Predicate;
+import jenkins.model.lazy.BuildSummary;
+import jenkins.model.lazy.BuildSummaryIndex;
+
+/**
+ * Runs of several jobs, newest first, merged lazily from the runs of each job with a heap holding the next run of each.
+ *
+ * <p>
+ * Runs of jobs with {@linkplain Job#getBuildSummaryIndex build summaries} are ordered, filtered and skipped using those,
+ * so that only the runs actually returned are loaded, and iterating the first few runs of thousands of jobs stays cheap.
+ * Other jobs are iterated through {@link Job#getBuilds} as before.
+ *
+ * <p>
+ * Runs started at the same time are ordered by job full name then by decreasing number,
+ * so that a position in the list, as used by {@link #after}, is stable.
+ * Instances are immutable: filters return a new instance.
+ */
+final class MergedRuns<R extends Run> implements Iterable<R> {
+
+    private final List<? extends Job> jobs;
+    private final Predicate<R> filter;
+    private final Predicate<BuildSummary> summaryFilter;
+    private final int limit;
+    private final @CheckForNull Position after;
+
+    MergedRuns(@NonNull Collection<? extends Job> jobs) {
+        this(List.copyOf(jobs), r -> true, s -> true, Integer.MAX_VALUE, null);
+    }
+
+    private MergedRuns(List<? extends Job> jobs, Predicate<R> filter, Predicate<BuildSummary> summaryFilter, int limit, @CheckForNull Position after) {
+        this.jobs = jobs;
+        this.filter = filter;
+        this.summaryFilter = summaryFilter;
+        this.limit = limit;
+        this.after = after;
+    }
+
+    /**
+     * Keeps only the runs matching a filter.
+     * Filters apply before the {@link #limit}, so this must not be called once {@link #isLimited}.
+     *
+     * @param summaryFilter the same filter, used instead for runs with a summary
+     */
+    MergedRuns<R> filter(@NonNull Predicate<R> filter, @NonNull Predicate<BuildSummary> summaryFilter) {
+        if (isLimited()) {
+            throw new IllegalStateException("cannot filter " + this + " once limited");
+        }
+        return new MergedRuns<>(jobs, this.filter.and(filter), this.summaryFilter.and(summaryFilter), limit, after);
+    }
+
+    /**
+     * Keeps only the first runs.
+     */
+    MergedRuns<R> limit(int n) {
+        return new MergedRuns<>(jobs, filter, summaryFilter, Math.min(limit, Math.max(n, 0)), after);
+    }
+
+    /**
+     * Whether {@link #limit} was called, after which neither {@link #filter} nor {@link #after} may be.
+     */
+    boolean isLimited() {
+        return limit < Integer.MAX_VALUE;
+    }
+
+    /**
+     * Keeps only the runs following a position, typically that of a run which may have been filtered out or deleted since.
+     * This applies before the {@link #limit}, so must not be called once {@link #isLimited}.
+     */
+    MergedRuns<R> after(@NonNull Position position) {
+        if (isLimited()) {
+            throw new IllegalStateException("cannot skip runs of " + this + " once limited");
+        }
+        return new MergedRuns<>(jobs, filter, summaryFilter, limit, position);
+    }
+
+    @Override
+    public Itr iterator() {
+        return new Itr();
+    }
+
+    @Override
+    public String toString() {
+        return "MergedRuns" + jobs;
+    }
+
+    /**
+     * Where a run is in the list, which remains meaningful once the run is deleted.
+     */
+    record Position(long timestamp, @NonNull String job, int number) implements Comparable<Position> {
+
+        static @NonNull Position of(@NonNull Run<?, ?> run) {
+            return new Position(run.getTimeInMillis(), run.getParent().getFullName(), run.getNumber());
+        }
+
+        /**
+         * Reads a position written by {@link #toCursor}.
+         *
+         * @return null if this is not such a cursor
+         */
+        static @CheckForNull Position fromCursor(@NonNull String cursor) {
+            // job names cannot contain ':', so it only separates the fields
+            String[] fields = cursor.split(":", 3);
+            if (fields.length != 3 || fields[2].isEmpty()) {
+                return null;
+            }
+            try {
+                return new Position(Long.parseLong(fields[0]), fields[2], Integer.parseInt(fields[1]));
+            } catch (NumberFormatException x) {
+                return null;
+            }
+        }
+
+        @NonNull String toCursor() {
+            return timestamp + ":" + number + ":" + job;
+        }
+
+        /**
+         * Newest first.
+         */
+        @Override
+        public int compareTo(Position o) {
+            int c = Long.compare(o.timestamp, timestamp);
+            if (c != 0) {
+                return c;
+            }
+            c = job.compareTo(o.job);
+            if (c != 0) {
+                return c;
+            }
+            return Integer.compare(o.number, number);
+        }
+    }
+
+    /**
+     * The runs of a job not merged yet.
+     */
+    private final class Source implements Comparable<Source> {
+        private final String name;
+        private final @CheckForNull BuildSummaryIndex index;
+        private final Iterator<?> iterator;
+        /** The next {@link BuildSummary} if {@link #index} is known, otherwise the next {@link Run}. */
+        private Object head;
+        private Position position;
+
+        Source(Job<?, ?> job) {
+            name = job.getFullName();
+            index = job.getBuildSummaryIndex();
+            iterator = index != null ? index.newestFirst(true).iterator() : job.getBuilds().iterator();
+        }
+
+        /**
+         * Moves to the next run matching the filters.
+         *
+         * @return false if there is none
+         */
+        @SuppressWarnings("unchecked")
+        boolean advance() {
+            while (iterator.hasNext()) {
+                Object o = iterator.next();
+                if (index != null) {
+                    BuildSummary s = (BuildSummary) o;
+                    position = new Position(s.getTimeInMillis(), name, s.getNumber());
+                    if (after != null && position.compareTo(after) <= 0 || !summaryFilter.test(s)) {
+                        continue;
+                    }
+                } else {
+                    R r = (R) o;
+                    position = new Position(r.getTimeInMillis(), name, r.getNumber());
+                    if (after != null && position.compareTo(after) <= 0 || !filter.test(r)) {
+                        continue;
+                    }
+                }
+                head = o;
+                return true;
+            }
+            head = null;
+            return false;
+        }
+
+        /**
+         * Loads a run of this job.
+         *
+         * @param head the current or a former {@link #head}
+         * @return null if it can no longer be loaded
+         */
+        @SuppressWarnings("unchecked")
+        @CheckForNull R load(Object head) {
+            return index != null ? (R) index.load((BuildSummary) head) : (R) head;
+        }
+
+        @Override
+        public int compareTo(Source o) {
+            return position.compareTo(o.position);
+        }
+    }
+
+    final class Itr implements Iterator<R> {
+        private final PriorityQueue<Source> heap = new PriorityQueue<>();
+        private int count;
+        private R next;
+
+        Itr() {
+            for (Job<?, ?> job : jobs) {
+                Source s = new Source(job);
+                if (s.advance()) {
+                    heap.add(s);
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && count < limit) {
+                Source s = heap.poll();
+                if (s == null) {
+                    return false;
+                }
+                next = s.load(s.head);
+                if (s.advance()) {
+                    heap.add(s);
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public R next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            R r = next;
+            next = null;
+            count++;
+            return r;
+        }
+
+        /**
+         * Skips runs, loading none of those with a summary.
+         *
+         * @param n the maximal number of runs to skip
+         * @param loadLast whether to load the last skipped run
+         * @return the last skipped run if requested and it could be loaded
+         */
+        @CheckForNull R skip(int n, boolean loadLast) {
+            R last = null;
+            if (next != null && n > 0) {
+                last = next;
+                next = null;
+                count++;
+                n--;
+            }
+            Source lastSource = null;
+            Object lastHead = null;
+            while (n > 0 && count < limit) {
+                Source s = heap.poll();
+                if (s == null) {
+                    break;
+                }
+                lastSource = s;
+                lastHead = s.head;
+                count++;
+                n--;
+                if (s.advance()) {
+                    heap.add(s);
+                }
+            }
+            if (lastSource != null) {
+                last = loadLast ? lastSource.load(lastHead) : null;
+            }
+            return last;
+        }
+
+        /**
+         * Gets the number of runs returned or skipped so far.
+         */
+        int getCount() {
+            return count;
+        }
+    }
+}
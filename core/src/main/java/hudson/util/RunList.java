@@ -26,6 +26,9 @@ package hudson.util;
 
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Iterators;
+import com.google.common.collect.PeekingIterator;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.Nullable;
 import hudson.model.AbstractBuild;
 import hudson.model.Job;
@@ -40,14 +43,19 @@ import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.GregorianCalendar;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Objects;
 import java.util.Set;
 import java.util.Spliterator;
 import java.util.function.Predicate;
+import jenkins.model.lazy.BuildSummary;
+import jenkins.model.lazy.BuildSummaryIndex;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.springframework.security.access.AccessDeniedException;
 
 /**
  * {@link List} of {@link Run}s, sorted in the descending date order.
@@ -61,6 +69,13 @@ public class RunList<R extends Run> extends AbstractList<R> {
     private R first;
     private Integer size;
 
+    /**
+     * Summaries of the runs in {@link #base}, newest first, as long as only filters they can answer were applied.
+     * {@link #base} then only loads the runs whose summaries passed the filters.
+     */
+    private @CheckForNull Iterable<BuildSummary> summaries;
+    private @CheckForNull BuildSummaryIndex summaryIndex;
+
     public RunList() {
         base = Collections.emptyList();
     }
@@ -74,18 +89,11 @@ public class RunList<R extends Run> extends AbstractList<R> {
         for (TopLevelItem item : view.getItems())
             jobs.addAll(item.getAllJobs());
 
-        List<Iterable<R>> runLists = new ArrayList<>();
-        for (Job job : jobs) {
-            runLists.add(job.getBuilds());
-        }
-        this.base = combine(runLists);
+        this.base = new MergedRuns<>(jobs);
     }
 
     public RunList(Collection<? extends Job> jobs) {
-        List<Iterable<R>> runLists = new ArrayList<>();
-        for (Job j : jobs)
-            runLists.add(j.getBuilds());
-        this.base = combine(runLists);
+        this.base = new MergedRuns<>(jobs);
     }
 
     /**
@@ -98,21 +106,9 @@ public class RunList<R extends Run> extends AbstractList<R> {
      * @since 2.37
      */
     public static <J extends Job<J, R>, R extends Run<J, R>> RunList<R> fromJobs(Iterable<? extends J> jobs) {
-        List<Iterable<R>> runLists = new ArrayList<>();
-        for (Job j : jobs)
-            runLists.add(j.getBuilds());
-        return new RunList<>(combine(runLists));
-    }
-
-    private static <R extends Run> Iterable<R> combine(Iterable<Iterable<R>> runLists) {
-        return Iterables.mergeSorted(runLists, new Comparator<>() {
-            @Override
-            public int compare(R o1, R o2) {
-                long lhs = o1.getTimeInMillis();
-                long rhs = o2.getTimeInMillis();
-                return Long.compare(rhs, lhs);
-            }
-        });
+        List<J> list = new ArrayList<>();
+        Iterables.addAll(list, jobs);
+        return new RunList<>(new MergedRuns<>(list));
     }
 
     private RunList(Iterable<R> c) {
@@ -131,6 +127,21 @@ public class RunList<R extends Run> extends AbstractList<R> {
     @Override
     @Deprecated
     public int size() {
+        if (size == null && summaries != null) {
+            int sz = 0;
+            BuildSummary last = null;
+            for (BuildSummary s : summaries) {
+                last = s;
+                sz++;
+            }
+            first = last != null ? getRun(last) : null;
+            size = sz;
+        }
+        if (size == null && base instanceof MergedRuns<R> merged) {
+            MergedRuns<R>.Itr itr = merged.iterator();
+            first = itr.skip(Integer.MAX_VALUE, true);
+            size = itr.getCount();
+        }
         if (size == null) {
             int sz = 0;
             for (R r : this) {
@@ -149,7 +160,15 @@ public class RunList<R extends Run> extends AbstractList<R> {
     @Override
     @Deprecated
     public R get(int index) {
-        return Iterators.get(iterator(), index);
+        Iterator<R> itr = iterator();
+        if (itr instanceof MergedRuns<R>.Itr merged) {
+            merged.skip(index, false);
+            if (!merged.hasNext()) {
+                throw new IndexOutOfBoundsException("position (" + index + ") must be less than the number of elements (" + merged.getCount() + ")");
+            }
+            return merged.next();
+        }
+        return Iterators.get(itr, index);
     }
 
     /**
@@ -162,7 +181,11 @@ public class RunList<R extends Run> extends AbstractList<R> {
         int sublistSize = toIndex < fromIndex ? 0 : toIndex - fromIndex;
         List<R> r = new ArrayList<>(sublistSize);
         Iterator<R> itr = iterator();
-        hudson.util.Iterators.skip(itr, fromIndex);
+        if (itr instanceof MergedRuns<R>.Itr merged) {
+            merged.skip(fromIndex, false);
+        } else {
+            hudson.util.Iterators.skip(itr, fromIndex);
+        }
         for (int i = toIndex - fromIndex; i > 0; i--) {
             r.add(itr.next());
         }
@@ -219,6 +242,57 @@ public class RunList<R extends Run> extends AbstractList<R> {
         return new RunList<R>((Iterable) runs);
     }
 
+    /**
+     * Creates a list of the runs of a single job, whose filters on result, time or state use the summaries
+     * of the runs instead of loading them.
+     *
+     * @param runs all the runs of the job, newest first
+     * @param summaryIndex the summaries of those runs
+     * @since TODO
+     */
+    @Restricted(NoExternalUse.class)
+    public static <R extends Run>
+    RunList<R> fromRuns(Collection<? extends R> runs, @NonNull BuildSummaryIndex summaryIndex) {
+        RunList<R> list = fromRuns(runs);
+        list.summaryIndex = summaryIndex;
+        list.summaries = summaryIndex.newestFirst(true);
+        return list;
+    }
+
+    /**
+     * Gets the summaries of the runs in this list, newest first, when they are known.
+     * They stop being known once filtered by anything but their summaries, such as with {@link #filter(Predicate)}.
+     *
+     * @since TODO
+     */
+    @Restricted(NoExternalUse.class)
+    public @CheckForNull Iterable<BuildSummary> getSummaries() {
+        return summaries;
+    }
+
+    /**
+     * Loads a run from one of the {@link #getSummaries summaries}.
+     *
+     * @return null if it can no longer be loaded
+     * @since TODO
+     */
+    @Restricted(NoExternalUse.class)
+    @SuppressWarnings("unchecked")
+    public @CheckForNull R getRun(@NonNull BuildSummary summary) {
+        return summaryIndex != null ? (R) summaryIndex.load(summary) : null;
+    }
+
+    /**
+     * Replaces the runs of this list by those with the given summaries, loaded on demand.
+     */
+    private RunList<R> useSummaries(Iterable<BuildSummary> s) {
+        size = null;
+        first = null;
+        summaries = s;
+        base = Iterables.filter(Iterables.transform(s, this::getRun), Objects::nonNull);
+        return this;
+    }
+
     /**
      * Returns elements that satisfy the given predicate.
      * <em>Warning:</em> this method mutates the original list and then returns it.
@@ -251,10 +325,28 @@ public class RunList<R extends Run> extends AbstractList<R> {
     public RunList<R> filter(com.google.common.base.Predicate<R> predicate) {
         size = null;
         first = null;
+        summaries = null;
         base = Iterables.filter(base, predicate);
         return this;
     }
 
+    /**
+     * Like {@link #filter(Predicate)}, but using only the summaries of the runs if they are known.
+     */
+    private RunList<R> filter(Predicate<R> predicate, Predicate<BuildSummary> summaryPredicate) {
+        // once limited, filtering applies to the remaining runs only, which MergedRuns does not do
+        if (summaries == null && base instanceof MergedRuns<R> merged && !merged.isLimited()) {
+            size = null;
+            first = null;
+            base = merged.filter(predicate, summaryPredicate);
+            return this;
+        }
+        if (summaries == null) {
+            return filter(predicate);
+        }
+        return useSummaries(Iterables.filter(summaries, summaryPredicate::test));
+    }
+
     /**
      * Returns the first streak of the elements that satisfy the given predicate.
      *
@@ -263,6 +355,7 @@ public class RunList<R extends Run> extends AbstractList<R> {
     private RunList<R> limit(final CountingPredicate<R> predicate) {
         size = null;
         first = null;
+        summaries = null;
         final Iterable<R> nested = base;
         base = new Iterable<>() {
             @Override
@@ -278,6 +371,27 @@ public class RunList<R extends Run> extends AbstractList<R> {
         return this;
     }
 
+    /**
+     * Like {@link #limit(CountingPredicate)}, but using only the summaries of the runs if they are known.
+     */
+    private RunList<R> limit(CountingPredicate<R> predicate, CountingPredicate<BuildSummary> summaryPredicate) {
+        if (summaries == null) {
+            return limit(predicate);
+        }
+        final Iterable<BuildSummary> nested = summaries;
+        return useSummaries(new Iterable<>() {
+            @Override
+            public Iterator<BuildSummary> iterator() {
+                return hudson.util.Iterators.limit(nested.iterator(), summaryPredicate);
+            }
+
+            @Override
+            public String toString() {
+                return Iterables.toString(this);
+            }
+        });
+    }
+
     /**
      * Return only the most recent builds.
      * <em>Warning:</em> this method mutates the original list and then returns it.
@@ -286,20 +400,86 @@ public class RunList<R extends Run> extends AbstractList<R> {
      * @since 1.507
      */
     public RunList<R> limit(final int n) {
+        if (summaries == null && base instanceof MergedRuns<R> merged) {
+            size = null;
+            first = null;
+            base = merged.limit(n);
+            return this;
+        }
         return limit(new CountingPredicate<>() {
             @Override
             public boolean apply(int index, R input) {
                 return index < n;
             }
+        }, new CountingPredicate<>() {
+            @Override
+            public boolean apply(int index, BuildSummary input) {
+                return index < n;
+            }
         });
     }
 
+    /**
+     * Return only the builds following a given one, for pagination.
+     * <em>Warning:</em> this method mutates the original list and then returns it.
+     * @param cursor the {@link #cursorOf cursor} of a build returned by this list, which may have been deleted since,
+     *               or its {@link Run#getExternalizableId}; null to keep all builds
+     * @since TODO
+     */
+    @Restricted(NoExternalUse.class)
+    public RunList<R> after(@CheckForNull String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return this;
+        }
+        MergedRuns.Position after = MergedRuns.Position.fromCursor(cursor);
+        if (after == null) {
+            Run<?, ?> run;
+            try {
+                run = Run.fromExternalizableId(cursor);
+            } catch (IllegalArgumentException | AccessDeniedException x) {
+                run = null;
+            }
+            if (run == null) {
+                // deleted meanwhile, or not a build at all
+                return this;
+            }
+            after = MergedRuns.Position.of(run);
+        }
+        size = null;
+        first = null;
+        if (summaries == null && base instanceof MergedRuns<R> merged && !merged.isLimited()) {
+            base = merged.after(after);
+            return this;
+        }
+        final MergedRuns.Position position = after;
+        final Iterable<R> nested = base;
+        summaries = null;
+        base = () -> {
+            PeekingIterator<R> itr = Iterators.peekingIterator(nested.iterator());
+            while (itr.hasNext() && MergedRuns.Position.of(itr.peek()).compareTo(position) <= 0) {
+                itr.next();
+            }
+            return itr;
+        };
+        return this;
+    }
+
+    /**
+     * Gets the position of a build in lists of builds, to pass to {@link #after}.
+     * Unlike the build itself, it can still be used once the build is deleted.
+     * @since TODO
+     */
+    @Restricted(NoExternalUse.class)
+    public static @NonNull String cursorOf(@NonNull Run<?, ?> run) {
+        return MergedRuns.Position.of(run).toCursor();
+    }
+
     /**
      * Filter the list to non-successful builds only.
      * <em>Warning:</em> this method mutates the original list and then returns it.
      */
     public RunList<R> failureOnly() {
-        return filter((Predicate<R>) r -> r.getResult() != Result.SUCCESS);
+        return filter(r -> r.getResult() != Result.SUCCESS, s -> s.getResult() != Result.SUCCESS);
     }
 
     /**
@@ -308,7 +488,8 @@ public class RunList<R extends Run> extends AbstractList<R> {
      * @since 1.517
      */
     public RunList<R> overThresholdOnly(final Result threshold) {
-        return filter((Predicate<R>) r -> r.getResult() != null && r.getResult().isBetterOrEqualTo(threshold));
+        return filter(r -> r.getResult() != null && r.getResult().isBetterOrEqualTo(threshold),
+                s -> s.getResult() != null && s.getResult().isBetterOrEqualTo(threshold));
     }
 
     /**
@@ -317,7 +498,7 @@ public class RunList<R extends Run> extends AbstractList<R> {
      * @since 1.561
      */
     public RunList<R> completedOnly() {
-        return filter((Predicate<R>) r -> !r.isBuilding());
+        return filter(r -> !r.isBuilding(), s -> !s.isBuilding());
     }
 
     /**
@@ -349,7 +530,12 @@ public class RunList<R extends Run> extends AbstractList<R> {
             public boolean apply(int index, R r) {
                 return start <= r.getTimeInMillis();
             }
-        }).filter((Predicate<R>) r -> r.getTimeInMillis() < end);
+        }, new CountingPredicate<>() {
+            @Override
+            public boolean apply(int index, BuildSummary s) {
+                return start <= s.getTimeInMillis();
+            }
+        }).filter(r -> r.getTimeInMillis() < end, s -> s.getTimeInMillis() < end);
     }
 
     /**
@@ -364,13 +550,18 @@ public class RunList<R extends Run> extends AbstractList<R> {
         final long t = cal.getTimeInMillis();
 
         // can't publish on-going builds
-        return filter((Predicate<R>) r -> !r.isBuilding())
+        return filter(r -> !r.isBuilding(), s -> !s.isBuilding())
         // put at least 10 builds, but otherwise ignore old builds
         .limit(new CountingPredicate<>() {
             @Override
             public boolean apply(int index, R r) {
                 return index < 10 || r.getTimeInMillis() >= t;
             }
+        }, new CountingPredicate<>() {
+            @Override
+            public boolean apply(int index, BuildSummary s) {
+                return index < 10 || s.getTimeInMillis() >= t;
+            }
         });
     }
 }
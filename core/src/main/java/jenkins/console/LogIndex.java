@@ -0,0 +1,677 @@
+package jenkins.console;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.console.ConsoleNote;
+import hudson.console.PlainTextConsoleOutputStream;
+import hudson.util.ByteArrayOutputStream2;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import jenkins.util.SystemProperties;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Reads a build log from a given line or offset, using sidecar indexes when they exist.
+ *
+ * <p>
+ * While a build runs, {@link #indexing} records in {@code log-index} the offset of every {@link #STRIDE}th line
+ * of its log, so that finding any line only reads one entry of the index and at most that many lines of the log.
+ * The index may lag behind the log while it is written, or stop early if it could not be written,
+ * so the log is always read past its last entry.
+ *
+ * <p>
+ * The offsets of the {@link ConsoleNote}s written are recorded in {@code log-notes}, so that the plain text of
+ * a completed log can be {@linkplain #transferPlainText copied} from it directly, without decoding it.
+ *
+ * <p>
+ * {@link #compress} replaces a log by a {@code log.gz} made of independently compressed blocks, which is still
+ * a regular GZIP file, and records where each block starts in {@code log.gz-blocks}, so that a compressed log can be
+ * read from any offset by decompressing at most one block beforehand. Offsets are always those of the uncompressed log.
+ *
+ * <p>
+ * Without indexes, the same operations read the log from its start.
+ *
+ * @since TODO
+ */
+@Restricted(NoExternalUse.class)
+public final class LogIndex {
+
+    /**
+     * Whether the logs of new builds are indexed.
+     */
+    public static /* Script Console modifiable */ boolean ENABLED = !SystemProperties.getBoolean(LogIndex.class.getName() + ".disabled");
+
+    /**
+     * Number of lines between two entries of the line index.
+     */
+    static final int STRIDE = 32;
+
+    /**
+     * Size of the uncompressed data in each block of a compressed log.
+     */
+    static final int BLOCK_SIZE = 1 << 20;
+
+    private static final int LINES_MAGIC = 0x4C494458;
+    private static final int BLOCKS_MAGIC = 0x4C474942;
+    private static final int LINES_HEADER = 12;
+
+    /**
+     * Set in the header of the line index once the log was completely written.
+     */
+    private static final int COMPLETE = 1;
+
+    /**
+     * Set in the header of the line index if the log contains malformed {@link ConsoleNote}s,
+     * which are not recorded since {@link PlainTextConsoleOutputStream} may not remove them entirely.
+     */
+    private static final int MALFORMED_NOTES = 2;
+
+    private final File log;
+    private final @CheckForNull File lines;
+    private final int stride;
+    private final int flags;
+    private final long entries;
+    private final @CheckForNull long[] blocks;
+    private final int blockSize;
+
+    private LogIndex(File log, @CheckForNull File lines, int stride, int flags, long entries, @CheckForNull long[] blocks, int blockSize) {
+        this.log = log;
+        this.lines = lines;
+        this.stride = stride;
+        this.flags = flags;
+        this.entries = entries;
+        this.blocks = blocks;
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Gets the indexes of a log.
+     *
+     * @param log a plain or {@code .gz} log, as returned by {@link hudson.model.Run#getLogFile}
+     */
+    public static @NonNull LogIndex of(@NonNull File log) {
+        boolean compressed = log.getName().endsWith(".gz");
+        String base = compressed ? log.getName().substring(0, log.getName().length() - 3) : log.getName();
+        long[] blocks = null;
+        int blockSize = 0;
+        long length = -1;
+        if (compressed) {
+            File blocksFile = new File(log.getParentFile(), log.getName() + "-blocks");
+            if (blocksFile.isFile()) {
+                try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(blocksFile.toPath())))) {
+                    if (in.readInt() == BLOCKS_MAGIC) {
+                        blockSize = in.readInt();
+                        length = in.readLong();
+                        long[] offsets = new long[in.readInt()];
+                        for (int i = 0; i < offsets.length; i++) {
+                            offsets[i] = in.readLong();
+                        }
+                        if (blockSize > 0 && offsets.length > 0) {
+                            blocks = offsets;
+                        }
+                    }
+                } catch (IOException | InvalidPathException x) {
+                    LOGGER.log(Level.FINE, "Ignoring " + blocksFile, x);
+                }
+            }
+        } else {
+            length = log.length();
+        }
+        File linesFile = new File(log.getParentFile(), base + "-index");
+        if (linesFile.isFile()) {
+            try (RandomAccessFile in = new RandomAccessFile(linesFile, "r")) {
+                long entries = (in.length() - LINES_HEADER) / Long.BYTES;
+                if (entries > 0 && in.readInt() == LINES_MAGIC) {
+                    int stride = in.readInt();
+                    int flags = in.readInt();
+                    in.seek(LINES_HEADER + (entries - 1) * Long.BYTES);
+                    // otherwise not the index of this log
+                    if (stride > 0 && (length == -1 || in.readLong() <= length)) {
+                        return new LogIndex(log, linesFile, stride, flags, entries, blocks, blockSize);
+                    }
+                }
+            } catch (IOException x) {
+                LOGGER.log(Level.FINE, "Ignoring " + linesFile, x);
+            }
+        }
+        return new LogIndex(log, null, Integer.MAX_VALUE, 0, 1, blocks, blockSize);
+    }
+
+    /**
+     * Whether lines can be found without reading the log from its start.
+     */
+    public boolean isIndexed() {
+        return lines != null && (blocks != null || !log.getName().endsWith(".gz"));
+    }
+
+    /**
+     * Whether the log is complete, uncompressed, and its {@link ConsoleNote}s are all known,
+     * so that its plain text can be {@linkplain #transferPlainText copied} from it directly.
+     */
+    public boolean isTransferable() {
+        return lines != null && (flags & (COMPLETE | MALFORMED_NOTES)) == COMPLETE && !log.getName().endsWith(".gz")
+                && new File(log.getParentFile(), log.getName() + "-notes").isFile();
+    }
+
+    /**
+     * Reads the offsets of the notes of a {@link #isTransferable} log.
+     *
+     * @return the start and end offsets of each note, in order
+     */
+    private long[] notes() throws IOException {
+        File file = new File(log.getParentFile(), log.getName() + "-notes");
+        long[] notes = new long[(int) (file.length() / (2 * Long.BYTES)) * 2];
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+            for (int i = 0; i < notes.length; i++) {
+                notes[i] = in.readLong();
+            }
+        } catch (InvalidPathException x) {
+            throw new IOException(x);
+        }
+        return notes;
+    }
+
+    /**
+     * Gets the length of the plain text of a {@link #isTransferable} log, that is without its notes.
+     */
+    public long getPlainTextLength() throws IOException {
+        long length = log.length();
+        long[] notes = notes();
+        for (int i = 0; i < notes.length; i += 2) {
+            length -= notes[i + 1] - notes[i];
+        }
+        return length;
+    }
+
+    /**
+     * Copies part of the plain text of a {@link #isTransferable} log, as {@link PlainTextConsoleOutputStream} would
+     * produce it, letting the operating system transfer the data between notes if the output allows it.
+     *
+     * @param start the offset in the plain text of the first byte to copy
+     * @param end the offset in the plain text following the last byte to copy
+     */
+    public void transferPlainText(long start, long end, @NonNull OutputStream out) throws IOException {
+        long[] notes = notes();
+        WritableByteChannel target = out instanceof WritableByteChannel c ? c : Channels.newChannel(out);
+        try (FileChannel ch = FileChannel.open(log.toPath(), StandardOpenOption.READ)) {
+            long length = ch.size();
+            long raw = 0;
+            long plain = 0;
+            for (int i = 0; i <= notes.length && plain < end; i += 2) {
+                long noteStart = i < notes.length ? notes[i] : length;
+                // the text from raw to noteStart is the plain text from plain on
+                long from = Math.max(start, plain);
+                long to = Math.min(end, plain + noteStart - raw);
+                if (from < to) {
+                    transfer(ch, raw + from - plain, raw + to - plain, target);
+                }
+                plain += noteStart - raw;
+                raw = i < notes.length ? notes[i + 1] : length;
+            }
+        } catch (InvalidPathException x) {
+            throw new IOException(x);
+        }
+    }
+
+    private static void transfer(FileChannel ch, long start, long end, WritableByteChannel target) throws IOException {
+        long position = start;
+        while (position < end) {
+            long n = ch.transferTo(position, end - position, target);
+            if (n <= 0) {
+                // truncated meanwhile
+                break;
+            }
+            position += n;
+        }
+    }
+
+    /**
+     * Opens the log.
+     *
+     * @param offset an offset in the uncompressed log
+     * @return the content of the uncompressed log from that offset
+     */
+    public @NonNull InputStream open(long offset) throws IOException {
+        InputStream in;
+        try {
+            in = Files.newInputStream(log.toPath());
+        } catch (InvalidPathException x) {
+            throw new IOException(x);
+        }
+        try {
+            if (!log.getName().endsWith(".gz")) {
+                in.skipNBytes(Math.min(offset, log.length()));
+                return in;
+            }
+            long skip = offset;
+            if (blocks != null) {
+                int block = (int) Math.min(offset / blockSize, blocks.length - 1);
+                in.skipNBytes(blocks[block]);
+                skip -= (long) block * blockSize;
+            }
+            in = new GZIPInputStream(in, 8192);
+            skip(in, skip);
+            return in;
+        } catch (IOException | RuntimeException x) {
+            in.close();
+            throw x;
+        }
+    }
+
+    private static void skip(InputStream in, long n) throws IOException {
+        while (n > 0) {
+            long skipped = in.skip(n);
+            if (skipped <= 0) {
+                // past the end, as with a plain log
+                return;
+            }
+            n -= skipped;
+        }
+    }
+
+    private long entry(long i) throws IOException {
+        if (lines == null || i == 0) {
+            return 0;
+        }
+        try (RandomAccessFile in = new RandomAccessFile(lines, "r")) {
+            in.seek(LINES_HEADER + i * Long.BYTES);
+            return in.readLong();
+        }
+    }
+
+    /**
+     * Finds where a line starts.
+     *
+     * @param line a line number, starting from 0
+     * @return the offset of its first byte, or -1 if the log has fewer lines
+     */
+    public long getLineOffset(long line) throws IOException {
+        if (line < 0) {
+            return -1;
+        }
+        long i = Math.min(line / stride, entries - 1);
+        long remaining = line - i * stride;
+        Scan s = scan(entry(i), remaining);
+        return s.newlines == remaining && s.more ? s.after : -1;
+    }
+
+    /**
+     * Counts the lines of the log, the last one being counted even if it does not end with a newline.
+     */
+    public long getLineCount() throws IOException {
+        long last = entries - 1;
+        Scan s = scan(entry(last), Long.MAX_VALUE);
+        return last * stride + s.newlines + (s.more ? 1 : 0);
+    }
+
+    /**
+     * Reads the last lines of the log.
+     *
+     * @param count the maximal number of lines to read
+     * @param lines where to add the lines read, without their line terminator
+     * @return the offset of the first line read
+     */
+    public long readLastLines(int count, @NonNull List<String> lines, @NonNull Charset charset) throws IOException {
+        long offset = getLineOffset(Math.max(0, getLineCount() - count));
+        if (offset == -1) {
+            return 0;
+        }
+        ByteArrayOutputStream2 line = new ByteArrayOutputStream2();
+        int read = 0;
+        try (InputStream in = new BufferedInputStream(open(offset))) {
+            int b;
+            while (read < count && (b = in.read()) != -1) {
+                if (b == '\n') {
+                    lines.add(line.toString(charset));
+                    line.reset();
+                    read++;
+                } else if (b != '\r') {
+                    line.write(b);
+                }
+            }
+        }
+        if (read < count && line.size() > 0) {
+            lines.add(line.toString(charset));
+        }
+        return offset;
+    }
+
+    private record Scan(long after, long newlines, boolean more) {}
+
+    /**
+     * Reads the log from an offset until it went past a number of newlines, or to its end.
+     *
+     * @return the offset following the last newline read, or the initial offset,
+     * the number of newlines read, and whether there is anything from that offset
+     */
+    private Scan scan(long offset, long newlines) throws IOException {
+        long count = 0;
+        long after = offset;
+        long position = offset;
+        byte[] buf = new byte[8192];
+        try (InputStream in = open(offset)) {
+            int n;
+            while ((n = in.read(buf)) != -1) {
+                for (int i = 0; i < n; i++) {
+                    if (count == newlines) {
+                        return new Scan(after, count, true);
+                    }
+                    if (buf[i] == '\n') {
+                        count++;
+                        after = position + i + 1;
+                    }
+                }
+                position += n;
+            }
+        }
+        return new Scan(after, count, after < position);
+    }
+
+    /**
+     * Indexes a log while it is written.
+     *
+     * @param log the log file, which is only indexed if empty so far; when appending to a log,
+     *            the index written before, if any, remains valid for the beginning of the log
+     * @param out what writes to the log
+     * @return what to write to instead
+     */
+    public static @NonNull OutputStream indexing(@NonNull File log, @NonNull OutputStream out) {
+        if (!ENABLED || log.getName().endsWith(".gz") || log.length() > 0) {
+            return out;
+        }
+        File file = new File(log.getParentFile(), log.getName() + "-index");
+        File notesFile = new File(log.getParentFile(), log.getName() + "-notes");
+        try {
+            Files.deleteIfExists(notesFile.toPath());
+            FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            DataOutputStream index = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            index.writeInt(LINES_MAGIC);
+            index.writeInt(STRIDE);
+            index.writeInt(0);
+            index.writeLong(0);
+            return new IndexingOutputStream(out, index, channel, notesFile, file);
+        } catch (IOException | InvalidPathException x) {
+            LOGGER.log(Level.FINE, "Cannot index " + log, x);
+            return out;
+        }
+    }
+
+    private static final class IndexingOutputStream extends FilterOutputStream {
+        private static final byte ESC = ConsoleNote.PREAMBLE[0];
+
+        private final File file;
+        private final FileChannel channel;
+        private final File notesFile;
+        private @CheckForNull DataOutputStream index;
+        private @CheckForNull DataOutputStream notes;
+        private long position;
+        private long newlines;
+        /** How many bytes of {@link ConsoleNote#PREAMBLE}, then of {@link ConsoleNote#POSTAMBLE}, were just written. */
+        private int matched;
+        /** The offset of the note being written, or -1. */
+        private long noteStart = -1;
+        private int flags;
+        private boolean closed;
+
+        IndexingOutputStream(OutputStream out, DataOutputStream index, FileChannel channel, File notesFile, File file) {
+            super(out);
+            this.index = index;
+            this.channel = channel;
+            this.notesFile = notesFile;
+            this.file = file;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            position++;
+            if (index != null) {
+                scan((byte) b, position);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            if (index != null) {
+                scan(b, off, off + len);
+            }
+            position += len;
+        }
+
+        /**
+         * Takes bytes written into account, only looking at each of them within a note.
+         */
+        private void scan(byte[] b, int from, int to) {
+            // the offset following b[i] is base + i + 1
+            long base = position - from;
+            int i = from;
+            while (i < to && index != null) {
+                if (noteStart == -1 && matched == 0) {
+                    // outside of notes, only newlines and the start of a preamble matter
+                    while (i < to && b[i] != '\n' && b[i] != ESC) {
+                        i++;
+                    }
+                    if (i == to) {
+                        return;
+                    }
+                }
+                scan(b[i], base + i + 1);
+                i++;
+            }
+        }
+
+        /**
+         * Takes a byte written into account.
+         *
+         * @param next the offset following it
+         */
+        private void scan(byte b, long next) {
+            if (b == '\n' && ++newlines % STRIDE == 0) {
+                try {
+                    index.writeLong(next);
+                } catch (IOException x) {
+                    stop(x);
+                    return;
+                }
+            }
+            if ((flags & MALFORMED_NOTES) != 0) {
+                return;
+            }
+            if (noteStart == -1) {
+                if (b == ConsoleNote.PREAMBLE[matched]) {
+                    if (++matched == ConsoleNote.PREAMBLE.length) {
+                        noteStart = next - matched;
+                        matched = 0;
+                    }
+                } else {
+                    matched = b == ConsoleNote.PREAMBLE[0] ? 1 : 0;
+                }
+            } else if (matched > 0 || b == ConsoleNote.POSTAMBLE[0]) {
+                if (b != ConsoleNote.POSTAMBLE[matched]) {
+                    malformed();
+                } else if (++matched == ConsoleNote.POSTAMBLE.length) {
+                    note(noteStart, next);
+                    noteStart = -1;
+                    matched = 0;
+                }
+            } else if (!isBase64(b)) {
+                malformed();
+            }
+        }
+
+        private static boolean isBase64(byte b) {
+            return b >= 'A' && b <= 'Z' || b >= 'a' && b <= 'z' || b >= '0' && b <= '9' || b == '+' || b == '/' || b == '=';
+        }
+
+        private void note(long start, long end) {
+            if ((flags & MALFORMED_NOTES) != 0) {
+                return;
+            }
+            try {
+                if (notes == null) {
+                    notes = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(notesFile.toPath())));
+                }
+                notes.writeLong(start);
+                notes.writeLong(end);
+            } catch (IOException | InvalidPathException x) {
+                LOGGER.log(Level.FINE, "Cannot record notes in " + notesFile, x);
+                malformed();
+            }
+        }
+
+        /**
+         * Gives up recording notes, as their offsets may not be those {@link PlainTextConsoleOutputStream} would remove.
+         */
+        private void malformed() {
+            flags |= MALFORMED_NOTES;
+            noteStart = -1;
+            matched = 0;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+            if (index != null) {
+                try {
+                    index.flush();
+                } catch (IOException x) {
+                    stop(x);
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                out.close();
+            } finally {
+                if (index != null) {
+                    try {
+                        if (noteStart != -1) {
+                            // truncated
+                            malformed();
+                        }
+                        if (notes != null) {
+                            notes.close();
+                        } else {
+                            Files.newOutputStream(notesFile.toPath()).close();
+                        }
+                        index.flush();
+                        channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(flags | COMPLETE).flip(), 2 * Integer.BYTES);
+                        index.close();
+                    } catch (IOException | InvalidPathException x) {
+                        stop(x);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Gives up indexing, keeping what was written so far, which is still valid.
+         */
+        private void stop(Exception x) {
+            LOGGER.log(Level.FINE, "Stopped indexing " + file, x);
+            for (OutputStream os : new OutputStream[] {index, notes}) {
+                if (os != null) {
+                    try {
+                        os.close();
+                    } catch (IOException ignored) {
+                        // already failed
+                    }
+                }
+            }
+            index = null;
+            notes = null;
+        }
+    }
+
+    /**
+     * Compresses a log into seekable blocks. The line index, if any, is kept.
+     * The log must not be written to anymore.
+     *
+     * @param log a plain log file, which is deleted
+     * @return the compressed log
+     */
+    public static @NonNull File compress(@NonNull File log) throws IOException {
+        File dir = log.getParentFile();
+        File gz = new File(dir, log.getName() + ".gz");
+        File blocksFile = new File(dir, gz.getName() + "-blocks");
+        List<Long> offsets = new ArrayList<>();
+        long length = 0;
+        Path tmp = Files.createTempFile(dir.toPath(), gz.getName(), ".tmp");
+        Path tmpBlocks = Files.createTempFile(dir.toPath(), blocksFile.getName(), ".tmp");
+        try {
+            byte[] buf = new byte[BLOCK_SIZE];
+            ByteArrayOutputStream2 block = new ByteArrayOutputStream2(BLOCK_SIZE / 4);
+            long compressed = 0;
+            try (InputStream in = Files.newInputStream(log.toPath()); OutputStream out = Files.newOutputStream(tmp)) {
+                int n;
+                do {
+                    n = in.readNBytes(buf, 0, BLOCK_SIZE);
+                    if (n == 0 && !offsets.isEmpty()) {
+                        break;
+                    }
+                    // an empty log still gets an empty block, to be a valid GZIP file
+                    block.reset();
+                    try (GZIPOutputStream z = new GZIPOutputStream(block)) {
+                        z.write(buf, 0, n);
+                    }
+                    offsets.add(compressed);
+                    compressed += block.size();
+                    length += n;
+                    block.writeTo(out);
+                } while (n == BLOCK_SIZE);
+            }
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpBlocks)))) {
+                out.writeInt(BLOCKS_MAGIC);
+                out.writeInt(BLOCK_SIZE);
+                out.writeLong(length);
+                out.writeInt(offsets.size());
+                for (long offset : offsets) {
+                    out.writeLong(offset);
+                }
+            }
+            Files.move(tmpBlocks, blocksFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.move(tmp, gz.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+            Files.deleteIfExists(tmpBlocks);
+        }
+        Files.delete(log.toPath());
+        // compressed logs are not transferred as is
+        Files.deleteIfExists(new File(dir, log.getName() + "-notes").toPath());
+        return gz;
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(LogIndex.class.getName());
+}
@@ -0,0 +1,381 @@
+package jenkins.console;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.ExtensionListListener;
+import hudson.PluginWrapper;
+import hudson.Util;
+import hudson.console.AnnotatedLargeText;
+import hudson.console.ConsoleAnnotationDescriptor;
+import hudson.console.ConsoleAnnotationOutputStream;
+import hudson.console.ConsoleAnnotatorFactory;
+import hudson.console.ConsoleNote;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.model.Run;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+import net.jcip.annotations.GuardedBy;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Keeps the console output of completed builds as rendered to HTML, so that showing it again runs neither
+ * {@link ConsoleAnnotationOutputStream} nor any {@link ConsoleAnnotatorFactory}, and decodes no {@link ConsoleNote}.
+ *
+ * <p>
+ * This is only used if {@link #ENABLED}, since annotators may render a log differently for different users,
+ * in which case all users would be shown what was rendered for the first one.
+ * Rendered logs are kept in {@code $JENKINS_HOME/caches/console-html} within a {@link #BUDGET_MB budget},
+ * evicting the least recently shown ones first.
+ * Each is specific to a build, the offset from which it was rendered, the size and modification time of the log,
+ * and the annotators and notes installed along with the versions of the plugins providing them,
+ * so that installing, updating or removing such a plugin invalidates the whole cache.
+ *
+ * <p>
+ * The hit rate can be checked with {@link #getHits} and {@link #getMisses}, such as from the script console.
+ *
+ * @since TODO
+ */
+@Restricted(NoExternalUse.class)
+@Extension
+public final class RenderedConsoleCache {
+
+    /**
+     * Whether to cache rendered console output.
+     */
+    public static /* Script Console modifiable */ boolean ENABLED = SystemProperties.getBoolean(RenderedConsoleCache.class.getName() + ".enabled");
+
+    /**
+     * Disk space the cache may use, in megabytes.
+     */
+    static final long BUDGET_MB = SystemProperties.getLong(RenderedConsoleCache.class.getName() + ".budgetMB", 1024L);
+
+    /**
+     * Maximal share of the budget that a single rendered log may use, in percent.
+     * Larger logs are rendered every time, which is also what {@code consoleFull} of a huge log costs anyway.
+     */
+    static final int MAX_ENTRY_SHARE_PERCENT = SystemProperties.getInteger(RenderedConsoleCache.class.getName() + ".maxEntrySharePercent", 10);
+
+    private static final String SUFFIX = ".html";
+
+    /**
+     * Records the {@link #fingerprint} the cached files were rendered with.
+     */
+    private static final String FINGERPRINT_FILE = "fingerprint";
+
+    /**
+     * Budget in bytes, modifiable by tests.
+     */
+    long budget = BUDGET_MB * 1024 * 1024;
+
+    /**
+     * Sizes of the cached files by key, least recently used first.
+     */
+    @GuardedBy("this")
+    private final Map<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    @GuardedBy("this")
+    private long used;
+
+    @GuardedBy("this")
+    private @CheckForNull File dir;
+
+    private volatile @CheckForNull String fingerprint;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public static @NonNull RenderedConsoleCache get() {
+        return ExtensionList.lookupSingleton(RenderedConsoleCache.class);
+    }
+
+    /**
+     * Writes the console output of a completed build as HTML, as {@link AnnotatedLargeText#writeHtmlTo} would.
+     *
+     * @param start the offset in the log from which to render it
+     */
+    public void writeHtmlTo(@NonNull Run<?, ?> run, long start, @NonNull Writer w) throws IOException {
+        AnnotatedLargeText<?> text = run.getLogText();
+        File log = run.getLogFile();
+        File dir;
+        String key;
+        boolean cached;
+        synchronized (this) {
+            dir = dir();
+            key = Util.getDigestOf(run.getExternalizableId() + '\0' + start + '\0' + log.length() + '\0' + log.lastModified() + '\0' + fingerprint());
+            cached = entries.get(key) != null;
+        }
+        if (cached) {
+            File file = new File(dir, key + SUFFIX);
+            try (Reader r = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                // keep the order of use across restarts
+                file.setLastModified(System.currentTimeMillis());
+                hits.increment();
+                r.transferTo(w);
+                return;
+            } catch (NoSuchFileException x) {
+                // evicted meanwhile
+            }
+        }
+        misses.increment();
+        long max = budget / 100 * MAX_ENTRY_SHARE_PERCENT;
+        Path tmp = Files.createTempFile(dir.toPath(), key, ".tmp");
+        try {
+            boolean complete;
+            try (CachingWriter cw = new CachingWriter(w, Files.newBufferedWriter(tmp, StandardCharsets.UTF_8), max)) {
+                long r = text.writeHtmlTo(start, cw);
+                complete = cw.cache != null && r == log.length();
+            }
+            if (complete) {
+                long size = Files.size(tmp);
+                synchronized (this) {
+                    Files.move(tmp, new File(dir, key + SUFFIX).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    Long previous = entries.put(key, size);
+                    used += size - (previous != null ? previous : 0);
+                    evict();
+                }
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Gets the cache directory, loading what it contains on first use.
+     */
+    @GuardedBy("this")
+    private File dir() throws IOException {
+        if (dir == null) {
+            File d = new File(Jenkins.get().getRootDir(), "caches/console-html");
+            Util.createDirectories(d.toPath());
+            File[] stale = d.listFiles((unused, name) -> name.endsWith(".tmp"));
+            if (stale != null) {
+                for (File f : stale) {
+                    Files.deleteIfExists(f.toPath());
+                }
+            }
+            File[] files = d.listFiles((unused, name) -> name.endsWith(SUFFIX));
+            if (files != null) {
+                Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+                for (File f : files) {
+                    String name = f.getName();
+                    long size = f.length();
+                    entries.put(name.substring(0, name.length() - SUFFIX.length()), size);
+                    used += size;
+                }
+            }
+            dir = d;
+            evict();
+        }
+        return dir;
+    }
+
+    /**
+     * Identifies the annotators and notes which could be used to render a log.
+     * Deletes all the cached files when that changes.
+     */
+    @GuardedBy("this")
+    private String fingerprint() throws IOException {
+        String f = fingerprint;
+        if (f == null) {
+            StringBuilder b = new StringBuilder(Jenkins.VERSION);
+            TreeSet<String> classes = new TreeSet<>();
+            for (ConsoleAnnotatorFactory<?> factory : ConsoleAnnotatorFactory.all()) {
+                classes.add(describe(factory.getClass()));
+            }
+            for (ConsoleAnnotationDescriptor d : ConsoleAnnotationDescriptor.all()) {
+                classes.add(describe(d.clazz));
+            }
+            for (String c : classes) {
+                b.append('\n').append(c);
+            }
+            f = Util.getDigestOf(b.toString());
+            Path file = new File(dir, FINGERPRINT_FILE).toPath();
+            String previous = Files.exists(file) ? Files.readString(file, StandardCharsets.UTF_8) : null;
+            if (!f.equals(previous)) {
+                if (previous != null) {
+                    LOGGER.fine("Console annotators changed, clearing " + dir);
+                }
+                clear();
+                Files.writeString(file, f, StandardCharsets.UTF_8);
+            }
+            fingerprint = f;
+        }
+        return f;
+    }
+
+    private static String describe(Class<?> c) {
+        Jenkins j = Jenkins.get();
+        PluginWrapper p = j.getPluginManager().whichPlugin(c);
+        return c.getName() + (p != null ? " " + p.getShortName() + ":" + p.getVersion() : "");
+    }
+
+    /**
+     * Deletes all the cached files.
+     */
+    public synchronized void clear() throws IOException {
+        if (dir == null) {
+            return;
+        }
+        List<String> keys = new ArrayList<>(entries.keySet());
+        for (String key : keys) {
+            remove(key);
+        }
+    }
+
+    @GuardedBy("this")
+    private void evict() {
+        Iterator<String> it = entries.keySet().iterator();
+        List<String> evicted = new ArrayList<>();
+        long remaining = used;
+        while (remaining > budget && it.hasNext()) {
+            String key = it.next();
+            remaining -= entries.get(key);
+            evicted.add(key);
+        }
+        for (String key : evicted) {
+            try {
+                remove(key);
+                evictions.increment();
+            } catch (IOException x) {
+                LOGGER.log(Level.WARNING, "Cannot delete cached console output " + key, x);
+            }
+        }
+    }
+
+    @GuardedBy("this")
+    private void remove(String key) throws IOException {
+        Files.deleteIfExists(new File(dir, key + SUFFIX).toPath());
+        used -= entries.remove(key);
+    }
+
+    /**
+     * Number of rendered logs shown from the cache.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Number of logs which had to be rendered.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public synchronized long getUsedBytes() {
+        return used;
+    }
+
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    @Override
+    public String toString() {
+        return "RenderedConsoleCache[" + getSize() + " logs, " + getUsedBytes() + "/" + budget + " bytes, " + getHits() + " hits, "
+                + getMisses() + " misses, " + getEvictions() + " evictions]";
+    }
+
+    @Initializer(after = InitMilestone.EXTENSIONS_AUGMENTED)
+    public static void listenToAnnotators() {
+        ExtensionListListener l = new ExtensionListListener() {
+            @Override
+            public void onChange() {
+                // recomputed, and the cache cleared if needed, on next use
+                get().fingerprint = null;
+            }
+        };
+        ConsoleAnnotatorFactory.all().addListener(l);
+        ConsoleAnnotationDescriptor.all().addListener(l);
+    }
+
+    /**
+     * Writes rendered output to a cache file as well, until it gets too large.
+     */
+    private static final class CachingWriter extends Writer {
+        private final Writer out;
+        private @CheckForNull Writer cache;
+        private final long max;
+        private long written;
+
+        CachingWriter(Writer out, Writer cache, long max) {
+            this.out = out;
+            this.cache = cache;
+            this.max = max;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            out.write(cbuf, off, len);
+            if (cache != null) {
+                written += len;
+                if (written > max) {
+                    cache.close();
+                    cache = null;
+                } else {
+                    cache.write(cbuf, off, len);
+                }
+            }
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            out.write(str, off, len);
+            if (cache != null) {
+                written += len;
+                if (written > max) {
+                    cache.close();
+                    cache = null;
+                } else {
+                    cache.write(str, off, len);
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        /**
+         * Closes the cache file only, as the output is not ours.
+         */
+        @Override
+        public void close() throws IOException {
+            if (cache != null) {
+                cache.close();
+            }
+        }
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(RenderedConsoleCache.class.getName());
+}
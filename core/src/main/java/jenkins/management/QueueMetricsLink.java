@@ -0,0 +1,57 @@
+package jenkins.management;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.model.ManagementLink;
+import hudson.model.queue.QueueMaintenanceMetrics;
+import hudson.security.Permission;
+import jenkins.model.Jenkins;
+import org.jenkinsci.Symbol;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Shows the {@link QueueMaintenanceMetrics} of the build queue.
+ *
+ * @since TODO
+ */
+@Extension(ordinal = Integer.MAX_VALUE - 710) @Symbol("queueMetrics")
+@Restricted(NoExternalUse.class)
+public class QueueMetricsLink extends ManagementLink {
+
+    @Override
+    public String getIconFileName() {
+        return "symbol-analytics";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return Messages.QueueMetricsLink_DisplayName();
+    }
+
+    @Override
+    public String getDescription() {
+        return Messages.QueueMetricsLink_Description();
+    }
+
+    @NonNull
+    @Override
+    public Permission getRequiredPermission() {
+        return Jenkins.SYSTEM_READ;
+    }
+
+    @Override
+    public String getUrlName() {
+        return "queue-metrics";
+    }
+
+    @NonNull
+    @Override
+    public Category getCategory() {
+        return Category.STATUS;
+    }
+
+    public QueueMaintenanceMetrics getMetrics() {
+        return Jenkins.get().getQueue().getMetrics();
+    }
+}
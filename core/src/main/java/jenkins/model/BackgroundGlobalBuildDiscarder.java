@@ -52,9 +52,15 @@ public class BackgroundGlobalBuildDiscarder extends AsyncPeriodicWork {
 
     @Override
     protected void execute(TaskListener listener) throws IOException, InterruptedException {
+        long start = System.currentTimeMillis();
+        int jobs = 0;
         for (Job job : Jenkins.get().allItems(Job.class)) {
             processJob(listener, job);
+            // jobs loading their build numbers from a BuildNumberCache do not list their builds directory
+            BuildTrash.reclaimLeftovers(job.getBuildDir());
+            jobs++;
         }
+        listener.getLogger().println("Processed " + jobs + " jobs in " + (System.currentTimeMillis() - start) + "ms; " + BuildTrash.getStatus());
     }
 
     /**
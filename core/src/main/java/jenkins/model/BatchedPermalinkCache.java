@@ -0,0 +1,489 @@
+package jenkins.model;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.init.Terminator;
+import hudson.model.Item;
+import hudson.model.Job;
+import hudson.model.listeners.ItemListener;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.model.PeepholePermalink.Cache;
+import jenkins.util.SystemProperties;
+import jenkins.util.Timer;
+import net.jcip.annotations.GuardedBy;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * {@link Cache} which batches the writes of {@code permalinks} files, for controllers completing many builds.
+ *
+ * <p>
+ * {@link PeepholePermalink.DefaultCache} atomically rewrites the {@code permalinks} file of a job whenever one of
+ * its permalinks moves, which costs a few {@code fsync} calls per completed build. This implementation instead
+ * appends each change to a single journal for the whole controller, {@value #JOURNAL}, which is only flushed to disk
+ * every second. Every {@link #CHECKPOINT_INTERVAL} seconds, the {@code permalinks} files of the jobs which changed
+ * are rewritten once, in the same format, and the journal is discarded. The journal is replayed when Jenkins starts
+ * after a crash.
+ *
+ * <p>
+ * Each job has its own lock, and the permalinks of about {@link #MAX_JOBS} jobs without pending changes are kept
+ * in memory, the least recently used ones being read again from their {@code permalinks} file when needed.
+ *
+ * <p>
+ * This is only used when {@link #ENABLED}. A power loss may then lose the changes of the last second, leaving
+ * some permalinks pointing to an older build until it is next resolved after one of their builds completes.
+ *
+ * @since TODO
+ */
+@Restricted(NoExternalUse.class)
+@Extension(ordinal = -900)
+public final class BatchedPermalinkCache implements Cache {
+
+    /**
+     * Whether this cache is used instead of {@link PeepholePermalink.DefaultCache}.
+     * Cannot be changed at runtime, as either cache would miss the changes made by the other.
+     */
+    static final boolean ENABLED = SystemProperties.getBoolean(BatchedPermalinkCache.class.getName() + ".enabled");
+
+    /**
+     * Seconds between two rewrites of the {@code permalinks} files which changed.
+     */
+    static final long CHECKPOINT_INTERVAL = SystemProperties.getLong(BatchedPermalinkCache.class.getName() + ".checkpointInterval", 60L);
+
+    /**
+     * Maximal number of jobs whose permalinks are kept in memory, besides those with pending changes.
+     */
+    static final int MAX_JOBS = SystemProperties.getInteger(BatchedPermalinkCache.class.getName() + ".maxJobs", 1000);
+
+    /**
+     * Journal size in bytes after which the next checkpoint is not delayed any further.
+     */
+    private static final long MAX_JOURNAL_SIZE = 1024 * 1024;
+
+    static final String JOURNAL = "permalinks.journal";
+
+    private final boolean enabled;
+
+    private final int maxJobs;
+
+    private final File journalFile;
+
+    /**
+     * Journal being rewritten into the {@code permalinks} files, kept until they all have been written.
+     */
+    private final File checkpointFile;
+
+    /**
+     * Permalinks by {@code builds} directory.
+     */
+    private final ConcurrentMap<File, Entry> entries = new ConcurrentHashMap<>();
+
+    private final Object journalLock = new Object();
+
+    @GuardedBy("journalLock")
+    private FileChannel journal;
+
+    @GuardedBy("journalLock")
+    private boolean journalSynced = true;
+
+    private volatile boolean replayed;
+
+    @GuardedBy("this")
+    private boolean scheduled;
+
+    @GuardedBy("this")
+    private long lastCheckpoint = System.nanoTime();
+
+    public BatchedPermalinkCache() {
+        this(new File(Jenkins.get().getRootDir(), JOURNAL), ENABLED);
+    }
+
+    BatchedPermalinkCache(@NonNull File journalFile, boolean enabled) {
+        this(journalFile, enabled, MAX_JOBS);
+    }
+
+    BatchedPermalinkCache(@NonNull File journalFile, boolean enabled, int maxJobs) {
+        this.enabled = enabled;
+        this.maxJobs = maxJobs;
+        this.journalFile = journalFile;
+        this.checkpointFile = new File(journalFile.getPath() + ".checkpoint");
+    }
+
+    @Override
+    public PermalinkTarget get(Job<?, ?> job, String id) {
+        if (!enabled) {
+            return ExtensionList.lookupSingleton(PeepholePermalink.DefaultCache.class).get(job, id);
+        }
+        while (true) {
+            Entry e = entryFor(job);
+            synchronized (e) {
+                if (e.evicted) {
+                    continue;
+                }
+                e.accessed = System.nanoTime();
+                Known cached = e.targets.get(id);
+                return cached != null ? cached : UNKNOWN;
+            }
+        }
+    }
+
+    @Override
+    public void put(Job<?, ?> job, String id, Known target) {
+        if (!enabled) {
+            ExtensionList.lookupSingleton(PeepholePermalink.DefaultCache.class).put(job, id, target);
+            return;
+        }
+        while (true) {
+            Entry e = entryFor(job);
+            synchronized (e) {
+                if (e.evicted) {
+                    continue;
+                }
+                e.accessed = System.nanoTime();
+                if (target.equals(e.targets.put(id, target))) {
+                    return;
+                }
+                e.dirty = true;
+                // still holding the lock of the job, so that its changes are journaled in order
+                append(e.buildDir, id, target);
+                break;
+            }
+        }
+        schedule();
+    }
+
+    private @NonNull Entry entryFor(@NonNull Job<?, ?> job) {
+        replay();
+        File buildDir = job.getBuildDir();
+        Entry e = entries.get(buildDir);
+        if (e == null) {
+            Entry loaded = new Entry(buildDir, PeepholePermalink.DefaultCache.load(buildDir));
+            e = entries.putIfAbsent(buildDir, loaded);
+            if (e == null) {
+                e = loaded;
+                if (entries.size() > maxJobs) {
+                    // checkpoints only run once permalinks changed, and jobs may be read much more often, so do not wait
+                    evict(maxJobs - maxJobs / 10, e);
+                }
+            }
+        }
+        e.job = job;
+        return e;
+    }
+
+    private void append(File buildDir, String id, Known target) {
+        String line = id + ' ' + (target instanceof Some some ? some.number() : -1) + ' ' + buildDir.getAbsolutePath() + '\n';
+        ByteBuffer buf = StandardCharsets.UTF_8.encode(line);
+        synchronized (journalLock) {
+            try {
+                if (journal == null) {
+                    journal = FileChannel.open(journalFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                }
+                while (buf.hasRemaining()) {
+                    journal.write(buf);
+                }
+                journalSynced = false;
+            } catch (IOException | InvalidPathException x) {
+                LOGGER.log(Level.WARNING, "Failed to write to " + journalFile, x);
+            }
+        }
+    }
+
+    private synchronized void schedule() {
+        if (!scheduled) {
+            scheduled = true;
+            Timer.get().scheduleWithFixedDelay(this::tick, 1, 1, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Flushes the journal to disk, and runs a checkpoint when due.
+     */
+    private void tick() {
+        long journalSize = 0;
+        synchronized (journalLock) {
+            if (journal != null) {
+                try {
+                    if (!journalSynced) {
+                        journal.force(false);
+                        journalSynced = true;
+                    }
+                    journalSize = journal.size();
+                } catch (IOException x) {
+                    LOGGER.log(Level.WARNING, "Failed to flush " + journalFile, x);
+                }
+            }
+        }
+        boolean due;
+        synchronized (this) {
+            due = System.nanoTime() - lastCheckpoint >= TimeUnit.SECONDS.toNanos(CHECKPOINT_INTERVAL) || journalSize > MAX_JOURNAL_SIZE;
+        }
+        if (due) {
+            checkpoint();
+        }
+    }
+
+    /**
+     * Rewrites the {@code permalinks} files of all jobs with pending changes.
+     */
+    synchronized void checkpoint() {
+        lastCheckpoint = System.nanoTime();
+        // start a new journal first, so that the changes made from now on are kept until the next checkpoint
+        synchronized (journalLock) {
+            try {
+                if (journal != null) {
+                    journal.close();
+                    journal = null;
+                    journalSynced = true;
+                }
+                if (journalFile.exists()) {
+                    if (checkpointFile.exists()) {
+                        // a previous checkpoint failed, so keep its changes too
+                        Files.write(checkpointFile.toPath(), Files.readAllBytes(journalFile.toPath()), StandardOpenOption.APPEND);
+                        Files.delete(journalFile.toPath());
+                    } else {
+                        Files.move(journalFile.toPath(), checkpointFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                    }
+                }
+            } catch (IOException | InvalidPathException x) {
+                LOGGER.log(Level.WARNING, "Failed to rotate " + journalFile, x);
+                return;
+            }
+        }
+        boolean failed = false;
+        for (Entry e : entries.values()) {
+            failed |= !write(e);
+        }
+        if (!failed) {
+            try {
+                Files.deleteIfExists(checkpointFile.toPath());
+            } catch (IOException | InvalidPathException x) {
+                LOGGER.log(Level.WARNING, "Failed to delete " + checkpointFile, x);
+            }
+        }
+        evict(maxJobs, null);
+    }
+
+    /**
+     * Writes the {@code permalinks} file of a job if it has pending changes.
+     *
+     * @return false if it failed
+     */
+    private boolean write(Entry e) {
+        Map<String, Known> snapshot;
+        File buildDir;
+        synchronized (e) {
+            if (!e.dirty) {
+                return true;
+            }
+            snapshot = new TreeMap<>(e.targets);
+            buildDir = e.buildDir;
+            e.dirty = false;
+        }
+        if (!buildDir.isDirectory()) {
+            // the job was deleted
+            return true;
+        }
+        try {
+            PeepholePermalink.DefaultCache.save(buildDir, snapshot);
+            return true;
+        } catch (IOException x) {
+            LOGGER.log(Level.WARNING, "Failed to write the permalinks of " + buildDir, x);
+            synchronized (e) {
+                e.dirty = true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Drops the least recently used jobs without pending changes.
+     *
+     * @param max how many jobs to keep
+     * @param keep a job to keep anyway, as it is about to be used
+     */
+    private void evict(int max, @CheckForNull Entry keep) {
+        int excess = entries.size() - max;
+        if (excess <= 0) {
+            return;
+        }
+        List<Entry> candidates = new ArrayList<>(entries.values());
+        candidates.sort(Comparator.comparingLong(e -> e.accessed));
+        for (Entry e : candidates) {
+            if (excess == 0) {
+                break;
+            }
+            if (e == keep) {
+                continue;
+            }
+            synchronized (e) {
+                if (!e.dirty && entries.remove(e.buildDir, e)) {
+                    e.evicted = true;
+                    excess--;
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies the changes left in the journal by a previous run of Jenkins which did not shut down cleanly.
+     */
+    private void replay() {
+        if (replayed) {
+            return;
+        }
+        synchronized (this) {
+            if (replayed) {
+                return;
+            }
+            boolean found = false;
+            for (File file : new File[] {checkpointFile, journalFile}) {
+                if (!file.isFile()) {
+                    continue;
+                }
+                found = true;
+                try (BufferedReader r = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                    String line;
+                    while ((line = r.readLine()) != null) {
+                        replay(line);
+                    }
+                } catch (IOException | InvalidPathException x) {
+                    LOGGER.log(Level.WARNING, "Failed to read " + file, x);
+                }
+            }
+            replayed = true;
+            if (found) {
+                LOGGER.info(() -> "Recovered permalinks of " + entries.size() + " jobs from " + journalFile);
+                checkpoint();
+            }
+        }
+    }
+
+    private void replay(String line) {
+        String[] tokens = line.split(" ", 3);
+        if (tokens.length != 3) {
+            // typically a partially written last line
+            return;
+        }
+        File buildDir = new File(tokens[2]);
+        if (!buildDir.isDirectory()) {
+            return;
+        }
+        int number;
+        try {
+            number = Integer.parseInt(tokens[1]);
+        } catch (NumberFormatException x) {
+            return;
+        }
+        Entry e = entries.computeIfAbsent(buildDir, d -> new Entry(d, PeepholePermalink.DefaultCache.load(d)));
+        synchronized (e) {
+            e.targets.put(tokens[0], number == -1 ? NONE : new Some(number));
+            e.dirty = true;
+        }
+    }
+
+    /**
+     * Follows a job whose {@code builds} directory was moved, writing its permalinks at once in their new location.
+     */
+    void moved(@NonNull Job<?, ?> job) {
+        File buildDir = job.getBuildDir();
+        for (Entry e : entries.values()) {
+            if (e.job != job || e.buildDir.equals(buildDir)) {
+                continue;
+            }
+            synchronized (e) {
+                if (e.evicted || !entries.remove(e.buildDir, e)) {
+                    continue;
+                }
+                e.buildDir = buildDir;
+                e.dirty = true;
+                entries.put(buildDir, e);
+            }
+            write(e);
+        }
+    }
+
+    void deleted(@NonNull Job<?, ?> job) {
+        for (Entry e : entries.values()) {
+            if (e.job == job) {
+                synchronized (e) {
+                    if (entries.remove(e.buildDir, e)) {
+                        e.evicted = true;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the number of jobs whose permalinks are in memory.
+     */
+    int size() {
+        return entries.size();
+    }
+
+    @Terminator
+    public void cleanUp() {
+        if (enabled && replayed) {
+            checkpoint();
+        }
+    }
+
+    private static final class Entry {
+        volatile File buildDir;
+        final Map<String, Known> targets;
+        /** The job using {@link #buildDir}, unless only known from the journal. */
+        volatile @CheckForNull Job<?, ?> job;
+        @GuardedBy("this")
+        boolean dirty;
+        /** Whether this was dropped from {@link #entries}, so that it must be looked up again. */
+        @GuardedBy("this")
+        boolean evicted;
+        volatile long accessed = System.nanoTime();
+
+        Entry(File buildDir, Map<String, Known> targets) {
+            this.buildDir = buildDir;
+            this.targets = targets;
+        }
+    }
+
+    @Extension
+    public static final class ItemListenerImpl extends ItemListener {
+        @Override
+        public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+            if (ENABLED && item instanceof Job<?, ?> job) {
+                ExtensionList.lookupSingleton(BatchedPermalinkCache.class).moved(job);
+            }
+        }
+
+        @Override
+        public void onDeleted(Item item) {
+            if (ENABLED && item instanceof Job<?, ?> job) {
+                ExtensionList.lookupSingleton(BatchedPermalinkCache.class).deleted(job);
+            }
+        }
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(BatchedPermalinkCache.class.getName());
+}
@@ -0,0 +1,122 @@
+package jenkins.model;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Functions;
+import hudson.XmlFile;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.model.Job;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import hudson.util.LogTaskListener;
+import java.io.File;
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import jenkins.util.SystemProperties;
+import jenkins.util.Timer;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Optionally stores build records ({@code build.xml}) compressed with GZIP, which typically makes them ten times smaller.
+ *
+ * <p>
+ * Build records are read transparently whether compressed or not, so the option can be turned on or off at any time;
+ * it only affects how builds are written from then on. Existing records can be converted in the background after
+ * startup, or at any time with {@link #migrate}. Convert them back before downgrading to a version unaware of this.
+ *
+ * @since TODO
+ */
+@Restricted(NoExternalUse.class)
+public final class BuildRecordCompression {
+
+    /**
+     * Whether build records are written compressed.
+     */
+    public static /* Script Console modifiable */ boolean ENABLED = SystemProperties.getBoolean(BuildRecordCompression.class.getName() + ".enabled");
+
+    /**
+     * Whether existing build records are converted to the format selected by {@link #ENABLED} after startup.
+     */
+    private static final boolean MIGRATE = SystemProperties.getBoolean(BuildRecordCompression.class.getName() + ".migrate");
+
+    private static final Pattern BUILD_NUMBER = Pattern.compile("[0-9]+");
+
+    private BuildRecordCompression() {}
+
+    @Initializer(after = InitMilestone.JOB_CONFIG_ADAPTED)
+    public static void init() {
+        if (MIGRATE) {
+            boolean compress = ENABLED;
+            Timer.get().submit(() -> migrate(compress, new LogTaskListener(LOGGER, Level.INFO)));
+        }
+    }
+
+    /**
+     * Converts the records of all builds not currently running, for example from the script console.
+     * Each build is loaded, so that the conversion cannot race with a concurrent {@link Run#save}.
+     *
+     * @param compress whether to compress build records, or to decompress them
+     * @return the number of converted build records
+     */
+    public static int migrate(boolean compress, @NonNull TaskListener listener) {
+        long start = System.currentTimeMillis();
+        int builds = 0;
+        int converted = 0;
+        long sizeBefore = 0;
+        long sizeAfter = 0;
+        try (ACLContext ctx = ACL.as2(ACL.SYSTEM2)) {
+            for (Job<?, ?> job : Jenkins.get().allItems(Job.class)) {
+                String[] kids = job.getBuildDir().list();
+                if (kids == null) {
+                    continue;
+                }
+                for (String kid : kids) {
+                    if (!BUILD_NUMBER.matcher(kid).matches()) {
+                        continue;
+                    }
+                    Jenkins j = Jenkins.getInstanceOrNull();
+                    if (j == null || j.isTerminating()) {
+                        listener.getLogger().println("Interrupted by shutdown");
+                        return converted;
+                    }
+                    Run<?, ?> r;
+                    try {
+                        r = job.getBuildByNumber(Integer.parseInt(kid));
+                    } catch (NumberFormatException x) {
+                        continue;
+                    }
+                    if (r == null || r.isBuilding()) {
+                        continue;
+                    }
+                    builds++;
+                    File file = new File(r.getRootDir(), "build.xml");
+                    long before = file.length();
+                    try {
+                        // Run.save is synchronized
+                        synchronized (r) {
+                            if (!XmlFile.convert(file, compress)) {
+                                continue;
+                            }
+                        }
+                    } catch (IOException x) {
+                        Functions.printStackTrace(x, listener.error("Failed to convert " + file));
+                        continue;
+                    }
+                    converted++;
+                    sizeBefore += before;
+                    sizeAfter += file.length();
+                }
+            }
+        }
+        listener.getLogger().printf("%s %d of %d build records in %ds: %s → %s%n", compress ? "Compressed" : "Decompressed", converted, builds,
+                (System.currentTimeMillis() - start) / 1000, Functions.humanReadableByteSize(sizeBefore), Functions.humanReadableByteSize(sizeAfter));
+        return converted;
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(BuildRecordCompression.class.getName());
+}
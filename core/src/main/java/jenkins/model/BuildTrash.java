@@ -0,0 +1,291 @@
+package jenkins.model;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Functions;
+import hudson.Util;
+import hudson.init.Terminator;
+import hudson.util.ClassLoaderSanityThreadFactory;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import jenkins.model.lazy.BuildNumberCache;
+import jenkins.util.ErrorLoggingExecutorService;
+import jenkins.util.SystemProperties;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Reclaims the disk space of deleted builds in the background.
+ *
+ * <p>
+ * {@link hudson.model.Run#delete} atomically renames the directory of a build to its hidden {@code .N} counterpart,
+ * which is no longer considered a build, and then hands it over here rather than deleting it recursively on the
+ * calling thread, which could take minutes for a job discarding thousands of builds.
+ * A few threads delete such directories in turn, keeping track of how much was reclaimed.
+ *
+ * <p>
+ * Jenkins waits a little for pending directories when it stops. Those still pending, or which could not be deleted,
+ * are picked up again after the next startup, by the first {@link BackgroundGlobalBuildDiscarder} pass over their job
+ * or whenever their job lists its builds from disk, whichever comes first.
+ *
+ * @since TODO
+ */
+@Restricted(NoExternalUse.class)
+public final class BuildTrash {
+
+    /**
+     * Whether deleted build directories are reclaimed in the background rather than by the thread deleting the build.
+     */
+    public static /* Script Console modifiable */ boolean ENABLED = !SystemProperties.getBoolean(BuildTrash.class.getName() + ".disabled");
+
+    /**
+     * Number of threads deleting directories, bounding the I/O load caused by discarding many builds at once.
+     */
+    private static final int THREADS = Math.max(1, SystemProperties.getInteger(BuildTrash.class.getName() + ".threads", 2));
+
+    /**
+     * Minimal number of directories reclaimed in a row for the throughput to be logged.
+     */
+    private static final int REPORT_THRESHOLD = 100;
+
+    /**
+     * How long Jenkins waits for pending directories to be deleted when it stops, in seconds.
+     */
+    private static final long TERMINATION_TIMEOUT_SECONDS = SystemProperties.getLong(BuildTrash.class.getName() + ".terminationTimeoutSeconds", 10L);
+
+    private static final Pattern TRASHED_BUILD = Pattern.compile("[.][0-9]+");
+
+    private static final Set<File> pending = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Directories of builds already checked for leftovers since startup.
+     */
+    private static final Set<File> scanned = ConcurrentHashMap.newKeySet();
+
+    private static final AtomicLong reclaimedDirectories = new AtomicLong();
+    private static final AtomicLong reclaimedFiles = new AtomicLong();
+    private static final AtomicLong reclaimedBytes = new AtomicLong();
+    private static final AtomicLong failures = new AtomicLong();
+
+    /**
+     * Counters at the time the last run of reclamations started, to report its throughput.
+     */
+    private static long batchStart, batchDirectories, batchBytes;
+
+    private BuildTrash() {}
+
+    private static final class ExecutorHolder {
+        static final ExecutorService EXECUTOR = new ErrorLoggingExecutorService(new ThreadPoolExecutor(THREADS, THREADS, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), new NamingThreadFactory(new ClassLoaderSanityThreadFactory(new DaemonThreadFactory()), "BuildTrash")));
+    }
+
+    /**
+     * Deletes a build directory which was moved out of the way, in the background unless {@link #ENABLED disabled}.
+     *
+     * @param buildsDir the directory of builds containing it, whose {@link BuildNumberCache} is kept up to date
+     * @param trashed the former build directory
+     */
+    public static void reclaim(@NonNull File buildsDir, @NonNull File trashed) throws IOException {
+        if (!ENABLED) {
+            BuildNumberCache.update(buildsDir, () -> Util.deleteRecursive(trashed));
+            // some user reported that they see some left-over .xyz files in the workspace,
+            // so just to make sure we've really deleted it, schedule the deletion on VM exit, too.
+            if (trashed.exists()) {
+                trashed.deleteOnExit();
+            }
+            return;
+        }
+        if (!pending.add(trashed)) {
+            return;
+        }
+        synchronized (BuildTrash.class) {
+            if (pending.size() == 1) {
+                batchStart = System.nanoTime();
+                batchDirectories = reclaimedDirectories.get();
+                batchBytes = reclaimedBytes.get();
+            }
+        }
+        ExecutorHolder.EXECUTOR.execute(() -> {
+            try {
+                delete(buildsDir, trashed);
+            } finally {
+                pending.remove(trashed);
+                reclaimed();
+            }
+        });
+    }
+
+    /**
+     * Reclaims a build directory left over in the trash, such as one which was still pending when Jenkins stopped.
+     *
+     * @param name a child of {@code buildsDir} which might be a former build directory
+     */
+    public static void reclaimLeftover(@NonNull File buildsDir, @NonNull String name) {
+        if (ENABLED && TRASHED_BUILD.matcher(name).matches()) {
+            File trashed = new File(buildsDir, name);
+            if (!pending.contains(trashed) && trashed.isDirectory()) {
+                LOGGER.fine(() -> "reclaiming left over " + trashed);
+                try {
+                    reclaim(buildsDir, trashed);
+                } catch (IOException x) {
+                    // only thrown when disabled
+                    LOGGER.log(Level.WARNING, "Failed to delete " + trashed, x);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reclaims the build directories left over in the trash of a job, once per startup.
+     *
+     * @param buildsDir the directory of builds of the job
+     */
+    public static void reclaimLeftovers(@NonNull File buildsDir) {
+        if (!ENABLED || !scanned.add(buildsDir)) {
+            return;
+        }
+        String[] names = buildsDir.list((unused, name) -> TRASHED_BUILD.matcher(name).matches());
+        if (names != null) {
+            for (String name : names) {
+                reclaimLeftover(buildsDir, name);
+            }
+        }
+    }
+
+    private static void delete(File buildsDir, File trashed) {
+        long start = System.nanoTime();
+        long[] files = new long[1];
+        long[] bytes = new long[1];
+        try {
+            Path dir = Util.fileToPath(trashed);
+            // the fast path: plain deletion, counting what is freed
+            Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    Files.deleteIfExists(file);
+                    files[0]++;
+                    bytes[0] += attrs.size();
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path d, IOException exc) throws IOException {
+                    if (exc != null) {
+                        throw exc;
+                    }
+                    if (!d.equals(dir)) {
+                        Files.deleteIfExists(d);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+            // removing the directory itself changes the modification time of its parent
+            BuildNumberCache.update(buildsDir, () -> Files.deleteIfExists(dir));
+        } catch (NoSuchFileException x) {
+            // already gone, such as when the whole job was deleted meanwhile
+        } catch (IOException | InvalidPathException x) {
+            // read-only or locked files: leave it to the retrying implementation
+            LOGGER.log(Level.FINE, "Falling back to robust deletion of " + trashed, x);
+            try {
+                BuildNumberCache.update(buildsDir, () -> Util.deleteRecursive(trashed));
+            } catch (IOException x2) {
+                failures.incrementAndGet();
+                LOGGER.log(Level.WARNING, "Failed to delete " + trashed, x2);
+                // as when deleting synchronously, try again on VM exit too
+                if (trashed.exists()) {
+                    trashed.deleteOnExit();
+                }
+                return;
+            }
+        }
+        reclaimedDirectories.incrementAndGet();
+        reclaimedFiles.addAndGet(files[0]);
+        reclaimedBytes.addAndGet(bytes[0]);
+        LOGGER.log(Level.FINE, "reclaimed {0} ({1} files, {2} bytes) in {3}ms",
+                new Object[] {trashed, files[0], bytes[0], (System.nanoTime() - start) / 1_000_000});
+    }
+
+    private static void reclaimed() {
+        synchronized (BuildTrash.class) {
+            if (!pending.isEmpty()) {
+                return;
+            }
+            long directories = reclaimedDirectories.get() - batchDirectories;
+            if (directories >= REPORT_THRESHOLD) {
+                long millis = Math.max(1, (System.nanoTime() - batchStart) / 1_000_000);
+                long bytes = reclaimedBytes.get() - batchBytes;
+                LOGGER.log(Level.INFO, "Reclaimed {0} build directories ({1}) in {2}s: {3} directories/s, {4}/s",
+                        new Object[] {directories, Functions.humanReadableByteSize(bytes), millis / 1000,
+                                directories * 1000 / millis, Functions.humanReadableByteSize(bytes * 1000 / millis)});
+            }
+            batchDirectories = reclaimedDirectories.get();
+            batchBytes = reclaimedBytes.get();
+        }
+    }
+
+    /**
+     * Number of build directories waiting to be deleted, or being deleted.
+     */
+    public static int getPending() {
+        return pending.size();
+    }
+
+    /**
+     * Describes the progress of reclamations since startup, for the logs of periodic tasks.
+     */
+    public static @NonNull String getStatus() {
+        return String.format("%d build directories pending deletion; %d reclaimed (%d files, %s), %d failed",
+                pending.size(), reclaimedDirectories.get(), reclaimedFiles.get(), Functions.humanReadableByteSize(reclaimedBytes.get()), failures.get());
+    }
+
+    /**
+     * Gives pending deletions a chance to complete before Jenkins stops.
+     */
+    @Terminator
+    public static void awaitPending() throws InterruptedException {
+        if (pending.isEmpty()) {
+            return;
+        }
+        LOGGER.log(Level.INFO, "Waiting for {0} build directories to be deleted", pending.size());
+        if (!awaitIdle(TERMINATION_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            LOGGER.log(Level.INFO, "{0} build directories are still pending deletion and will be reclaimed after the next startup: {1}",
+                    new Object[] {pending.size(), pending});
+        }
+    }
+
+    /**
+     * Waits until no build directory is pending deletion.
+     *
+     * @return false if some still are after the timeout
+     */
+    static boolean awaitIdle(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!pending.isEmpty()) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(BuildTrash.class.getName());
+}
@@ -28,6 +28,7 @@ import static jakarta.servlet.http.HttpServletResponse.SC_CONFLICT;
 import static jakarta.servlet.http.HttpServletResponse.SC_CREATED;
 
 import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.Util;
 import hudson.cli.declarative.CLIMethod;
 import hudson.cli.declarative.CLIResolver;
@@ -47,6 +48,8 @@ import hudson.model.Queue;
 import hudson.model.Run;
 import hudson.model.listeners.ItemListener;
 import hudson.model.queue.QueueTaskFuture;
+import hudson.model.queue.ScheduleRequest;
+import hudson.model.queue.ScheduleResult;
 import hudson.search.SearchIndexBuilder;
 import hudson.triggers.Trigger;
 import hudson.util.AlternativeUiTextProvider;
@@ -56,9 +59,11 @@ import jakarta.servlet.ServletException;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import jenkins.model.lazy.LazyBuildMixIn;
 import jenkins.security.stapler.StaplerNotDispatchable;
 import jenkins.triggers.SCMTriggerItem;
@@ -151,7 +156,52 @@ public abstract class ParameterizedJobMixIn<JobT extends Job<JobT, RunT> & Param
         }.scheduleBuild2(quietPeriod == -1 ? ((ParameterizedJob) job).getQuietPeriod() : quietPeriod, Arrays.asList(actions));
     }
 
+    /**
+     * Convenience method to schedule builds of several jobs at once, through {@link Queue#scheduleAll}.
+     * Each job is handled as by {@link #scheduleBuild2(Job, int, Action...)}, but the queue is only locked and
+     * maintained once for the whole batch, which matters when many jobs are triggered by the same event.
+     * @param jobs jobs which might be schedulable
+     * @param quietPeriod seconds to wait before starting; use {@code -1} to use each job’s default settings
+     * @param actions computes the actions to associate with the scheduling of each job;
+     *      unlike the queue items, {@link Action} instances should not be shared between jobs
+     * @return the queue items, in the order of {@code jobs}, with null for the jobs which could not be scheduled
+     * @since TODO
+     */
+    public static @NonNull List<Queue.Item> scheduleBuilds(@NonNull Collection<? extends Job<?, ?>> jobs, int quietPeriod, @NonNull Function<? super Job<?, ?>, List<Action>> actions) {
+        List<ScheduleRequest> requests = new ArrayList<>(jobs.size());
+        List<Integer> positions = new ArrayList<>(jobs.size());
+        List<Queue.Item> items = new ArrayList<>(jobs.size());
+        for (final Job<?, ?> job : jobs) {
+            ScheduleRequest request = null;
+            if (job instanceof ParameterizedJob) {
+                request = new ParameterizedJobMixIn() {
+                    @Override protected Job asJob() {
+                        return job;
+                    }
+                }.toScheduleRequest(quietPeriod == -1 ? ((ParameterizedJob) job).getQuietPeriod() : quietPeriod, actions.apply(job));
+            }
+            if (request != null) {
+                positions.add(items.size());
+                requests.add(request);
+            }
+            items.add(null);
+        }
+        List<ScheduleResult> results = Jenkins.get().getQueue().scheduleAll(requests);
+        for (int i = 0; i < results.size(); i++) {
+            items.set(positions.get(i), results.get(i).getItem());
+        }
+        return items;
+    }
+
     @CheckForNull Queue.Item scheduleBuild2(int quietPeriod, List<Action> actions) {
+        ScheduleRequest request = toScheduleRequest(quietPeriod, actions);
+        if (request == null)
+            return null;
+
+        return Jenkins.get().getQueue().schedule2(request.getTask(), quietPeriod, request.getActions()).getItem();
+    }
+
+    private @CheckForNull ScheduleRequest toScheduleRequest(int quietPeriod, List<Action> actions) {
         if (!asJob().isBuildable())
             return null;
 
@@ -159,7 +209,7 @@ public abstract class ParameterizedJobMixIn<JobT extends Job<JobT, RunT> & Param
         if (isParameterized() && Util.filter(queueActions, ParametersAction.class).isEmpty()) {
             queueActions.add(new ParametersAction(getDefaultParametersValues()));
         }
-        return Jenkins.get().getQueue().schedule2(asJob(), quietPeriod, queueActions).getItem();
+        return new ScheduleRequest(asJob(), quietPeriod, queueActions);
     }
 
     private List<ParameterValue> getDefaultParametersValues() {
@@ -26,6 +26,7 @@ import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Stream;
+import jenkins.model.lazy.BuildNumberCache;
 import org.kohsuke.accmod.Restricted;
 import org.kohsuke.accmod.restrictions.Beta;
 import org.kohsuke.accmod.restrictions.NoExternalUse;
@@ -242,8 +243,18 @@ public abstract class PeepholePermalink extends Permalink implements Predicate<R
             var cache = cacheFor(buildDir);
             synchronized (cache) {
                 cache.put(id, target);
-                File storage = storageFor(buildDir);
-                LOGGER.fine(() -> "saving to " + storage + ": " + cache);
+                try {
+                    save(buildDir, cache);
+                } catch (IOException x) {
+                    LOGGER.log(Level.WARNING, "failed to update " + storageFor(buildDir), x);
+                }
+            }
+        }
+
+        static void save(@NonNull File buildDir, @NonNull Map<String, Known> cache) throws IOException {
+            File storage = storageFor(buildDir);
+            LOGGER.fine(() -> "saving to " + storage + ": " + cache);
+            BuildNumberCache.update(buildDir, () -> {
                 try (AtomicFileWriter cw = new AtomicFileWriter(storage)) {
                     try {
                         for (var entry : cache.entrySet()) {
@@ -256,10 +267,8 @@ public abstract class PeepholePermalink extends Permalink implements Predicate<R
                     } finally {
                         cw.abort();
                     }
-                } catch (IOException x) {
-                    LOGGER.log(Level.WARNING, "failed to update " + storage, x);
                 }
-            }
+            });
         }
 
         private @NonNull Map<String, Known> cacheFor(@NonNull File buildDir) {
@@ -273,7 +282,7 @@ public abstract class PeepholePermalink extends Permalink implements Predicate<R
             }
         }
 
-        private static @NonNull Map<String, Known> load(@NonNull File buildDir) {
+        static @NonNull Map<String, Known> load(@NonNull File buildDir) {
             Map<String, Known> cache = new TreeMap<>();
             File storage = storageFor(buildDir);
             if (storage.isFile()) {
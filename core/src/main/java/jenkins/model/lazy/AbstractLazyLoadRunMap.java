@@ -41,7 +41,6 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
-import java.util.ListIterator;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
@@ -53,6 +52,7 @@ import java.util.function.IntConsumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
+import jenkins.model.BuildTrash;
 import jenkins.util.MemoryReductionUtil;
 import org.kohsuke.accmod.Restricted;
 import org.kohsuke.accmod.restrictions.Beta;
@@ -266,14 +266,14 @@ public abstract class AbstractLazyLoadRunMap<R> extends AbstractMap<Integer, R>
          * by using the null value (not to be confused with a non-null {@link BuildReference}
          * with null referent, which just means the record was GCed.)
          */
-        private final TreeMap<Integer, BuildReference<R>> byNumber;
+        private final SortedIntMap<BuildReference<R>> byNumber;
 
         private Index() {
-            byNumber = new TreeMap<>(Collections.reverseOrder());
+            byNumber = new SortedIntMap<>(0);
         }
 
         private Index(Index rhs) {
-            byNumber = new TreeMap<>(rhs.byNumber);
+            byNumber = new SortedIntMap<>(rhs.byNumber);
         }
     }
 
@@ -300,7 +300,7 @@ public abstract class AbstractLazyLoadRunMap<R> extends AbstractMap<Integer, R>
         assert this.dir == null;
         this.dir = dir;
         if (dir != null)
-            loadNumberOnDisk();
+            loadNumberOnDisk(true);
     }
 
     /**
@@ -318,6 +318,9 @@ public abstract class AbstractLazyLoadRunMap<R> extends AbstractMap<Integer, R>
      * @since 1.546
      */
     public final void updateBaseDir(File dir) {
+        if (this.dir != null && dir != null && !this.dir.equals(dir)) {
+            BuildNumberCache.moved(this.dir, dir);
+        }
         this.dir = dir;
     }
 
@@ -331,12 +334,35 @@ public abstract class AbstractLazyLoadRunMap<R> extends AbstractMap<Integer, R>
     public synchronized void purgeCache() {
         index = new Index();
         fullyLoaded = false;
-        loadNumberOnDisk();
+        loadNumberOnDisk(false);
     }
 
     private static final Pattern BUILD_NUMBER = Pattern.compile("[0-9]+");
 
-    private void loadNumberOnDisk() {
+    /**
+     * @param cached whether the numbers cached by {@link BuildNumberCache} may be used instead of listing {@link #dir}
+     */
+    private void loadNumberOnDisk(boolean cached) {
+        SortedIntList found = cached ? BuildNumberCache.read(dir) : null;
+        if (found == null) {
+            found = listNumberOnDisk();
+        } else {
+            LOGGER.fine(() -> "using cached build numbers of " + dir);
+        }
+        SortedIntList list = new SortedIntList(found.size());
+        for (int i = 0; i < found.size(); i++) {
+            int buildNumber = found.get(i);
+            if (allowLoad(buildNumber)) {
+                list.add(buildNumber);
+            } else {
+                LOGGER.fine(() -> "declining to consider " + buildNumber + " in " + dir);
+            }
+        }
+        numberOnDisk = list;
+    }
+
+    private SortedIntList listNumberOnDisk() {
+        long modified = dir.lastModified();
         String[] kids = dir.list();
         if (kids == null) {
             // the job may have just been created
@@ -346,21 +372,18 @@ public abstract class AbstractLazyLoadRunMap<R> extends AbstractMap<Integer, R>
         for (String s : kids) {
             if (!BUILD_NUMBER.matcher(s).matches()) {
                 // not a build directory
+                BuildTrash.reclaimLeftover(dir, s);
                 continue;
             }
             try {
-                int buildNumber = Integer.parseInt(s);
-                if (allowLoad(buildNumber)) {
-                    list.add(buildNumber);
-                } else {
-                    LOGGER.fine(() -> "declining to consider " + buildNumber + " in " + dir);
-                }
+                list.add(Integer.parseInt(s));
             } catch (NumberFormatException e) {
                 // matched BUILD_NUMBER but not an int?
             }
         }
         list.sort();
-        numberOnDisk = list;
+        BuildNumberCache.listed(dir, list, modified);
+        return list;
     }
 
     @Restricted(NoExternalUse.class)
@@ -412,7 +435,7 @@ public abstract class AbstractLazyLoadRunMap<R> extends AbstractMap<Integer, R>
      * Returns a read-only view of records that has already been loaded.
      */
     public SortedMap<Integer, R> getLoadedBuilds() {
-        return Collections.unmodifiableSortedMap(new BuildReferenceMapAdapter<>(this, index.byNumber));
+        return Collections.unmodifiableSortedMap(new BuildReferenceMapAdapter<>(this, index.byNumber.descendingView()));
     }
 
     /**
@@ -439,7 +462,7 @@ public abstract class AbstractLazyLoadRunMap<R> extends AbstractMap<Integer, R>
             assert i != null;
         }
 
-        return Collections.unmodifiableSortedMap(new BuildReferenceMapAdapter<>(this, index.byNumber.subMap(fromKey, toKey)));
+        return Collections.unmodifiableSortedMap(new BuildReferenceMapAdapter<>(this, index.byNumber.descendingView().subMap(fromKey, toKey)));
     }
 
     @Override
@@ -514,32 +537,26 @@ public abstract class AbstractLazyLoadRunMap<R> extends AbstractMap<Integer, R>
         switch (d) {
         case EXACT:
             return getByNumber(n);
-        case ASC:
-            for (int m : numberOnDisk) {
-                if (m < n) {
-                    // TODO could be made more efficient with numberOnDisk.find
-                    continue;
-                }
-                R r = getByNumber(m);
+        case ASC: {
+            SortedIntList numbers = numberOnDisk;
+            for (int i = numbers.ceil(n); numbers.isInRange(i); i++) {
+                R r = getByNumber(numbers.get(i));
                 if (r != null) {
                     return r;
                 }
             }
             return null;
-        case DESC:
-            // TODO again could be made more efficient
-            ListIterator<Integer> iterator = numberOnDisk.listIterator(numberOnDisk.size());
-            while (iterator.hasPrevious()) {
-                int m = iterator.previous();
-                if (m > n) {
-                    continue;
-                }
-                R r = getByNumber(m);
+        }
+        case DESC: {
+            SortedIntList numbers = numberOnDisk;
+            for (int i = numbers.floor(n); numbers.isInRange(i); i--) {
+                R r = getByNumber(numbers.get(i));
                 if (r != null) {
                     return r;
                 }
             }
             return null;
+        }
         default:
             throw new AssertionError();
         }
@@ -551,8 +568,9 @@ public abstract class AbstractLazyLoadRunMap<R> extends AbstractMap<Integer, R>
 
     public R getByNumber(int n) {
         Index snapshot = index;
-        if (snapshot.byNumber.containsKey(n)) {
-            BuildReference<R> ref = snapshot.byNumber.get(n);
+        int idx = snapshot.byNumber.find(n);
+        if (idx >= 0) {
+            BuildReference<R> ref = snapshot.byNumber.valueAt(idx);
             if (ref == null) {
                 LOGGER.fine(() -> "known failure of #" + n + " in " + dir);
                 return null;
@@ -564,8 +582,9 @@ public abstract class AbstractLazyLoadRunMap<R> extends AbstractMap<Integer, R>
             // otherwise fall through to load
         }
         synchronized (this) {
-            if (index.byNumber.containsKey(n)) { // JENKINS-22767: recheck inside lock
-                BuildReference<R> ref = index.byNumber.get(n);
+            idx = index.byNumber.find(n);
+            if (idx >= 0) { // JENKINS-22767: recheck inside lock
+                BuildReference<R> ref = index.byNumber.valueAt(idx);
                 if (ref == null) {
                     LOGGER.fine(() -> "known failure of #" + n + " in " + dir);
                     return null;
@@ -584,6 +603,20 @@ public abstract class AbstractLazyLoadRunMap<R> extends AbstractMap<Integer, R>
         }
     }
 
+    /**
+     * Gets the build numbers found on disk, which may not be modified.
+     */
+    SortedIntList numbersOnDisk() {
+        return numberOnDisk;
+    }
+
+    /**
+     * Gets the given build if it is currently in memory, without loading it.
+     */
+    @CheckForNull R getLoaded(int n) {
+        return unwrap(index.byNumber.get(n));
+    }
+
     /**
      * @return the highest recorded build number, or 0 if there are none
      */
@@ -650,12 +683,12 @@ public abstract class AbstractLazyLoadRunMap<R> extends AbstractMap<Integer, R>
      * @return
      *      fully populated map.
      */
-    /*package*/ TreeMap<Integer, BuildReference<R>> all() {
+    /*package*/ SortedMap<Integer, BuildReference<R>> all() {
         if (!fullyLoaded) {
             synchronized (this) {
                 if (!fullyLoaded) {
                     Index copy = copy();
-                    for (Integer number : numberOnDisk) {
+                    for (int number : numberOnDisk) {
                         if (!copy.byNumber.containsKey(number))
                             load(number, copy);
                     }
@@ -664,7 +697,7 @@ public abstract class AbstractLazyLoadRunMap<R> extends AbstractMap<Integer, R>
                 }
             }
         }
-        return index.byNumber;
+        return index.byNumber.descendingView();
     }
 
     /**
@@ -0,0 +1,381 @@
+package jenkins.model.lazy;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.model.Item;
+import hudson.model.Run;
+import hudson.model.listeners.ItemListener;
+import hudson.model.listeners.RunListener;
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.InvalidPathException;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+import java.util.logging.Logger;
+import jenkins.model.lazy.BuildReference.Holder;
+import jenkins.model.lazy.BuildReference.HolderFactory;
+import jenkins.util.SystemProperties;
+import net.jcip.annotations.GuardedBy;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * {@link HolderFactory} keeping loaded builds in a cache of bounded, estimated size,
+ * used by {@link BuildReference.DefaultHolderFactory} in the {@code bounded} mode.
+ *
+ * <p>
+ * Unlike soft references, which let the heap fill up with builds until the garbage collector has to clear them all
+ * at once, this keeps the builds within a fixed {@link #BUDGET_MB budget}, evicting the least recently used ones as
+ * others are loaded. Recency is approximated with a second-chance (CLOCK) scheme, so that a cache hit is lock free.
+ * Builds are grouped by job, and evictions start with the job using the most memory, while no job may use more than
+ * {@link #MAX_JOB_SHARE_PERCENT} of the budget, so that walking through the history of one job does not flush the
+ * builds of all the others.
+ *
+ * <p>
+ * An evicted build stays reachable through a weak reference for as long as something else uses it, such as the
+ * executor running it, so that it is never loaded twice. Once it is gone,
+ * {@link AbstractLazyLoadRunMap#getByNumber} loads it again. Deleted builds and jobs are dropped right away.
+ *
+ * <p>
+ * The size of a build is estimated from the size of its {@code build.xml}, as XML even if it was compressed.
+ *
+ * @since TODO
+ */
+@Restricted(NoExternalUse.class)
+public final class BoundedHolderFactory implements HolderFactory {
+
+    /**
+     * Budget of the cache, in megabytes. Defaults to a tenth of the maximal heap size.
+     */
+    static final long BUDGET_MB = SystemProperties.getLong(BoundedHolderFactory.class.getName() + ".budgetMB", Runtime.getRuntime().maxMemory() / 10 / 1024 / 1024);
+
+    /**
+     * Maximal share of the budget that the builds of a single job may use, in percent.
+     */
+    static final int MAX_JOB_SHARE_PERCENT = SystemProperties.getInteger(BoundedHolderFactory.class.getName() + ".maxJobSharePercent", 25);
+
+    /**
+     * Estimated heap size of a build besides what is read from its {@code build.xml}.
+     */
+    private static final long BASE_SIZE = 16 * 1024;
+
+    /**
+     * Estimated ratio between the heap size of a build and the size of its {@code build.xml}.
+     */
+    private static final int XML_SIZE_FACTOR = 3;
+
+    /**
+     * Size of a GZIP header and trailer.
+     */
+    private static final int GZIP_MIN_LENGTH = 18;
+
+    private static final class Singleton {
+        static final BoundedHolderFactory INSTANCE = new BoundedHolderFactory(BUDGET_MB * 1024 * 1024, MAX_JOB_SHARE_PERCENT,
+                BoundedHolderFactory::estimateSize, BoundedHolderFactory::groupOf);
+    }
+
+    public static @NonNull BoundedHolderFactory get() {
+        return Singleton.INSTANCE;
+    }
+
+    private final long budget;
+    private final long maxGroupSize;
+    private final ToLongFunction<Object> sizer;
+    private final Function<Object, Object> grouper;
+
+    @GuardedBy("this")
+    private final Map<Object, Group> groups = new HashMap<>();
+
+    @GuardedBy("this")
+    private long used;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    BoundedHolderFactory(long budget, int maxGroupSharePercent, @NonNull ToLongFunction<Object> sizer, @NonNull Function<Object, Object> grouper) {
+        this.budget = budget;
+        this.maxGroupSize = budget / 100 * maxGroupSharePercent;
+        this.sizer = sizer;
+        this.grouper = grouper;
+    }
+
+    @Override
+    public <R> Holder<R> make(@NonNull R referent) {
+        BoundedHolder<R> h = new BoundedHolder<>(referent, sizer.applyAsLong(referent));
+        admit(h, referent);
+        return h;
+    }
+
+    private synchronized void admit(BoundedHolder<?> h, Object referent) {
+        Object key = grouper.apply(referent);
+        Group g = groups.computeIfAbsent(key, Group::new);
+        h.group = g;
+        g.queue.addLast(h);
+        g.used += h.size;
+        used += h.size;
+        while (g.used > maxGroupSize && g.evictOne()) {
+            // the job exceeded its share
+        }
+        while (used > budget) {
+            Group largest = null;
+            for (Group candidate : groups.values()) {
+                if (largest == null || candidate.used > largest.used) {
+                    largest = candidate;
+                }
+            }
+            if (largest == null || !largest.evictOne()) {
+                break;
+            }
+        }
+    }
+
+    private synchronized <R> void readmit(BoundedHolder<R> h, R referent) {
+        if (h.group == null) {
+            h.strong = referent;
+            admit(h, referent);
+        }
+    }
+
+    /**
+     * Estimates the heap size of a build.
+     */
+    static long estimateSize(Object referent) {
+        if (referent instanceof Run<?, ?> r) {
+            return BASE_SIZE + XML_SIZE_FACTOR * xmlSize(new File(r.getRootDir(), "build.xml"));
+        }
+        return BASE_SIZE;
+    }
+
+    /**
+     * Gets the size of a build record as XML, which for a {@linkplain jenkins.model.BuildRecordCompression compressed}
+     * one is found in the GZIP trailer rather than read by decompressing it.
+     *
+     * @return 0 if it cannot be read
+     */
+    static long xmlSize(File file) {
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long length = ch.size();
+            ByteBuffer magic = ByteBuffer.allocate(2);
+            if (length < GZIP_MIN_LENGTH || ch.read(magic, 0) < 2 || magic.get(0) != (byte) 0x1f || magic.get(1) != (byte) 0x8b) {
+                return length;
+            }
+            // ISIZE, the uncompressed size modulo 2^32, ends the file
+            ByteBuffer isize = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            if (ch.read(isize, length - 4) < 4) {
+                return length;
+            }
+            return Integer.toUnsignedLong(isize.getInt(0));
+        } catch (IOException | InvalidPathException e) {
+            return 0;
+        }
+    }
+
+    private static Object groupOf(Object referent) {
+        return referent instanceof Run<?, ?> r ? r.getParent() : BoundedHolderFactory.class;
+    }
+
+    /**
+     * Drops a deleted build, so that it no longer counts against the budget.
+     */
+    synchronized void forget(@NonNull Object referent) {
+        Object key = grouper.apply(referent);
+        Group g = groups.get(key);
+        if (g == null) {
+            return;
+        }
+        for (Iterator<BoundedHolder<?>> it = g.queue.iterator(); it.hasNext();) {
+            BoundedHolder<?> h = it.next();
+            if (h.weak.get() == referent) {
+                it.remove();
+                g.drop(h);
+            }
+        }
+        if (g.queue.isEmpty()) {
+            groups.remove(key);
+        }
+    }
+
+    /**
+     * Drops the builds of deleted jobs.
+     */
+    synchronized void forgetGroups(@NonNull Predicate<Object> deleted) {
+        for (Iterator<Group> it = groups.values().iterator(); it.hasNext();) {
+            Group g = it.next();
+            if (deleted.test(g.key)) {
+                it.remove();
+                for (BoundedHolder<?> h : g.queue) {
+                    g.drop(h);
+                }
+                g.queue.clear();
+            }
+        }
+    }
+
+    /**
+     * Number of builds found in the cache.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Number of builds which had been evicted and collected, and so had to be loaded again.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public synchronized long getUsedBytes() {
+        return used;
+    }
+
+    public long getBudgetBytes() {
+        return budget;
+    }
+
+    public synchronized int getSize() {
+        int size = 0;
+        for (Group g : groups.values()) {
+            size += g.queue.size();
+        }
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return "BoundedHolderFactory[" + getSize() + " builds, " + getUsedBytes() + "/" + budget + " bytes, " + getHits() + " hits, "
+                + getMisses() + " misses, " + getEvictions() + " evictions]";
+    }
+
+    @Extension
+    @Restricted(NoExternalUse.class)
+    public static final class RunListenerImpl extends RunListener<Run<?, ?>> {
+        @Override
+        public void onDeleted(Run<?, ?> r) {
+            get().forget(r);
+        }
+    }
+
+    @Extension
+    @Restricted(NoExternalUse.class)
+    public static final class ItemListenerImpl extends ItemListener {
+        @Override
+        public void onDeleted(Item item) {
+            // a deleted folder takes the jobs it contains along
+            String prefix = item.getFullName() + '/';
+            get().forgetGroups(key -> key == item || key instanceof Item i && i.getFullName().startsWith(prefix));
+        }
+    }
+
+    /**
+     * The cached builds of a job, oldest first.
+     */
+    private final class Group {
+        final Object key;
+        final ArrayDeque<BoundedHolder<?>> queue = new ArrayDeque<>();
+        long used;
+
+        Group(Object key) {
+            this.key = key;
+        }
+
+        /**
+         * Evicts the first build which was not used since it was last given a second chance.
+         *
+         * @return false if the group is empty
+         */
+        boolean evictOne() {
+            assert Thread.holdsLock(BoundedHolderFactory.this);
+            while (true) {
+                BoundedHolder<?> h = queue.pollFirst();
+                if (h == null) {
+                    groups.remove(key);
+                    return false;
+                }
+                if (h.referenced && !queue.isEmpty()) {
+                    h.referenced = false;
+                    queue.addLast(h);
+                    continue;
+                }
+                drop(h);
+                evictions.increment();
+                if (queue.isEmpty()) {
+                    groups.remove(key);
+                }
+                LOGGER.finer(() -> "evicted " + h + " of " + key);
+                return true;
+            }
+        }
+
+        /**
+         * Releases a build already removed from {@link #queue}.
+         */
+        void drop(BoundedHolder<?> h) {
+            assert Thread.holdsLock(BoundedHolderFactory.this);
+            h.strong = null;
+            h.referenced = false;
+            h.group = null;
+            used -= h.size;
+            BoundedHolderFactory.this.used -= h.size;
+        }
+    }
+
+    private final class BoundedHolder<R> implements Holder<R> {
+        private final WeakReference<R> weak;
+        private volatile R strong;
+        private volatile boolean referenced;
+        final long size;
+        @GuardedBy("BoundedHolderFactory.this")
+        Group group;
+
+        BoundedHolder(R referent, long size) {
+            this.weak = new WeakReference<>(referent);
+            this.strong = referent;
+            this.size = size;
+        }
+
+        @Override
+        public @CheckForNull R get() {
+            R r = strong;
+            if (r != null) {
+                referenced = true;
+                hits.increment();
+                return r;
+            }
+            r = weak.get();
+            if (r != null) {
+                // evicted but still in use elsewhere, so worth keeping
+                hits.increment();
+                readmit(this, r);
+            } else {
+                misses.increment();
+            }
+            return r;
+        }
+
+        @Override
+        public String toString() {
+            R r = weak.get();
+            return String.valueOf(r);
+        }
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(BoundedHolderFactory.class.getName());
+}
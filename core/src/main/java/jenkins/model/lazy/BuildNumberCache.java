@@ -0,0 +1,320 @@
+package jenkins.model.lazy;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.util.SystemProperties;
+import org.apache.commons.io.function.IORunnable;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Build numbers found in a build directory, kept in a small binary file next to it,
+ * so that {@link AbstractLazyLoadRunMap} does not need to list the directory when a job is loaded.
+ *
+ * <p>
+ * The file starts with the last modification time of the directory when the numbers were known to be accurate,
+ * followed by one {@code int} per change: a build number when a build is added, its complement when it is removed.
+ * The numbers are only used as long as the directory was not modified since, so that builds added or removed by any
+ * other means, such as restoring a backup, are found by listing the directory again.
+ *
+ * <p>
+ * Jenkins itself changes the directory in other ways too, such as by writing {@code permalinks}, so such changes must
+ * go through {@link #update(File, IORunnable)} or its siblings to keep the file current. Anything else merely costs
+ * a listing the next time the job is loaded.
+ *
+ * <p>
+ * The file is stored next to the directory rather than inside it, as writing it would otherwise change the
+ * modification time it is checked against. Its name contains {@code @}, which may not occur in item names,
+ * so that it cannot clash with the build directory of another job.
+ *
+ * @since TODO
+ */
+@Restricted(NoExternalUse.class)
+public final class BuildNumberCache {
+
+    /**
+     * Whether build numbers are cached. When disabled, build directories are listed every time a job is loaded.
+     */
+    public static /* Script Console modifiable */ boolean ENABLED = !SystemProperties.getBoolean(BuildNumberCache.class.getName() + ".disabled");
+
+    static final String SUFFIX = "@numbers";
+
+    private static final int MAGIC = 0x4A424E43; // JBNC
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 16;
+
+    /**
+     * How long ago, in milliseconds, the directory must have last been modified for its listing to be cached.
+     * Timestamps are coarse on some file systems, so a change made just after the listing could otherwise go unnoticed.
+     */
+    private static final long MIN_AGE = 2000;
+
+    /**
+     * Minimal number of records before the file is considered for compaction.
+     */
+    private static final int COMPACTION_THRESHOLD = 64;
+
+    private BuildNumberCache() {}
+
+    static @NonNull File fileFor(@NonNull File dir) {
+        return new File(dir.getParentFile(), dir.getName() + SUFFIX);
+    }
+
+    /**
+     * Reads the cached build numbers of a directory.
+     *
+     * @return the build numbers in the ascending order, or null if they are not known
+     */
+    static @CheckForNull SortedIntList read(@NonNull File dir) {
+        if (!ENABLED) {
+            return null;
+        }
+        File file = fileFor(dir);
+        synchronized (BuildNumberCache.class) {
+            ByteBuffer buf;
+            try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                long size = ch.size();
+                if (size < HEADER_SIZE || size % 4 != 0 || size > Integer.MAX_VALUE) {
+                    LOGGER.fine(() -> "ignoring truncated " + file);
+                    return null;
+                }
+                buf = ByteBuffer.allocate((int) size);
+                while (buf.hasRemaining()) {
+                    if (ch.read(buf) < 0) {
+                        return null;
+                    }
+                }
+                buf.flip();
+            } catch (NoSuchFileException x) {
+                return null;
+            } catch (IOException | InvalidPathException x) {
+                LOGGER.log(Level.FINE, "Failed to read " + file, x);
+                return null;
+            }
+            if (buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+                LOGGER.fine(() -> "ignoring unrecognized " + file);
+                return null;
+            }
+            long stamp = buf.getLong();
+            if (stamp == 0 || stamp != dir.lastModified()) {
+                LOGGER.fine(() -> dir + " was modified since " + file + " was written");
+                return null;
+            }
+            int records = buf.remaining() / 4;
+            // sort records by build number, then by position, so that the last record about a build wins
+            long[] sorted = new long[records];
+            for (int i = 0; i < records; i++) {
+                int record = buf.getInt();
+                int n = record >= 0 ? record : ~record;
+                sorted[i] = (long) n << 32 | (long) i << 1 | (record >= 0 ? 1 : 0);
+            }
+            Arrays.sort(sorted);
+            SortedIntList numbers = new SortedIntList(records);
+            for (int i = 0; i < records; i++) {
+                int n = (int) (sorted[i] >>> 32);
+                boolean last = i + 1 == records || (int) (sorted[i + 1] >>> 32) != n;
+                if (last && (sorted[i] & 1) != 0) {
+                    numbers.add(n);
+                }
+            }
+            if (records > COMPACTION_THRESHOLD && records > 2 * numbers.size()) {
+                write(file, numbers, stamp);
+            }
+            return numbers;
+        }
+    }
+
+    /**
+     * Records the build numbers just found by listing a directory.
+     *
+     * @param modified the last modification time of the directory before it was listed
+     */
+    static void listed(@NonNull File dir, @NonNull SortedIntList numbers, long modified) {
+        if (!ENABLED || modified == 0) {
+            return;
+        }
+        File file = fileFor(dir);
+        synchronized (BuildNumberCache.class) {
+            if (System.currentTimeMillis() - modified < MIN_AGE || dir.lastModified() != modified) {
+                // the directory is being modified; try again next time rather than risk missing a change
+                try {
+                    Files.deleteIfExists(file.toPath());
+                } catch (IOException | InvalidPathException x) {
+                    LOGGER.log(Level.FINE, "Failed to delete " + file, x);
+                }
+                return;
+            }
+            write(file, numbers, modified);
+        }
+    }
+
+    private static void write(File file, SortedIntList numbers, long stamp) {
+        assert Thread.holdsLock(BuildNumberCache.class);
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_SIZE + 4 * numbers.size());
+        buf.putInt(MAGIC).putInt(VERSION).putLong(stamp);
+        for (int i = 0; i < numbers.size(); i++) {
+            buf.putInt(numbers.get(i));
+        }
+        buf.flip();
+        Path tmp = null;
+        try {
+            Path target = file.toPath();
+            tmp = Files.createTempFile(target.getParent(), file.getName(), ".tmp");
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                while (buf.hasRemaining()) {
+                    ch.write(buf);
+                }
+            }
+            try {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException x) {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            tmp = null;
+        } catch (IOException | InvalidPathException x) {
+            LOGGER.log(Level.WARNING, "Failed to write " + file, x);
+        } finally {
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException x) {
+                    LOGGER.log(Level.FINE, "Failed to delete " + tmp, x);
+                }
+            }
+        }
+    }
+
+    /**
+     * Changes a build directory without adding or removing any build, such as by writing some other file into it.
+     */
+    public static void update(@NonNull File dir, @NonNull IORunnable change) throws IOException {
+        update(dir, change, 0, false);
+    }
+
+    /**
+     * Adds a build to a build directory, typically by creating its own directory.
+     */
+    public static void addBuild(@NonNull File dir, int number, @NonNull IORunnable change) throws IOException {
+        update(dir, change, number, true);
+    }
+
+    /**
+     * Removes a build from a build directory, typically by moving its own directory out of the way.
+     */
+    public static void removeBuild(@NonNull File dir, int number, @NonNull IORunnable change) throws IOException {
+        update(dir, change, ~number, true);
+    }
+
+    private static void update(File dir, IORunnable change, int record, boolean hasRecord) throws IOException {
+        if (!ENABLED) {
+            change.run();
+            return;
+        }
+        long before = dir.lastModified();
+        boolean done = false;
+        try {
+            change.run();
+            done = true;
+        } finally {
+            updated(dir, before, done, record, hasRecord);
+        }
+    }
+
+    private static void updated(File dir, long before, boolean done, int record, boolean hasRecord) {
+        File file = fileFor(dir);
+        synchronized (BuildNumberCache.class) {
+            try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                while (header.hasRemaining()) {
+                    if (ch.read(header, header.position()) < 0) {
+                        return;
+                    }
+                }
+                header.flip();
+                if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                    return;
+                }
+                long stamp = header.getLong();
+                if (stamp == 0) {
+                    return;
+                }
+                long size = ch.size();
+                if (!done || stamp != before || size % 4 != 0) {
+                    // something else changed the directory, or this change might have been incomplete
+                    writeStamp(ch, 0);
+                    LOGGER.fine(() -> "invalidated " + file);
+                    return;
+                }
+                if (hasRecord) {
+                    ByteBuffer buf = ByteBuffer.allocate(4).putInt(record);
+                    buf.flip();
+                    while (buf.hasRemaining()) {
+                        ch.write(buf, size + buf.position());
+                    }
+                }
+                writeStamp(ch, dir.lastModified());
+            } catch (NoSuchFileException x) {
+                // nothing cached yet
+            } catch (IOException | InvalidPathException x) {
+                LOGGER.log(Level.WARNING, "Failed to update " + file, x);
+            }
+        }
+    }
+
+    private static void writeStamp(FileChannel ch, long stamp) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(8).putLong(stamp);
+        buf.flip();
+        while (buf.hasRemaining()) {
+            ch.write(buf, 8 + buf.position());
+        }
+    }
+
+    /**
+     * Follows a build directory which was moved, such as when its job was renamed.
+     */
+    static void moved(@NonNull File from, @NonNull File to) {
+        File src = fileFor(from);
+        File dst = fileFor(to);
+        synchronized (BuildNumberCache.class) {
+            try {
+                if (Files.exists(src.toPath()) && !Files.exists(dst.toPath())) {
+                    Files.move(src.toPath(), dst.toPath());
+                }
+            } catch (IOException | InvalidPathException x) {
+                LOGGER.log(Level.FINE, "Failed to move " + src + " to " + dst, x);
+            }
+        }
+    }
+
+    /**
+     * Deletes the cached build numbers of a directory, such as when its job is deleted.
+     */
+    public static void delete(@NonNull File dir) {
+        File file = fileFor(dir);
+        synchronized (BuildNumberCache.class) {
+            try {
+                Files.deleteIfExists(file.toPath());
+            } catch (IOException | InvalidPathException x) {
+                LOGGER.log(Level.WARNING, "Failed to delete " + file, x);
+            }
+        }
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(BuildNumberCache.class.getName());
+}
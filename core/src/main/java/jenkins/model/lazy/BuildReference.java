@@ -137,6 +137,8 @@ public final class BuildReference<R> {
      * <dd>Use {@link WeakReference}s. Builds will be kept only until the next full garbage collection cycle.
      * <dt>{@code strong}
      * <dd>Use strong references. Builds will still be loaded lazily, but once loaded, will not be released.
+     * <dt>{@code bounded}
+     * <dd>Keep builds in a cache of bounded size, see {@link BoundedHolderFactory}.
      * <dt>{@code none}
      * <dd>Do not hold onto builds at all. Mainly offered as an option for the purpose of reproducing lazy-loading bugs.
      * </dl>
@@ -154,6 +156,8 @@ public final class BuildReference<R> {
                 return new WeakHolder<>(referent);
             } else if (mode.equals("strong")) {
                 return new StrongHolder<>(referent);
+            } else if (mode.equals("bounded")) {
+                return BoundedHolderFactory.get().make(referent);
             } else if (mode.equals("none")) {
                 return new NoHolder<>();
             } else {
@@ -0,0 +1,324 @@
+package jenkins.model.lazy;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.model.Job;
+import hudson.model.Result;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Durations and results of the last completed builds of a job, maintained as builds complete or are deleted,
+ * so that {@link Job#getEstimatedDuration}, the build stability health report and similar statistics
+ * neither load nor walk builds.
+ *
+ * <p>
+ * This is created from the {@link BuildSummaryIndex} on first use, then also updated as summaries are recorded,
+ * and is not persisted by itself, since the summaries are.
+ * Builds currently in memory are read from the {@link Run} itself, like the summaries do, so that changes made to them
+ * after they completed are taken into account.
+ *
+ * @since TODO
+ */
+@Restricted(NoExternalUse.class)
+public final class BuildStatistics {
+
+    /**
+     * Number of builds kept.
+     */
+    static final int CAPACITY = 100;
+
+    /**
+     * Number of last builds, in progress or not, looked at by {@link #getEstimatedDuration}.
+     */
+    static final int ESTIMATE_WINDOW = 6;
+
+    /**
+     * Weight of the last build in {@link #getSmoothedDuration}.
+     */
+    private static final double SMOOTHING = 0.3;
+
+    private final AbstractLazyLoadRunMap<? extends Run<?, ?>> runs;
+
+    /**
+     * Completed builds, oldest first.
+     */
+    private final List<Entry> entries = new ArrayList<>();
+
+    private double smoothed = -1;
+
+    /**
+     * Stands for a build in progress, which has no result yet.
+     */
+    private static final Entry RUNNING = new Entry(0, 0, null);
+
+    BuildStatistics(@NonNull AbstractLazyLoadRunMap<? extends Run<?, ?>> runs, @NonNull Iterable<BuildSummary> newestFirst) {
+        this.runs = runs;
+        for (BuildSummary s : newestFirst) {
+            if (entries.size() == CAPACITY) {
+                break;
+            }
+            if (!s.isBuilding()) {
+                entries.add(new Entry(s.getNumber(), s.getDuration(), s.getResult()));
+            }
+        }
+        entries.sort(null);
+        recomputeSmoothed();
+    }
+
+    private record Entry(int number, long duration, @CheckForNull Result result) implements Comparable<Entry> {
+        boolean isSuccessful() {
+            return result != null && result.isBetterOrEqualTo(Result.UNSTABLE);
+        }
+
+        @Override
+        public int compareTo(Entry o) {
+            return Integer.compare(number, o.number);
+        }
+    }
+
+    /**
+     * Records a build which just completed.
+     */
+    synchronized void add(@NonNull Run<?, ?> r) {
+        Entry e = new Entry(r.getNumber(), r.getDuration(), r.getResult());
+        int i = indexOf(e.number);
+        if (i >= 0) {
+            entries.set(i, e);
+            recomputeSmoothed();
+            return;
+        }
+        i = -i - 1;
+        if (i == 0 && entries.size() == CAPACITY) {
+            // older than anything kept
+            return;
+        }
+        entries.add(i, e);
+        if (entries.size() > CAPACITY) {
+            entries.remove(0);
+        }
+        if (i == entries.size() - 1) {
+            if (e.isSuccessful()) {
+                smoothed = smoothed < 0 ? e.duration : SMOOTHING * e.duration + (1 - SMOOTHING) * smoothed;
+            }
+        } else {
+            recomputeSmoothed();
+        }
+    }
+
+    /**
+     * Forgets about a build which was deleted.
+     */
+    synchronized void remove(int number) {
+        int i = indexOf(number);
+        if (i >= 0) {
+            entries.remove(i);
+            recomputeSmoothed();
+        }
+    }
+
+    private int indexOf(int number) {
+        int lo = 0;
+        int hi = entries.size() - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int n = entries.get(mid).number;
+            if (n < number) {
+                lo = mid + 1;
+            } else if (n > number) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(lo + 1);
+    }
+
+    private void recomputeSmoothed() {
+        smoothed = -1;
+        for (Entry e : entries) {
+            if (e.isSuccessful()) {
+                smoothed = smoothed < 0 ? e.duration : SMOOTHING * e.duration + (1 - SMOOTHING) * smoothed;
+            }
+        }
+    }
+
+    /**
+     * Gets an entry as it currently is.
+     */
+    private Entry current(int index) {
+        Entry e = entries.get(index);
+        Run<?, ?> r = runs.getLoaded(e.number);
+        return r != null && !r.isBuilding() ? new Entry(e.number, r.getDuration(), r.getResult()) : e;
+    }
+
+    /**
+     * Estimates the duration of the next build as {@link Job#getEstimatedDuration} does by default:
+     * the average duration of the last successful or unstable build and of those among the last {@value #ESTIMATE_WINDOW}
+     * builds, up to three, completed with the failed ones of that window if needed.
+     *
+     * @return -1 if no suitable build is known, or if some of those builds are not known
+     */
+    public synchronized long getEstimatedDuration() {
+        SortedIntList numbers = runs.numbersOnDisk();
+        Entry lastSuccessful = null;
+        for (int n = numbers.size() - 1; n >= 0 && lastSuccessful == null; n--) {
+            Entry e = find(numbers.get(n));
+            if (e == null) {
+                return -1;
+            }
+            if (e.isSuccessful()) {
+                lastSuccessful = e;
+            }
+        }
+
+        List<Entry> candidates = new ArrayList<>(3);
+        if (lastSuccessful != null) {
+            candidates.add(lastSuccessful);
+        }
+        List<Entry> fallbackCandidates = new ArrayList<>(3);
+        for (int n = numbers.size() - 1, i = 0; n >= 0 && candidates.size() < 3 && i < ESTIMATE_WINDOW; n--, i++) {
+            Entry e = find(numbers.get(n));
+            if (e == null) {
+                return -1;
+            }
+            if (e.result == null || lastSuccessful != null && e.number == lastSuccessful.number) {
+                continue;
+            }
+            if (e.isSuccessful()) {
+                candidates.add(e);
+            } else if (e.result.isCompleteBuild()) {
+                fallbackCandidates.add(e);
+            }
+        }
+        while (candidates.size() < 3 && !fallbackCandidates.isEmpty()) {
+            candidates.add(fallbackCandidates.remove(0));
+        }
+
+        long total = 0;
+        for (Entry e : candidates) {
+            total += e.duration;
+        }
+        if (total == 0) {
+            return -1;
+        }
+        return Math.round((double) total / candidates.size());
+    }
+
+    /**
+     * Finds a build by number, as it currently is.
+     *
+     * @return {@link #RUNNING} for a build in progress, or null if the build is not known
+     */
+    private @CheckForNull Entry find(int number) {
+        int i = indexOf(number);
+        if (i >= 0) {
+            return current(i);
+        }
+        Run<?, ?> r = runs.getLoaded(number);
+        return r != null && r.isBuilding() ? RUNNING : null;
+    }
+
+    /**
+     * Outcome of the last conclusive builds, that is the successful, unstable or failed ones.
+     *
+     * @param total the number of such builds
+     * @param failed how many of them failed
+     */
+    public record Stability(int total, int failed) {}
+
+    /**
+     * Counts the failures among the last conclusive builds.
+     *
+     * @param count how many conclusive builds to consider
+     * @return null if fewer of them are known
+     */
+    public synchronized @CheckForNull Stability getStability(int count) {
+        int total = 0;
+        int failed = 0;
+        for (int i = entries.size() - 1; i >= 0 && total < count; i--) {
+            Result result = current(i).result;
+            if (result == Result.SUCCESS || result == Result.UNSTABLE) {
+                total++;
+            } else if (result == Result.FAILURE) {
+                total++;
+                failed++;
+            }
+        }
+        return total == count ? new Stability(total, failed) : null;
+    }
+
+    /**
+     * Gets the proportion of successful builds among the conclusive ones of those kept.
+     *
+     * @return between 0 and 1, or -1 if no conclusive build is known
+     */
+    public synchronized double getSuccessRate() {
+        int total = 0;
+        int successful = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            Result result = current(i).result;
+            if (result == Result.SUCCESS) {
+                total++;
+                successful++;
+            } else if (result == Result.UNSTABLE || result == Result.FAILURE) {
+                total++;
+            }
+        }
+        return total == 0 ? -1 : (double) successful / total;
+    }
+
+    /**
+     * Gets a percentile of the durations of the successful or unstable builds kept.
+     *
+     * @param percent between 0 and 100, such as 50 for the median
+     * @return -1 if no such build is known
+     */
+    public synchronized long getDurationPercentile(int percent) {
+        if (percent < 0 || percent > 100) {
+            throw new IllegalArgumentException("not a percentage: " + percent);
+        }
+        long[] durations = new long[entries.size()];
+        int n = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            Entry e = current(i);
+            if (e.isSuccessful()) {
+                durations[n++] = e.duration;
+            }
+        }
+        if (n == 0) {
+            return -1;
+        }
+        Arrays.sort(durations, 0, n);
+        // nearest rank
+        return durations[Math.max(0, (int) Math.ceil(percent / 100.0 * n) - 1)];
+    }
+
+    /**
+     * Gets the exponentially weighted moving average of the durations of successful or unstable builds,
+     * which follows the trend of build times more closely than {@link #getEstimatedDuration}.
+     *
+     * @return -1 if no such build is known
+     */
+    public synchronized long getSmoothedDuration() {
+        return Math.round(smoothed);
+    }
+
+    @Extension
+    public static final class Listener extends RunListener<Run> {
+        @Override
+        public void onCompleted(Run r, @NonNull TaskListener listener) {
+            BuildSummaryIndex summaries = r.getParent().getBuildSummaryIndex();
+            if (summaries != null) {
+                summaries.completed(r);
+            }
+        }
+    }
+}
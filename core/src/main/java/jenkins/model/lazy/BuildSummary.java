@@ -0,0 +1,162 @@
+package jenkins.model.lazy;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.model.Result;
+import hudson.model.Run;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * The few properties of a {@link Run} needed to filter or sort build history, kept by {@link BuildSummaryIndex}
+ * so that they can be read without loading {@code build.xml}.
+ *
+ * @since TODO
+ */
+@Restricted(NoExternalUse.class)
+public final class BuildSummary {
+
+    private final int number;
+    /** Null when the same as {@link #number}, as is the case of all builds since JENKINS-24380. */
+    private final @CheckForNull String id;
+    private final long timestamp;
+    private final long startTime;
+    private final long duration;
+    private final @CheckForNull Result result;
+    private final boolean building;
+    /** Null unless {@link Run#hasCustomDisplayName}. */
+    private final @CheckForNull String displayName;
+
+    BuildSummary(int number, @CheckForNull String id, long timestamp, long startTime, long duration, @CheckForNull Result result, boolean building, @CheckForNull String displayName) {
+        this.number = number;
+        this.id = id == null || id.equals(Integer.toString(number)) ? null : id;
+        this.timestamp = timestamp;
+        this.startTime = startTime;
+        this.duration = duration;
+        this.result = result;
+        this.building = building;
+        this.displayName = displayName;
+    }
+
+    public static @NonNull BuildSummary of(@NonNull Run<?, ?> r) {
+        return new BuildSummary(r.getNumber(), r.getId(), r.getTimeInMillis(), r.getStartTimeInMillis(), r.getDuration(), r.getResult(), r.isBuilding(),
+                r.hasCustomDisplayName() ? r.getDisplayName() : null);
+    }
+
+    /**
+     * @see Run#getNumber
+     */
+    public int getNumber() {
+        return number;
+    }
+
+    /**
+     * @see Run#getId
+     */
+    public @NonNull String getId() {
+        return id != null ? id : Integer.toString(number);
+    }
+
+    /**
+     * @see Run#getTimeInMillis
+     */
+    public long getTimeInMillis() {
+        return timestamp;
+    }
+
+    /**
+     * @see Run#getStartTimeInMillis
+     */
+    public long getStartTimeInMillis() {
+        return startTime;
+    }
+
+    /**
+     * @see Run#getDuration
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    /**
+     * @see Run#getResult
+     */
+    public @CheckForNull Result getResult() {
+        return result;
+    }
+
+    /**
+     * @see Run#isBuilding
+     */
+    public boolean isBuilding() {
+        return building;
+    }
+
+    /**
+     * @see Run#getDisplayName
+     */
+    public @NonNull String getDisplayName() {
+        return displayName != null ? displayName : "#" + number;
+    }
+
+    /**
+     * Encodes this summary as a line of the index file, without the line terminator.
+     * Fields are separated by spaces, and strings are URL-encoded so that they contain none.
+     */
+    @NonNull String toLine() {
+        return "+ " + number + ' ' + encode(id) + ' ' + timestamp + ' ' + startTime + ' ' + duration + ' '
+                + (result != null ? result.toString() : "-") + ' ' + (building ? '1' : '0') + ' ' + encode(displayName);
+    }
+
+    /**
+     * Decodes a line written by {@link #toLine}.
+     *
+     * @throws IllegalArgumentException if the line is malformed
+     */
+    static @NonNull BuildSummary fromLine(@NonNull String line) {
+        String[] tokens = line.split(" ", -1);
+        if (tokens.length != 9 || !tokens[0].equals("+")) {
+            throw new IllegalArgumentException("malformed build summary: " + line);
+        }
+        return new BuildSummary(Integer.parseInt(tokens[1]), decode(tokens[2]), Long.parseLong(tokens[3]), Long.parseLong(tokens[4]),
+                Long.parseLong(tokens[5]), tokens[6].equals("-") ? null : Result.fromString(tokens[6]), tokens[7].equals("1"), decode(tokens[8]));
+    }
+
+    private static String encode(@CheckForNull String s) {
+        if (s == null) {
+            return "-";
+        }
+        String encoded = URLEncoder.encode(s, StandardCharsets.UTF_8);
+        return encoded.equals("-") ? "%2D" : encoded;
+    }
+
+    private static @CheckForNull String decode(String s) {
+        return s.equals("-") ? null : URLDecoder.decode(s, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof BuildSummary that)) {
+            return false;
+        }
+        return number == that.number && timestamp == that.timestamp && startTime == that.startTime && duration == that.duration
+                && building == that.building && result == that.result && Objects.equals(id, that.id) && Objects.equals(displayName, that.displayName);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(number, timestamp, duration, result, building);
+    }
+
+    @Override
+    public String toString() {
+        return "#" + number + " " + result + (building ? " (building)" : "");
+    }
+}
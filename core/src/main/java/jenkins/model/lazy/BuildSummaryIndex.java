@@ -0,0 +1,322 @@
+package jenkins.model.lazy;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.model.Run;
+import hudson.util.AtomicFileWriter;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.util.SystemProperties;
+import net.jcip.annotations.GuardedBy;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * {@link BuildSummary Summaries} of the builds of a job, persisted next to the build directories,
+ * so that history queries such as {@link hudson.util.RunList#failureOnly} or {@link hudson.util.RunList#byTimestamp}
+ * only load the builds they return.
+ *
+ * <p>
+ * The file is append-only: {@link #record} adds a line whenever the summary of a saved build changed, such as when it
+ * started, completed or was renamed, and {@link #forget} one when it is deleted, the last line about a build winning. It is read on first use, and rewritten at that time if most of its
+ * lines are obsolete.
+ *
+ * <p>
+ * A build currently in memory is always summarized from the {@link Run} itself. A build without a summary, such as
+ * one created before this index existed, or whose summary says it was still building, is loaded and then recorded.
+ *
+ * @since TODO
+ */
+@Restricted(NoExternalUse.class)
+public final class BuildSummaryIndex {
+
+    /**
+     * Whether build summaries are recorded and used. Builds completed while disabled are loaded, and recorded, the
+     * next time they are needed.
+     */
+    public static /* Script Console modifiable */ boolean ENABLED = !SystemProperties.getBoolean(BuildSummaryIndex.class.getName() + ".disabled");
+
+    static final String FILE_NAME = "buildSummaries";
+
+    private static final String HEADER = "# build summaries v1";
+
+    /**
+     * Minimal number of lines before the file is considered for compaction.
+     */
+    private static final int COMPACTION_THRESHOLD = 100;
+
+    private final AbstractLazyLoadRunMap<? extends Run<?, ?>> runs;
+
+    /**
+     * Summaries by build number, or null until the file has been read.
+     */
+    private volatile ConcurrentMap<Integer, BuildSummary> summaries;
+
+    /**
+     * Summaries recorded before the file has been read, so that saving a build several times without changes,
+     * such as while it is running, does not add lines.
+     */
+    @GuardedBy("this")
+    private final Map<Integer, BuildSummary> recorded = new HashMap<>();
+
+    /**
+     * Statistics of the last builds, or null until first used.
+     */
+    private volatile BuildStatistics statistics;
+
+    public BuildSummaryIndex(@NonNull AbstractLazyLoadRunMap<? extends Run<?, ?>> runs) {
+        this.runs = runs;
+    }
+
+    private @CheckForNull File getFile() {
+        return runs.dir != null ? new File(runs.dir, FILE_NAME) : null;
+    }
+
+    /**
+     * Records the current state of a build, typically just after it was saved.
+     */
+    public void record(@NonNull Run<?, ?> r) {
+        BuildSummary s = BuildSummary.of(r);
+        synchronized (this) {
+            Map<Integer, BuildSummary> known = summaries != null ? summaries : recorded;
+            if (s.equals(known.put(s.getNumber(), s))) {
+                return;
+            }
+            append(s.toLine());
+            if (statistics != null && !s.isBuilding()) {
+                statistics.add(r);
+            }
+        }
+    }
+
+    /**
+     * Records the deletion of a build.
+     */
+    public void forget(int number) {
+        synchronized (this) {
+            if (statistics != null) {
+                statistics.remove(number);
+            }
+            recorded.remove(number);
+            if (summaries != null && summaries.remove(number) == null) {
+                return;
+            }
+            append("- " + number);
+        }
+    }
+
+    private void append(String line) {
+        assert Thread.holdsLock(this);
+        File file = getFile();
+        if (file == null) {
+            return;
+        }
+        try {
+            if (file.exists()) {
+                appendLine(file, line, false);
+            } else {
+                BuildNumberCache.update(runs.dir, () -> appendLine(file, line, true));
+            }
+        } catch (IOException | InvalidPathException e) {
+            LOGGER.log(Level.WARNING, "Failed to update " + file, e);
+        }
+    }
+
+    private static void appendLine(File file, String line, boolean created) throws IOException {
+        try (Writer w = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            if (created) {
+                w.write(HEADER);
+                w.write('\n');
+            }
+            w.write(line);
+            w.write('\n');
+        }
+    }
+
+    private ConcurrentMap<Integer, BuildSummary> summaries() {
+        ConcurrentMap<Integer, BuildSummary> m = summaries;
+        if (m == null) {
+            synchronized (this) {
+                m = summaries;
+                if (m == null) {
+                    m = read();
+                    summaries = m;
+                    recorded.clear();
+                }
+            }
+        }
+        return m;
+    }
+
+    private ConcurrentMap<Integer, BuildSummary> read() {
+        ConcurrentMap<Integer, BuildSummary> result = new ConcurrentHashMap<>();
+        File file = getFile();
+        if (file == null || !file.exists()) {
+            return result;
+        }
+        int lines = 0;
+        try (BufferedReader r = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = r.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                lines++;
+                try {
+                    if (line.startsWith("- ")) {
+                        result.remove(Integer.parseInt(line.substring(2)));
+                    } else {
+                        BuildSummary s = BuildSummary.fromLine(line);
+                        result.put(s.getNumber(), s);
+                    }
+                } catch (RuntimeException e) {
+                    // typically a partially written last line
+                    LOGGER.log(Level.FINE, "Skipping unreadable line of " + file, e);
+                }
+            }
+        } catch (IOException | InvalidPathException e) {
+            LOGGER.log(Level.WARNING, "Failed to read " + file, e);
+            return result;
+        }
+        SortedIntList onDisk = new SortedIntList(runs.numbersOnDisk());
+        result.keySet().removeIf(n -> !onDisk.contains(n));
+        if (lines > COMPACTION_THRESHOLD && lines > 2 * result.size()) {
+            compact(file, result);
+        }
+        return result;
+    }
+
+    private void compact(File file, ConcurrentMap<Integer, BuildSummary> current) {
+        try {
+            BuildNumberCache.update(runs.dir, () -> {
+                AtomicFileWriter w = new AtomicFileWriter(file.toPath(), StandardCharsets.UTF_8);
+                try {
+                    w.write(HEADER);
+                    w.write('\n');
+                    for (BuildSummary s : new TreeMap<>(current).values()) {
+                        w.write(s.toLine());
+                        w.write('\n');
+                    }
+                    w.commit();
+                } finally {
+                    w.abort();
+                }
+            });
+        } catch (IOException | InvalidPathException e) {
+            LOGGER.log(Level.WARNING, "Failed to compact " + file, e);
+        }
+    }
+
+    /**
+     * Gets the summaries of the builds, newest first.
+     *
+     * @param loadMissing whether builds without a usable summary are loaded, and recorded; otherwise they are skipped
+     */
+    public @NonNull Iterable<BuildSummary> newestFirst(boolean loadMissing) {
+        return () -> new Iterator<>() {
+            private final SortedIntList numbers = new SortedIntList(runs.numbersOnDisk());
+            private int index = numbers.size();
+            private BuildSummary next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && index > 0) {
+                    next = summarize(numbers.get(--index), loadMissing);
+                }
+                return next != null;
+            }
+
+            @Override
+            public BuildSummary next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                BuildSummary s = next;
+                next = null;
+                return s;
+            }
+        };
+    }
+
+    private @CheckForNull BuildSummary summarize(int number, boolean loadMissing) {
+        Run<?, ?> r = runs.getLoaded(number);
+        if (r != null) {
+            return BuildSummary.of(r);
+        }
+        BuildSummary s = summaries().get(number);
+        if (s != null && !s.isBuilding()) {
+            return s;
+        }
+        if (!loadMissing) {
+            return null;
+        }
+        r = runs.getByNumber(number);
+        if (r == null) {
+            return null;
+        }
+        if (!r.isBuilding()) {
+            record(r);
+        }
+        return BuildSummary.of(r);
+    }
+
+    /**
+     * Loads the build with the given summary.
+     *
+     * @return null if it can no longer be loaded
+     */
+    public @CheckForNull Run<?, ?> load(@NonNull BuildSummary summary) {
+        return runs.getByNumber(summary.getNumber());
+    }
+
+    /**
+     * Gets the statistics of the last completed builds.
+     */
+    public @NonNull BuildStatistics getStatistics() {
+        BuildStatistics s = statistics;
+        if (s == null) {
+            // records the summaries of the last builds if missing, such as for builds from before this index existed,
+            // so that the estimated duration is known
+            Iterator<BuildSummary> newest = newestFirst(true).iterator();
+            for (int i = 0; i < BuildStatistics.ESTIMATE_WINDOW && newest.hasNext(); i++) {
+                newest.next();
+            }
+            synchronized (this) {
+                s = statistics;
+                if (s == null) {
+                    s = new BuildStatistics(runs, newestFirst(false));
+                    statistics = s;
+                }
+            }
+        }
+        return s;
+    }
+
+    /**
+     * Updates the statistics with a build which just completed.
+     */
+    void completed(@NonNull Run<?, ?> r) {
+        BuildStatistics s = statistics;
+        if (s != null) {
+            s.add(r);
+        }
+        // otherwise it will be read with the others when first needed
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(BuildSummaryIndex.class.getName());
+}
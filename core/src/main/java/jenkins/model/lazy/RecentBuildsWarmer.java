@@ -0,0 +1,121 @@
+package jenkins.model.lazy;
+
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.model.Job;
+import hudson.security.ACL;
+import hudson.util.ClassLoaderSanityThreadFactory;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.model.Jenkins;
+import jenkins.security.ImpersonatingExecutorService;
+import jenkins.util.ErrorLoggingExecutorService;
+import jenkins.util.SystemProperties;
+import jenkins.util.Timer;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Loads the newest builds of the most recently active jobs in the background after startup,
+ * so that the first pages showing them do not have to wait for each {@code build.xml} to be read in turn.
+ *
+ * <p>
+ * Jobs are ranked by the last modification time of their build directory, which changes whenever one of their builds
+ * starts or completes. The newest build of every selected job is loaded first, then the one before it, and so on,
+ * since pages mostly show the last build of each job.
+ *
+ * @since TODO
+ */
+@Restricted(NoExternalUse.class)
+public final class RecentBuildsWarmer {
+
+    /**
+     * Number of builds loaded per job. Zero, the default, disables the warm-up.
+     */
+    public static /* Script Console modifiable */ int BUILDS = SystemProperties.getInteger(RecentBuildsWarmer.class.getName() + ".builds", 0);
+
+    /**
+     * Maximal number of jobs whose builds are loaded, starting with the most recently active ones.
+     */
+    public static /* Script Console modifiable */ int JOBS = SystemProperties.getInteger(RecentBuildsWarmer.class.getName() + ".jobs", 100);
+
+    /**
+     * Number of threads loading builds.
+     */
+    public static /* Script Console modifiable */ int THREADS = SystemProperties.getInteger(RecentBuildsWarmer.class.getName() + ".threads",
+            Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    private RecentBuildsWarmer() {}
+
+    @Initializer(after = InitMilestone.JOB_CONFIG_ADAPTED)
+    public static void init() {
+        if (BUILDS > 0 && JOBS > 0) {
+            Timer.get().submit(() -> warmUp(BUILDS, JOBS));
+        }
+    }
+
+    /**
+     * Schedules the loading of builds.
+     *
+     * @return the executor loading them, already shut down
+     */
+    static ExecutorService warmUp(int builds, int jobs) {
+        long start = System.nanoTime();
+        List<Candidate> candidates = new ArrayList<>();
+        for (Job<?, ?> job : Jenkins.get().allItems(Job.class)) {
+            if (job instanceof LazyBuildMixIn.LazyLoadingJob<?, ?> lazy) {
+                long lastModified = job.getBuildDir().lastModified();
+                if (lastModified > 0) {
+                    candidates.add(new Candidate(lazy.getLazyBuildMixIn()._getRuns(), lastModified));
+                }
+            }
+        }
+        candidates.sort(Comparator.comparingLong((Candidate c) -> c.lastModified).reversed());
+        if (candidates.size() > jobs) {
+            candidates = candidates.subList(0, jobs);
+        }
+        int jobCount = candidates.size();
+        List<Load> loads = new ArrayList<>();
+        for (int rank = 0; rank < jobCount; rank++) {
+            AbstractLazyLoadRunMap<?> runs = candidates.get(rank).runs;
+            SortedIntList numbers = runs.numbersOnDisk();
+            for (int depth = 0; depth < builds && depth < numbers.size(); depth++) {
+                loads.add(new Load(runs, numbers.get(numbers.size() - 1 - depth), depth, rank));
+            }
+        }
+        loads.sort(Comparator.comparingInt((Load l) -> l.depth).thenComparingInt(l -> l.rank));
+        LOGGER.fine(() -> "loading " + loads.size() + " builds of " + jobCount + " jobs");
+
+        ExecutorService executor = new ImpersonatingExecutorService(new ErrorLoggingExecutorService(
+                Executors.newFixedThreadPool(Math.max(1, THREADS), new NamingThreadFactory(new ClassLoaderSanityThreadFactory(new DaemonThreadFactory()), "RecentBuildsWarmer"))),
+                ACL.SYSTEM2);
+        AtomicInteger remaining = new AtomicInteger(loads.size());
+        for (Load load : loads) {
+            executor.execute(() -> {
+                Jenkins j = Jenkins.getInstanceOrNull();
+                if (j != null && !j.isTerminating()) {
+                    load.runs.getByNumber(load.number);
+                }
+                if (remaining.decrementAndGet() == 0) {
+                    LOGGER.log(Level.FINE, "loaded {0} builds in {1}ms", new Object[] {loads.size(), (System.nanoTime() - start) / 1_000_000});
+                }
+            });
+        }
+        executor.shutdown();
+        return executor;
+    }
+
+    private record Candidate(AbstractLazyLoadRunMap<?> runs, long lastModified) {}
+
+    private record Load(AbstractLazyLoadRunMap<?> runs, int number, int depth, int rank) {}
+
+    private static final Logger LOGGER = Logger.getLogger(RecentBuildsWarmer.class.getName());
+}
@@ -0,0 +1,228 @@
+package jenkins.model.lazy;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.SortedMap;
+
+/**
+ * {@code TreeMap&lt;Integer,V>} that uses sorted {@code int} keys for storage, so that lookups do not box.
+ *
+ * Keys are kept in the ascending order, and appending a key greater than all the others, as is the case of new builds,
+ * does not move anything. Null values are allowed.
+ */
+class SortedIntMap<V> {
+    private int[] keys;
+    private Object[] values;
+    private int size;
+
+    SortedIntMap(int capacity) {
+        this.keys = new int[capacity];
+        this.values = new Object[capacity];
+    }
+
+    /**
+     * Internal copy constructor.
+     */
+    SortedIntMap(SortedIntMap<V> that) {
+        this.keys = Arrays.copyOf(that.keys, that.size + 8);
+        this.values = Arrays.copyOf(that.values, that.size + 8);
+        this.size = that.size;
+    }
+
+    /**
+     * Binary search to find the position of the given key.
+     *
+     * @return
+     *      -(insertionPoint+1) if the key isn't found.
+     */
+    public int find(int key) {
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    public boolean containsKey(int key) {
+        return find(key) >= 0;
+    }
+
+    public V get(int key) {
+        int idx = find(key);
+        return idx >= 0 ? valueAt(idx) : null;
+    }
+
+    public V put(int key, V value) {
+        int idx = size == 0 || keys[size - 1] < key ? -(size + 1) : find(key);
+        if (idx >= 0) {
+            V old = valueAt(idx);
+            values[idx] = value;
+            return old;
+        }
+        idx = -(idx + 1);
+        if (keys.length == size) {
+            int capacity = Math.max(keys.length * 2, 8);
+            keys = Arrays.copyOf(keys, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        System.arraycopy(keys, idx, keys, idx + 1, size - idx);
+        System.arraycopy(values, idx, values, idx + 1, size - idx);
+        keys[idx] = key;
+        values[idx] = value;
+        size++;
+        return null;
+    }
+
+    public V remove(int key) {
+        int idx = find(key);
+        if (idx < 0) {
+            return null;
+        }
+        V old = valueAt(idx);
+        System.arraycopy(keys, idx + 1, keys, idx, size - (idx + 1));
+        System.arraycopy(values, idx + 1, values, idx, size - (idx + 1));
+        size--;
+        values[size] = null;
+        return old;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int keyAt(int idx) {
+        return keys[idx];
+    }
+
+    @SuppressWarnings("unchecked")
+    public V valueAt(int idx) {
+        return (V) values[idx];
+    }
+
+    /**
+     * Number of keys lower or equal to the given one, which is also the index of the first key greater than it.
+     */
+    private int countUpTo(int key) {
+        int idx = find(key);
+        return idx >= 0 ? idx + 1 : -(idx + 1);
+    }
+
+    /**
+     * Gets a read-only view of this map, in the descending order of keys like {@link AbstractLazyLoadRunMap}.
+     * The view reflects later changes only as long as no key is added or removed,
+     * so callers are expected to stop changing this map once they expose it.
+     */
+    public SortedMap<Integer, V> descendingView() {
+        return new DescendingView(0, size);
+    }
+
+    /**
+     * Entries from {@code lo} inclusive to {@code hi} exclusive, iterated from {@code hi} down.
+     */
+    private final class DescendingView extends AbstractMap<Integer, V> implements SortedMap<Integer, V> {
+        private final int lo, hi;
+
+        DescendingView(int lo, int hi) {
+            this.lo = lo;
+            this.hi = Math.max(lo, hi);
+        }
+
+        private int indexOf(Object key) {
+            if (!(key instanceof Integer)) {
+                return -1;
+            }
+            int idx = find((Integer) key);
+            return lo <= idx && idx < hi ? idx : -1;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return indexOf(key) >= 0;
+        }
+
+        @Override
+        public V get(Object key) {
+            int idx = indexOf(key);
+            return idx >= 0 ? valueAt(idx) : null;
+        }
+
+        @Override
+        public int size() {
+            return hi - lo;
+        }
+
+        @Override
+        public Comparator<? super Integer> comparator() {
+            return Collections.reverseOrder();
+        }
+
+        /**
+         * @param fromKey greatest key, inclusive
+         * @param toKey smallest key, exclusive
+         */
+        @Override
+        public SortedMap<Integer, V> subMap(Integer fromKey, Integer toKey) {
+            return new DescendingView(Math.max(lo, countUpTo(toKey)), Math.min(hi, countUpTo(fromKey)));
+        }
+
+        @Override
+        public SortedMap<Integer, V> headMap(Integer toKey) {
+            return new DescendingView(Math.max(lo, countUpTo(toKey)), hi);
+        }
+
+        @Override
+        public SortedMap<Integer, V> tailMap(Integer fromKey) {
+            return new DescendingView(lo, Math.min(hi, countUpTo(fromKey)));
+        }
+
+        @Override
+        public Integer firstKey() {
+            if (hi == lo) {
+                throw new NoSuchElementException();
+            }
+            return keyAt(hi - 1);
+        }
+
+        @Override
+        public Integer lastKey() {
+            if (hi == lo) {
+                throw new NoSuchElementException();
+            }
+            return keyAt(lo);
+        }
+
+        @Override
+        public Set<Map.Entry<Integer, V>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Map.Entry<Integer, V>> iterator() {
+                    return new Iterator<>() {
+                        private int idx = hi;
+
+                        @Override
+                        public boolean hasNext() {
+                            return idx > lo;
+                        }
+
+                        @Override
+                        public Map.Entry<Integer, V> next() {
+                            if (idx <= lo) {
+                                throw new NoSuchElementException();
+                            }
+                            idx--;
+                            return new AbstractMap.SimpleImmutableEntry<>(keyAt(idx), valueAt(idx));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return hi - lo;
+                }
+            };
+        }
+    }
+}
@@ -25,6 +25,7 @@
 package jenkins.widgets;
 
 import com.google.common.collect.Iterables;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import hudson.model.AbstractBuild;
@@ -32,6 +33,7 @@ import hudson.model.Job;
 import hudson.model.ParameterValue;
 import hudson.search.UserSearchProperty;
 import hudson.util.Iterators;
+import hudson.util.RunList;
 import hudson.widgets.HistoryWidget;
 import java.util.ArrayList;
 import java.util.Comparator;
@@ -40,8 +42,10 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import jenkins.model.HistoricalBuild;
+import jenkins.model.lazy.BuildSummary;
 import jenkins.model.queue.QueueItem;
 
 /**
@@ -119,7 +123,7 @@ public class HistoryPageFilter<T> {
      * @since 2.17
      */
     public void add(@NonNull Iterable<T> runItems) {
-        addInternal(runItems);
+        addInternal(candidates(runItems));
     }
 
     /**
@@ -131,17 +135,55 @@ public class HistoryPageFilter<T> {
      */
     public void add(@NonNull Iterable<T> runItems, @NonNull List<QueueItem> queueItems) {
         sort(queueItems);
-        addInternal(Iterables.concat(queueItems, runItems));
+        addInternal(Iterables.concat(candidates(queueItems), candidates(runItems)));
+    }
+
+    /**
+     * An item which may be added to the page, whose {@link HistoryPageEntry#getEntryId} is known before the item itself,
+     * so that the items skipped while paging need not be loaded.
+     */
+    private static final class Candidate {
+        final long entryId;
+        private Object item;
+        private final Supplier<?> loader;
+
+        Candidate(@NonNull Object item) {
+            this.entryId = HistoryPageEntry.getEntryId(item);
+            this.item = item;
+            this.loader = null;
+        }
+
+        Candidate(long entryId, @NonNull Supplier<?> loader) {
+            this.entryId = entryId;
+            this.loader = loader;
+        }
+
+        @CheckForNull Object get() {
+            if (item == null && loader != null) {
+                item = loader.get();
+            }
+            return item;
+        }
+    }
+
+    private static Iterable<Candidate> candidates(@NonNull Iterable<?> items) {
+        if (items instanceof RunList<?> runList) {
+            Iterable<BuildSummary> summaries = runList.getSummaries();
+            if (summaries != null) {
+                return Iterables.transform(summaries, s -> new Candidate(Long.MIN_VALUE + s.getNumber(), () -> runList.getRun(s)));
+            }
+        }
+        return Iterables.transform(items, Candidate::new);
     }
 
     /**
      * Add items to the History page, internal implementation.
-     * @param items The items to be added.
-     * @param <ItemT> The type of items should either be T or {@link QueueItem}.
+     * @param items The items to be added, which should either be T or {@link QueueItem}.
      */
-    private <ItemT> void addInternal(@NonNull Iterable<ItemT> items) {
+    private void addInternal(@NonNull Iterable<Candidate> items) {
         // Note that items can be a large lazily evaluated collection,
-        // so this method is optimized to only iterate through it as much as needed.
+        // so this method is optimized to only iterate through it as much as needed,
+        // and to only load the items it adds.
 
         if (!items.iterator().hasNext()) {
             return;
@@ -151,9 +193,9 @@ public class HistoryPageFilter<T> {
 
         if (newerThan == null && olderThan == null) {
             // Just return the first page of entries (newest)
-            Iterator<ItemT> iter = items.iterator();
+            Iterator<Candidate> iter = items.iterator();
             while (iter.hasNext()) {
-                add(iter.next());
+                add(iter.next().get());
                 if (isFull()) {
                     break;
                 }
@@ -165,11 +207,11 @@ public class HistoryPageFilter<T> {
                 // Walk through the items and keep track of the oldest
                 // 'toFillCount' items until we reach an item older than
                 // 'newerThan' or the end of the list.
-                LinkedList<ItemT> itemsToAdd = new LinkedList<>();
-                Iterator<ItemT> iter = items.iterator();
+                LinkedList<Candidate> itemsToAdd = new LinkedList<>();
+                Iterator<Candidate> iter = items.iterator();
                 while (iter.hasNext()) {
-                    ItemT item = iter.next();
-                    if (HistoryPageEntry.getEntryId(item) > newerThan) {
+                    Candidate item = iter.next();
+                    if (item.entryId > newerThan) {
                         itemsToAdd.addLast(item);
 
                         // Discard an item off the front of the list if we have
@@ -191,27 +233,27 @@ public class HistoryPageFilter<T> {
                     if (itemsToAdd.size() < toFillCount) {
                         // We have to restart the iterator and skip the items that we added (because
                         // we may have popped an extra item off the iterator that did not get added).
-                        Iterator<ItemT> skippedIter = items.iterator();
+                        Iterator<Candidate> skippedIter = items.iterator();
                         Iterators.skip(skippedIter, itemsToAdd.size());
                         for (int i = itemsToAdd.size(); i < toFillCount && skippedIter.hasNext(); i++) {
-                            ItemT item = skippedIter.next();
+                            Candidate item = skippedIter.next();
                             itemsToAdd.addLast(item);
                         }
                     }
                     hasDownPage = iter.hasNext();
-                    for (Object item : itemsToAdd) {
-                        add(item);
+                    for (Candidate item : itemsToAdd) {
+                        add(item.get());
                     }
                 }
             }
         } else {
-            Iterator<ItemT> iter = items.iterator();
+            Iterator<Candidate> iter = items.iterator();
             while (iter.hasNext()) {
-                Object item = iter.next();
-                if (HistoryPageEntry.getEntryId(item) >= olderThan) {
+                Candidate item = iter.next();
+                if (item.entryId >= olderThan) {
                     hasUpPage = true;
                 } else {
-                    add(item);
+                    add(item.get());
                     if (isFull()) {
                         hasDownPage = iter.hasNext();
                         break;
@@ -240,14 +282,14 @@ public class HistoryPageFilter<T> {
         });
     }
 
-    private long getNextBuildNumber(@NonNull Object entry) {
+    private long getNextBuildNumber(@NonNull Candidate entry) {
         // TODO refactor into method on HistoryWidget
         if (widget != null && widget.owner instanceof Job job) {
             return job.getNextBuildNumber();
         }
 
         // TODO maybe this should be an error?
-        return HistoryPageEntry.getEntryId(entry) + 1;
+        return entry.entryId + 1;
     }
 
     private void addQueueItem(QueueItem item) {
@@ -1,9 +1,13 @@
 package hudson;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import com.thoughtworks.xstream.converters.ConversionException;
 import com.thoughtworks.xstream.io.StreamException;
@@ -13,8 +17,13 @@ import hudson.util.XStream2;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.TreeMap;
 import jenkins.model.Jenkins;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 public class XmlFileTest {
 
@@ -80,4 +89,23 @@ public class XmlFileTest {
             assertThat(n.getLabelString(), is("LESS_TERMCAP_mb=\u001B[01;31m"));
         }
     }
+
+    @Test
+    public void compressed(@TempDir File tmp) throws IOException {
+        File file = new File(tmp, "build.xml");
+        Map<String, String> data = new TreeMap<>(Map.of("description", "détails ✓"));
+        new XmlFile(new XStream2(), file, true, true).write(data);
+        assertThat(Files.readAllBytes(file.toPath())[0], is((byte) 0x1f));
+        // read transparently, whatever the XmlFile was created for
+        XmlFile plain = new XmlFile(new XStream2(), file);
+        assertThat(plain.read(), is(data));
+        assertThat(plain.asString(), containsString("détails ✓"));
+
+        assertTrue(XmlFile.convert(file, false));
+        assertFalse(XmlFile.convert(file, false));
+        assertThat(Files.readString(file.toPath(), StandardCharsets.UTF_8), startsWith("<?xml version='1.1' encoding='UTF-8'?>"));
+        assertThat(plain.read(), is(data));
+        assertTrue(XmlFile.convert(file, true));
+        assertThat(plain.read(), is(data));
+    }
 }
@@ -30,6 +30,9 @@ import static org.hamcrest.Matchers.is;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
 import org.junit.jupiter.api.Test;
 
@@ -47,6 +50,38 @@ public final class LineTransformationOutputStreamTest {
         test("\r");
     }
 
+    @Test public void chunks() throws Exception {
+        List<String> lines = List.of("a\n", "bc\r\n", "\r", "d\r\n", "\n", "x".repeat(10_000) + "\n", "\r\n", "ef\r", "g");
+        byte[] data = String.join("", lines).getBytes(StandardCharsets.UTF_8);
+        for (int chunk : new int[] {1, 2, 3, 7, 4096, data.length}) {
+            List<String> copied = new ArrayList<>();
+            List<String> shared = new ArrayList<>();
+            try (var legacy = new LineTransformationOutputStream() {
+                    @Override protected void eol(byte[] b, int len) {
+                        copied.add(new String(b, 0, len, StandardCharsets.UTF_8));
+                        // must not affect what is written
+                        Arrays.fill(b, (byte) 0);
+                    }
+                };
+                var offsets = new LineTransformationOutputStream() {
+                    @Override protected void eol(byte[] b, int len) {
+                        eol(b, 0, len);
+                    }
+
+                    @Override protected void eol(byte[] b, int off, int len) {
+                        shared.add(new String(b, off, len, StandardCharsets.UTF_8));
+                    }
+                }) {
+                for (int i = 0; i < data.length; i += chunk) {
+                    legacy.write(data, i, Math.min(chunk, data.length - i));
+                    offsets.write(data, i, Math.min(chunk, data.length - i));
+                }
+            }
+            assertThat(copied, is(lines));
+            assertThat(shared, is(lines));
+        }
+    }
+
     private void test(String linefeed) throws Exception {
         var count = new AtomicLong();
         long max = 1_000_000; // to see OOME in cr without fix: 1_000_000_000
@@ -0,0 +1,110 @@
+package jenkins.console;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import hudson.console.ConsoleNote;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class LogIndexTest {
+
+    @Test
+    public void seekByLine(@TempDir File dir) throws Exception {
+        File log = new File(dir, "log");
+        List<String> lines = new ArrayList<>();
+        try (OutputStream out = LogIndex.indexing(log, Files.newOutputStream(log.toPath()))) {
+            for (int i = 0; i < 50_000; i++) {
+                String line = "line " + i + " " + "x".repeat(i % 100);
+                lines.add(line);
+                byte[] bytes = (line + "\n").getBytes(StandardCharsets.UTF_8);
+                if (i % 2 == 0) {
+                    out.write(bytes);
+                } else {
+                    for (byte b : bytes) {
+                        out.write(b);
+                    }
+                }
+            }
+            out.write("last".getBytes(StandardCharsets.UTF_8));
+            lines.add("last");
+        }
+        assertTrue(new File(dir, "log-index").isFile());
+        assertLines(LogIndex.of(log), lines, true);
+
+        File gz = LogIndex.compress(log);
+        assertFalse(log.exists());
+        assertLines(LogIndex.of(gz), lines, true);
+
+        assertTrue(new File(dir, "log-index").delete());
+        assertLines(LogIndex.of(gz), lines, false);
+    }
+
+    @Test
+    public void transferPlainText(@TempDir File dir) throws Exception {
+        File log = new File(dir, "log");
+        String note = new String(ConsoleNote.PREAMBLE, StandardCharsets.UTF_8) + "AAAAB3+/cXo=" + new String(ConsoleNote.POSTAMBLE, StandardCharsets.UTF_8);
+        StringBuilder plain = new StringBuilder();
+        try (OutputStream out = LogIndex.indexing(log, Files.newOutputStream(log.toPath()))) {
+            for (int i = 0; i < 1000; i++) {
+                byte[] bytes = (note + "line " + i + (i % 3 == 0 ? note : "") + "\n").getBytes(StandardCharsets.UTF_8);
+                // in pieces of various sizes, so that notes span several writes
+                int piece = i % 2 == 0 ? bytes.length : i % 7 + 1;
+                for (int off = 0; off < bytes.length; off += piece) {
+                    out.write(bytes, off, Math.min(piece, bytes.length - off));
+                }
+                plain.append("line ").append(i).append('\n');
+            }
+        }
+        LogIndex index = LogIndex.of(log);
+        assertTrue(index.isTransferable());
+        byte[] expected = plain.toString().getBytes(StandardCharsets.UTF_8);
+        assertEquals(expected.length, index.getPlainTextLength());
+        for (int start = 0; start < expected.length; start += 997) {
+            for (int end : new int[] {start, start + 1, start + 30, expected.length}) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                index.transferPlainText(start, Math.min(end, expected.length), out);
+                assertArrayEquals(Arrays.copyOfRange(expected, start, Math.min(end, expected.length)), out.toByteArray());
+            }
+        }
+
+        try (OutputStream out = LogIndex.indexing(log, Files.newOutputStream(log.toPath()))) {
+            out.write((note + "fine\n" + new String(ConsoleNote.PREAMBLE, StandardCharsets.UTF_8) + "not base64\n").getBytes(StandardCharsets.UTF_8));
+        }
+        assertFalse(LogIndex.of(log).isTransferable());
+
+        LogIndex.compress(log);
+        assertFalse(new File(dir, "log-notes").exists());
+    }
+
+    private static void assertLines(LogIndex index, List<String> lines, boolean indexed) throws IOException {
+        assertEquals(indexed, index.isIndexed());
+        assertEquals(lines.size(), index.getLineCount());
+        long offset = 0;
+        for (int i = 0; i < lines.size(); i++) {
+            if (i % 997 == 0 || i >= lines.size() - LogIndex.STRIDE) {
+                assertEquals(offset, index.getLineOffset(i));
+                try (InputStream in = index.open(offset)) {
+                    assertEquals(lines.get(i), new String(in.readNBytes(lines.get(i).length()), StandardCharsets.UTF_8));
+                }
+            }
+            offset += lines.get(i).length() + 1;
+        }
+        assertEquals(-1, index.getLineOffset(lines.size()));
+        List<String> last = new ArrayList<>();
+        index.readLastLines(3, last, StandardCharsets.UTF_8);
+        assertEquals(lines.subList(lines.size() - 3, lines.size()), last);
+    }
+}
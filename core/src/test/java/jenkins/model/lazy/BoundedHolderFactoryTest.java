@@ -0,0 +1,124 @@
+package jenkins.model.lazy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import jenkins.model.lazy.BuildReference.Holder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class BoundedHolderFactoryTest {
+
+    /**
+     * Builds are named after their job and number, such as {@code a1}, and all weigh 100 bytes.
+     */
+    private final BoundedHolderFactory factory = new BoundedHolderFactory(1000, 50, o -> 100, o -> ((String) o).substring(0, 1));
+
+    private final List<String> referents = new ArrayList<>();
+
+    private Holder<String> make(String name) {
+        String referent = new String(name);
+        referents.add(referent);
+        return factory.make(referent);
+    }
+
+    @Test
+    public void jobShare() {
+        List<Holder<String>> a = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            a.add(make("a" + i));
+        }
+        assertEquals(0, factory.getEvictions());
+        assertEquals(500, factory.getUsedBytes());
+        // a1 was used lately, so a2 goes first
+        assertSame(referents.get(0), a.get(0).get());
+        make("a6");
+        assertEquals(1, factory.getEvictions());
+        assertEquals(500, factory.getUsedBytes());
+        // still in use, so found and cached again
+        assertSame(referents.get(1), a.get(1).get());
+        assertEquals(2, factory.getEvictions());
+        assertEquals(5, factory.getSize());
+    }
+
+    @Test
+    public void budget() {
+        for (int i = 1; i <= 5; i++) {
+            make("a" + i);
+        }
+        for (int i = 1; i <= 4; i++) {
+            make("b" + i);
+        }
+        make("c1");
+        assertEquals(0, factory.getEvictions());
+        assertEquals(1000, factory.getUsedBytes());
+        // evicted from the job using the most memory
+        make("c2");
+        assertEquals(1, factory.getEvictions());
+        assertEquals(1000, factory.getUsedBytes());
+        make("c3");
+        assertEquals(2, factory.getEvictions());
+        assertEquals(10, factory.getSize());
+    }
+
+    @Test
+    public void forgetDeleted() {
+        for (int i = 1; i <= 3; i++) {
+            make("a" + i);
+        }
+        make("b1");
+        factory.forget(referents.get(1));
+        assertEquals(3, factory.getSize());
+        assertEquals(300, factory.getUsedBytes());
+        factory.forgetGroups("a"::equals);
+        assertEquals(1, factory.getSize());
+        assertEquals(100, factory.getUsedBytes());
+        factory.forget(referents.get(3));
+        assertEquals(0, factory.getSize());
+        assertEquals(0, factory.getUsedBytes());
+        assertEquals(0, factory.getEvictions());
+    }
+
+    @Test
+    public void xmlSize(@TempDir Path dir) throws Exception {
+        byte[] xml = "<build/>\n".repeat(1000).getBytes(StandardCharsets.UTF_8);
+        File plain = dir.resolve("plain.xml").toFile();
+        Files.write(plain.toPath(), xml);
+        assertEquals(xml.length, BoundedHolderFactory.xmlSize(plain));
+        File compressed = dir.resolve("compressed.xml").toFile();
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(compressed.toPath()))) {
+            out.write(xml);
+        }
+        assertTrue(compressed.length() < xml.length);
+        assertEquals(xml.length, BoundedHolderFactory.xmlSize(compressed));
+        assertEquals(0, BoundedHolderFactory.xmlSize(dir.resolve("missing.xml").toFile()));
+    }
+
+    @Test
+    public void missOnceCollected() {
+        String referent = new String("a1");
+        WeakReference<String> collected = new WeakReference<>(referent);
+        Holder<String> h = factory.make(referent);
+        referent = null;
+        for (int i = 2; i <= 6; i++) {
+            make("a" + i);
+        }
+        assertEquals(1, factory.getEvictions());
+        for (int i = 0; i < 10 && collected.get() != null; i++) {
+            System.gc();
+        }
+        assertNull(h.get());
+        assertEquals(1, factory.getMisses());
+    }
+}
@@ -0,0 +1,75 @@
+package jenkins.model.lazy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import org.junit.Rule;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class BuildNumberCacheTest {
+
+    @Rule
+    public FakeMapBuilder builder = new FakeMapBuilder();
+
+    private File dir;
+
+    private long modified;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        builder.add(1).add(2).add(3);
+        dir = builder.getDir();
+        Files.writeString(new File(dir, "permalinks").toPath(), "");
+        // listings of recently modified directories are not cached
+        modified = System.currentTimeMillis() / 1000 * 1000 - 60_000;
+        assertTrue(dir.setLastModified(modified));
+    }
+
+    @Test
+    public void loadWithoutListing() throws Exception {
+        FakeMap a = builder.make();
+        assertEquals("[1, 2, 3]", a.numbersOnDisk().toString());
+        assertTrue(BuildNumberCache.fileFor(dir).isFile());
+
+        // a build added without changing the modification time goes unnoticed, showing the directory was not listed
+        builder.add(4);
+        assertTrue(dir.setLastModified(modified));
+        assertEquals("[1, 2, 3]", builder.make().numbersOnDisk().toString());
+
+        // but any actual change is noticed
+        assertTrue(dir.setLastModified(modified + 1000));
+        assertEquals("[1, 2, 3, 4]", builder.make().numbersOnDisk().toString());
+        assertEquals("[1, 2, 3, 4]", String.valueOf(BuildNumberCache.read(dir)));
+    }
+
+    @Test
+    public void followChanges() throws Exception {
+        builder.make();
+        BuildNumberCache.addBuild(dir, 4, () -> builder.add(4));
+        BuildNumberCache.removeBuild(dir, 2, () -> Files.move(new File(dir, "2").toPath(), new File(dir, ".2").toPath()));
+        BuildNumberCache.update(dir, () -> Files.delete(new File(dir, ".2/n").toPath()));
+        BuildNumberCache.update(dir, () -> Files.delete(new File(dir, ".2").toPath()));
+        BuildNumberCache.update(dir, () -> Files.writeString(new File(dir, "permalinks").toPath(), "lastSuccessfulBuild 4"));
+        assertEquals("[1, 3, 4]", String.valueOf(BuildNumberCache.read(dir)));
+        assertEquals("[1, 3, 4]", builder.make().numbersOnDisk().toString());
+
+        // a change made by other means invalidates the cache for good
+        assertTrue(new File(dir, "5").mkdir());
+        assertTrue(dir.setLastModified(modified + 1000));
+        BuildNumberCache.update(dir, () -> Files.writeString(new File(dir, "permalinks").toPath(), ""));
+        assertNull(BuildNumberCache.read(dir));
+        assertEquals("[1, 3, 4, 5]", builder.make().numbersOnDisk().toString());
+    }
+
+    @Test
+    public void recentlyModified() {
+        assertTrue(dir.setLastModified(System.currentTimeMillis()));
+        assertEquals("[1, 2, 3]", builder.make().numbersOnDisk().toString());
+        assertFalse(BuildNumberCache.fileFor(dir).exists());
+    }
+}
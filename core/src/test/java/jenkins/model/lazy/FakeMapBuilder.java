@@ -82,6 +82,7 @@ public class FakeMapBuilder implements TestRule {
                     base.evaluate();
                 } finally {
                     FileUtils.deleteDirectory(dir);
+                    Files.deleteIfExists(BuildNumberCache.fileFor(dir).toPath());
                 }
             }
         };
@@ -0,0 +1,63 @@
+package jenkins.model.lazy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collections;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import org.junit.jupiter.api.Test;
+
+public class SortedIntMapTest {
+
+    @Test
+    public void putGetRemove() {
+        SortedIntMap<String> m = new SortedIntMap<>(0);
+        assertNull(m.put(3, "three"));
+        assertNull(m.put(1, "one"));
+        assertNull(m.put(5, null));
+        assertEquals("one", m.put(1, "uno"));
+        assertEquals(3, m.size());
+        assertEquals("uno", m.get(1));
+        assertTrue(m.containsKey(5));
+        assertNull(m.get(5));
+        assertFalse(m.containsKey(4));
+        assertEquals("three", m.remove(3));
+        assertNull(m.remove(3));
+        assertEquals("{5=null, 1=uno}", m.descendingView().toString());
+    }
+
+    @Test
+    public void sameAsTreeMap() {
+        Random r = new Random(1);
+        SortedIntMap<Integer> m = new SortedIntMap<>(0);
+        TreeMap<Integer, Integer> expected = new TreeMap<>(Collections.reverseOrder());
+        for (int i = 0; i < 1000; i++) {
+            int k = r.nextInt(200);
+            if (r.nextInt(4) == 0) {
+                assertEquals(expected.remove(k), m.remove(k));
+            } else {
+                assertEquals(expected.put(k, i), m.put(k, i));
+            }
+        }
+        SortedMap<Integer, Integer> view = m.descendingView();
+        assertEquals(expected, view);
+        assertEquals(expected.toString(), view.toString());
+        assertEquals(expected.firstKey(), view.firstKey());
+        assertEquals(expected.lastKey(), view.lastKey());
+        for (int from = -1; from <= 201; from += 7) {
+            for (int to = -1; to <= from; to += 5) {
+                assertEquals(expected.subMap(from, to).toString(), view.subMap(from, to).toString());
+                assertEquals(expected.subMap(from, to).toString(), view.headMap(to).tailMap(from).toString());
+            }
+            assertEquals(expected.headMap(from).toString(), view.headMap(from).toString());
+            assertEquals(expected.tailMap(from).toString(), view.tailMap(from).toString());
+        }
+        assertThrows(NoSuchElementException.class, () -> view.subMap(5, 5).firstKey());
+    }
+}
@@ -0,0 +1,57 @@
+package benchmarks;
+
+import hudson.model.Label;
+import hudson.model.Queue;
+
+/**
+ * Minimal task for the queue benchmarks, which never gets to run since no executor can take it.
+ */
+final class BenchmarkTask implements Queue.TransientTask {
+    private final int id;
+    private final Label label;
+
+    BenchmarkTask(int id, Label label) {
+        this.id = id;
+        this.label = label;
+    }
+
+    @Override
+    public Label getAssignedLabel() {
+        return label;
+    }
+
+    @Override
+    public String getName() {
+        return "task-" + id;
+    }
+
+    @Override
+    public String getFullDisplayName() {
+        return getName();
+    }
+
+    @Override
+    public String getDisplayName() {
+        return getName();
+    }
+
+    @Override
+    public String getUrl() {
+        return "task/" + id + "/";
+    }
+
+    @Override
+    public Queue.Executable createExecutable() {
+        return null;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof BenchmarkTask && ((BenchmarkTask) o).id == id;
+    }
+
+    @Override
+    public int hashCode() {
+        return id;
+    }
+}
@@ -0,0 +1,79 @@
+package benchmarks;
+
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.ParameterDefinition;
+import hudson.model.ParametersDefinitionProperty;
+import hudson.model.StringParameterDefinition;
+import hudson.model.TaskListener;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import jenkins.benchmark.jmh.JmhBenchmark;
+import jenkins.benchmark.jmh.JmhBenchmarkState;
+import jenkins.model.BuildRecordCompression;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures how long it takes to load all builds of a job with plain or {@linkplain BuildRecordCompression compressed}
+ * build records. The disk space used by the records is reported as the {@code recordsKiB} secondary result.
+ */
+@JmhBenchmark
+public class BuildRecordCompressionBenchmark {
+    static final int BUILDS = 100;
+
+    public static class MyState extends JmhBenchmarkState {
+        @Param({"false", "true"})
+        public boolean compressed;
+
+        FreeStyleProject project;
+
+        long recordsKiB;
+
+        @Override
+        public void setup() throws Exception {
+            project = getJenkins().createProject(FreeStyleProject.class, "p");
+            // parameters make records closer to the size of real ones
+            List<ParameterDefinition> parameters = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                parameters.add(new StringParameterDefinition("PARAMETER_" + i, "some default value for parameter " + i, "Description of parameter " + i));
+            }
+            project.addProperty(new ParametersDefinitionProperty(parameters));
+            for (int i = 0; i < BUILDS; i++) {
+                project.scheduleBuild2(0).get();
+            }
+            BuildRecordCompression.migrate(compressed, TaskListener.NULL);
+            long size = 0;
+            for (FreeStyleBuild b : project.getBuilds()) {
+                size += new File(b.getRootDir(), "build.xml").length();
+            }
+            recordsKiB = size / 1024;
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        public long recordsKiB;
+
+        @Setup(Level.Iteration)
+        public void setup(MyState state) {
+            recordsKiB = state.recordsKiB;
+        }
+    }
+
+    @Benchmark
+    public void loadAllBuilds(MyState state, Footprint footprint, Blackhole blackhole) {
+        state.project._getRuns().purgeCache();
+        for (int n = 1; n <= BUILDS; n++) {
+            blackhole.consume(state.project.getBuildByNumber(n));
+        }
+    }
+}
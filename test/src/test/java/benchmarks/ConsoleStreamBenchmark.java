@@ -0,0 +1,160 @@
+package benchmarks;
+
+import hudson.Util;
+import hudson.console.HyperlinkNote;
+import hudson.console.LineTransformationOutputStream;
+import hudson.console.PlainTextConsoleOutputStream;
+import hudson.tasks._maven.MavenConsoleAnnotator;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import jenkins.benchmark.jmh.JmhBenchmark;
+import jenkins.console.LogIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the throughput of console output through a typical chain of line based filters:
+ * secret masking as done by a {@code ConsoleLogFilter}, Maven annotations, and note stripping or log indexing.
+ * Each operation writes one MiB, so that the score is in MiB/s.
+ */
+@JmhBenchmark
+public class ConsoleStreamBenchmark {
+    static final int SIZE = 1024 * 1024;
+
+    @State(Scope.Thread)
+    public static class MyState {
+        /**
+         * Size of each write, 80 being like {@link java.io.PrintStream#println(String)} and 8192 like a copy of process output.
+         */
+        @Param({"80", "8192"})
+        public int writeSize;
+
+        byte[] data;
+
+        /**
+         * An empty build log, so that it gets indexed.
+         */
+        File log;
+
+        @Setup
+        public void setup() throws IOException {
+            log = new File(Files.createTempDirectory("ConsoleStreamBenchmark").toFile(), "log");
+            Files.createFile(log.toPath());
+            ByteArrayOutputStream buf = new ByteArrayOutputStream(SIZE);
+            String link = HyperlinkNote.encodeTo("/job/p/", "p");
+            for (int i = 0; buf.size() < SIZE; i++) {
+                String line = switch (i % 8) {
+                    case 0 -> "[INFO] Compiling 42 source files to /home/jenkins/workspace/p/target/classes";
+                    case 1 -> "[WARNING] Parameter 'token' is deprecated, token=s3cr3t-t0k3n";
+                    case 2 -> "Started by upstream project " + link + " build number " + i;
+                    default -> "  at org.example.Component.method(Component.java:" + i + ") [some/library-1.0.jar]";
+                };
+                buf.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+            data = new byte[SIZE];
+            System.arraycopy(buf.toByteArray(), 0, data, 0, SIZE);
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            Util.deleteRecursive(log.getParentFile());
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void filterChain(MyState state, Blackhole blackhole) throws IOException {
+        Sink sink = new Sink();
+        try (OutputStream out = new SecretMaskingOutputStream(
+                new MavenConsoleAnnotator(new PlainTextConsoleOutputStream(sink), StandardCharsets.UTF_8),
+                "s3cr3t-t0k3n".getBytes(StandardCharsets.UTF_8))) {
+            for (int i = 0; i < SIZE; i += state.writeSize) {
+                out.write(state.data, i, Math.min(state.writeSize, SIZE - i));
+            }
+        }
+        blackhole.consume(sink.count);
+    }
+
+    /**
+     * Like {@link #filterChain} when writing a build log, which is indexed.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void indexedChain(MyState state, Blackhole blackhole) throws IOException {
+        Sink sink = new Sink();
+        try (OutputStream out = new SecretMaskingOutputStream(
+                new MavenConsoleAnnotator(LogIndex.indexing(state.log, sink), StandardCharsets.UTF_8),
+                "s3cr3t-t0k3n".getBytes(StandardCharsets.UTF_8))) {
+            for (int i = 0; i < SIZE; i += state.writeSize) {
+                out.write(state.data, i, Math.min(state.writeSize, SIZE - i));
+            }
+        }
+        blackhole.consume(sink.count);
+    }
+
+    static final class Sink extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+
+    /**
+     * Replaces a secret by asterisks, as credentials binding does.
+     */
+    static final class SecretMaskingOutputStream extends LineTransformationOutputStream.Delegating {
+        private static final byte[] MASK = "****".getBytes(StandardCharsets.US_ASCII);
+        private final byte[] secret;
+
+        SecretMaskingOutputStream(OutputStream out, byte[] secret) {
+            super(out);
+            this.secret = secret;
+        }
+
+        @Override
+        protected void eol(byte[] b, int len) throws IOException {
+            eol(b, 0, len);
+        }
+
+        @Override
+        protected void eol(byte[] b, int off, int len) throws IOException {
+            int end = off + len;
+            int written = off;
+            OUTER:
+            for (int i = off; i <= end - secret.length; i++) {
+                for (int j = 0; j < secret.length; j++) {
+                    if (b[i + j] != secret[j]) {
+                        continue OUTER;
+                    }
+                }
+                out.write(b, written, i - written);
+                out.write(MASK);
+                written = i + secret.length;
+                i = written - 1;
+            }
+            out.write(b, written, end - written);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package benchmarks;
+
+import hudson.model.Label;
+import hudson.model.Node;
+import hudson.model.Queue;
+import hudson.slaves.DumbSlave;
+import hudson.slaves.JNLPLauncher;
+import java.util.ArrayList;
+import java.util.List;
+import jenkins.benchmark.jmh.JmhBenchmark;
+import jenkins.benchmark.jmh.JmhBenchmarkState;
+import org.openjdk.jmh.annotations.Benchmark;
+
+/**
+ * Measures a full {@link Queue#maintain()} pass with 10k buildable items spread over 1k agents.
+ * The agents never connect, so items stay in the queue and every pass has to match all of them again.
+ */
+@JmhBenchmark
+public class QueueMaintenanceBenchmark {
+    static final int AGENTS = 1000;
+    static final int ITEMS = 10000;
+    static final int POOLS = 100;
+
+    public static class MyState extends JmhBenchmarkState {
+        @Override
+        public void setup() throws Exception {
+            List<Node> agents = new ArrayList<>(AGENTS);
+            for (int i = 0; i < AGENTS; i++) {
+                DumbSlave agent = new DumbSlave("agent-" + i, "/tmp/agent-" + i, new JNLPLauncher());
+                agent.setLabelString("pool-" + i % POOLS);
+                agents.add(agent);
+            }
+            getJenkins().setNodes(agents);
+            Queue queue = getJenkins().getQueue();
+            for (int i = 0; i < ITEMS; i++) {
+                queue.schedule2(new BenchmarkTask(i, Label.get("pool-" + i % POOLS)), 0);
+            }
+            // move everything out of the waiting list
+            queue.maintain();
+        }
+    }
+
+    @Benchmark
+    public void maintain(MyState state) {
+        state.getJenkins().getQueue().maintain();
+    }
+}
@@ -0,0 +1,60 @@
+package benchmarks;
+
+import hudson.model.Label;
+import hudson.model.Queue;
+import hudson.model.queue.ScheduleRequest;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import java.util.ArrayList;
+import java.util.List;
+import jenkins.benchmark.jmh.JmhBenchmark;
+import jenkins.benchmark.jmh.JmhBenchmarkState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures scheduling 20k distinct tasks into an empty queue, one by one and as a single batch.
+ * The tasks have a long quiet period so that they stay in the waiting list while being scheduled.
+ */
+@JmhBenchmark
+public class QueueSchedulingBenchmark {
+    static final int TASKS = 20000;
+    static final int QUIET_PERIOD = 3600;
+
+    public static class MyState extends JmhBenchmarkState {
+        final List<BenchmarkTask> tasks = new ArrayList<>(TASKS);
+
+        @Override
+        public void setup() throws Exception {
+            Label label = Label.get("nowhere");
+            for (int i = 0; i < TASKS; i++) {
+                tasks.add(new BenchmarkTask(i, label));
+            }
+        }
+
+        @TearDown(Level.Invocation)
+        public void clearQueue() {
+            try (ACLContext ctx = ACL.as2(ACL.SYSTEM2)) {
+                getJenkins().getQueue().clear();
+            }
+        }
+    }
+
+    @Benchmark
+    public void schedule2(MyState state) {
+        Queue queue = state.getJenkins().getQueue();
+        for (BenchmarkTask task : state.tasks) {
+            queue.schedule2(task, QUIET_PERIOD);
+        }
+    }
+
+    @Benchmark
+    public void scheduleAll(MyState state) {
+        List<ScheduleRequest> requests = new ArrayList<>(TASKS);
+        for (BenchmarkTask task : state.tasks) {
+            requests.add(new ScheduleRequest(task, QUIET_PERIOD));
+        }
+        state.getJenkins().getQueue().scheduleAll(requests);
+    }
+}
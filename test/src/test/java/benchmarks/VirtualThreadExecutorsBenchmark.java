@@ -0,0 +1,148 @@
+package benchmarks;
+
+import hudson.model.Executor;
+import hudson.model.Label;
+import hudson.model.Queue;
+import hudson.model.queue.SubTask;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.concurrent.CountDownLatch;
+import jenkins.benchmark.jmh.JmhBenchmark;
+import jenkins.benchmark.jmh.JmhBenchmarkState;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures {@link Queue#maintain()} while 5k flyweight tasks are running, each on its own one-off executor,
+ * with executors on platform threads or on {@linkplain Executor#VIRTUAL_THREADS virtual threads}.
+ * The heap growth and live platform threads with all of them running are reported as secondary results.
+ */
+@JmhBenchmark
+public class VirtualThreadExecutorsBenchmark {
+    static final int TASKS = 5000;
+
+    public static class MyState extends JmhBenchmarkState {
+        @Param({"false", "true"})
+        public boolean virtualThreads;
+
+        final CountDownLatch release = new CountDownLatch(1);
+
+        long heapGrowthKiB;
+
+        long platformThreads;
+
+        @Override
+        public void setup() throws Exception {
+            Executor.VIRTUAL_THREADS = virtualThreads;
+            MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+            System.gc();
+            long heapBefore = memory.getHeapMemoryUsage().getUsed();
+            CountDownLatch started = new CountDownLatch(TASKS);
+            Queue queue = getJenkins().getQueue();
+            for (int i = 0; i < TASKS; i++) {
+                queue.schedule2(new BlockingFlyweightTask(i, started, release), 0);
+            }
+            started.await();
+            System.gc();
+            long heapAfter = memory.getHeapMemoryUsage().getUsed();
+            heapGrowthKiB = (heapAfter - heapBefore) / 1024;
+            platformThreads = ManagementFactory.getThreadMXBean().getThreadCount();
+        }
+
+        @Override
+        public void tearDown() {
+            release.countDown();
+            Executor.VIRTUAL_THREADS = false;
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        public long heapGrowthKiB;
+        public long platformThreads;
+
+        @Setup(Level.Iteration)
+        public void setup(MyState state) {
+            heapGrowthKiB = state.heapGrowthKiB;
+            platformThreads = state.platformThreads;
+        }
+    }
+
+    @Benchmark
+    public void maintain(MyState state, Footprint footprint) {
+        state.getJenkins().getQueue().maintain();
+    }
+
+    private static final class BlockingFlyweightTask implements Queue.FlyweightTask, Queue.TransientTask {
+        private final int id;
+        private final CountDownLatch started;
+        private final CountDownLatch release;
+
+        BlockingFlyweightTask(int id, CountDownLatch started, CountDownLatch release) {
+            this.id = id;
+            this.started = started;
+            this.release = release;
+        }
+
+        @Override
+        public Label getAssignedLabel() {
+            return null;
+        }
+
+        @Override
+        public String getName() {
+            return "flyweight-" + id;
+        }
+
+        @Override
+        public String getFullDisplayName() {
+            return getName();
+        }
+
+        @Override
+        public String getDisplayName() {
+            return getName();
+        }
+
+        @Override
+        public String getUrl() {
+            return "flyweight/" + id + "/";
+        }
+
+        @Override
+        public Queue.Executable createExecutable() {
+            return new Queue.Executable() {
+                @Override
+                public SubTask getParent() {
+                    return BlockingFlyweightTask.this;
+                }
+
+                @Override
+                public void run() {
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            };
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof BlockingFlyweightTask && ((BlockingFlyweightTask) o).id == id;
+        }
+
+        @Override
+        public int hashCode() {
+            return id;
+        }
+    }
+}
@@ -309,4 +309,25 @@ public class BuildCommandTest {
         j.assertLogContains("uploaded content here", b);
     }
 
+    @Test
+    public void multipleJobs() throws Exception {
+        FreeStyleProject p1 = j.createFreeStyleProject("p1");
+        FreeStyleProject p2 = j.createFreeStyleProject("p2");
+        FreeStyleProject p3 = j.createFreeStyleProject("p3");
+        assertThat(new CLICommandInvoker(j, new BuildCommand()).invokeWithArgs("p1", "p2", "p3", "p2"), succeeded());
+        j.waitUntilNoActivity();
+        assertEquals(1, p1.getBuilds().size());
+        assertEquals(1, p2.getBuilds().size());
+        assertEquals(1, p3.getBuilds().size());
+
+        p3.disable();
+        CLICommandInvoker.Result result = new CLICommandInvoker(j, new BuildCommand()).invokeWithArgs("p1", "p3", "nonexistent");
+        assertThat(result, failedWith(5));
+        assertThat(result.stderr(), allOf(containsString("p3: "), containsString("nonexistent: No such job")));
+        j.waitUntilNoActivity();
+        assertEquals(2, p1.getBuilds().size());
+
+        assertThat(new CLICommandInvoker(j, new BuildCommand()).invokeWithArgs("-s", "p1", "p2"), failedWith(4));
+    }
+
 }
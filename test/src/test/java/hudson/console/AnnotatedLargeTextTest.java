@@ -27,6 +27,7 @@ package hudson.console;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.lessThan;
 import static org.hamcrest.Matchers.matchesRegex;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
@@ -154,14 +155,42 @@ public class AnnotatedLargeTextTest {
         AnnotatedLargeText<Void> text = new AnnotatedLargeText<>(buf, StandardCharsets.UTF_8, true, null);
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         text.writeLogTo(0, baos);
-        assertThat(baos.toString(StandardCharsets.UTF_8), matchesRegex("Some text[.]\nGo back to .*your home[.]\nMore text[.]\n"));
-        assertThat(logging.getMessages(), hasItem(matchesRegex("Failed to skip annotation from .+")));
+        // notes are skipped without being decoded
+        assertEquals("Some text.\nGo back to your home.\nMore text.\n", baos.toString(StandardCharsets.UTF_8));
         StringWriter w = new StringWriter();
         text.writeHtmlTo(0, w);
         assertThat(w.toString(), matchesRegex("Some text[.]\nGo back to .*your home[.]\nMore text[.]\n"));
         assertThat(logging.getMessages(), hasItem(matchesRegex("Failed to resurrect annotation from .+")));
     }
 
+    @Test
+    public void compactNotes() throws Exception {
+        String serialized = HyperlinkNote.encodeTo("https://www.jenkins.io/", "home");
+        String compact;
+        ConsoleNote.COMPACT = true;
+        try {
+            compact = HyperlinkNote.encodeTo("https://www.jenkins.io/", "home");
+        } finally {
+            ConsoleNote.COMPACT = false;
+        }
+        assertThat(compact.length(), lessThan(serialized.length() / 2));
+        int i = ConsoleNote.PREAMBLE_STR.length() + 40;
+        String tampered = compact.substring(0, i) + (compact.charAt(i) == 'A' ? 'B' : 'A') + compact.substring(i + 1);
+
+        ByteBuffer buf = new ByteBuffer();
+        PrintStream ps = new PrintStream(buf, true, StandardCharsets.UTF_8);
+        ps.print("Go " + serialized + " or " + compact + ".\n");
+        ps.print("Not " + tampered + ".\n");
+        AnnotatedLargeText<Void> text = new AnnotatedLargeText<>(buf, StandardCharsets.UTF_8, true, null);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        text.writeLogTo(0, baos);
+        assertEquals("Go home or home.\nNot home.\n", baos.toString(StandardCharsets.UTF_8));
+        StringWriter w = new StringWriter();
+        text.writeHtmlTo(0, w);
+        assertEquals("Go <a href='https://www.jenkins.io/'>home</a> or <a href='https://www.jenkins.io/'>home</a>.\nNot home.\n", w.toString());
+        assertThat(logging.getMessages(), hasItem(matchesRegex("Failed to resurrect annotation from .+")));
+    }
+
     /** Simplified version of {@link HyperlinkNote}. */
     static class TestNote extends ConsoleNote<Void> {
         private final String url;
@@ -8,6 +8,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 import hudson.Functions;
 import hudson.Launcher;
@@ -101,6 +102,35 @@ public class ExecutorTest {
         j.assertLogContains(johnny.getId(), b);
     }
 
+    @Test
+    public void virtualThreads() throws Exception {
+        assumeTrue(Runtime.version().feature() >= 21, "virtual threads need Java 21");
+        Executor.VIRTUAL_THREADS = true;
+        try {
+            FreeStyleProject p = j.createFreeStyleProject();
+            p.getBuildersList().add(new TestBuilder() {
+                @Override
+                public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener) throws InterruptedException, IOException {
+                    Executor e = Executor.currentExecutor();
+                    listener.getLogger().println("on executor " + (e != null ? e.getNumber() : null) + ", own thread " + (Thread.currentThread() instanceof Executor));
+                    listener.getLogger().println("EXECUTOR_NUMBER=" + build.getEnvironment(listener).get("EXECUTOR_NUMBER"));
+                    return true;
+                }
+            });
+            FreeStyleBuild b = j.buildAndAssertSuccess(p);
+            j.assertLogContains("on executor 0, own thread false", b);
+            j.assertLogContains("EXECUTOR_NUMBER=0", b);
+
+            // interruption still reaches the build
+            FreeStyleProject blocking = j.createFreeStyleProject();
+            FreeStyleBuild b2 = startBlockingBuild(blocking);
+            b2.getExecutor().interrupt(Result.FAILURE);
+            j.assertBuildStatus(Result.FAILURE, j.waitForCompletion(b2));
+        } finally {
+            Executor.VIRTUAL_THREADS = false;
+        }
+    }
+
     @Test
     public void disconnectCause() throws Exception {
         DumbSlave slave = j.createOnlineSlave();
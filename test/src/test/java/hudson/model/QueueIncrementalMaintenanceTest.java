@@ -0,0 +1,46 @@
+package hudson.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import hudson.model.queue.QueueTaskFuture;
+import org.junit.Rule;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.SleepBuilder;
+
+public class QueueIncrementalMaintenanceTest {
+
+    @Rule public JenkinsRule r = new JenkinsRule();
+
+    @Test
+    public void buildsOnFreedLabel() throws Exception {
+        Queue.INCREMENTAL_MAINTENANCE = true;
+        try {
+            r.createOnlineSlave(Label.get("incremental"));
+            FreeStyleProject p = r.createFreeStyleProject();
+            p.setAssignedLabel(Label.get("incremental"));
+            r.assertBuildStatusSuccess(p.scheduleBuild2(0));
+            r.assertBuildStatusSuccess(p.scheduleBuild2(0));
+            assertEquals(2, p.getBuilds().size());
+        } finally {
+            Queue.INCREMENTAL_MAINTENANCE = false;
+        }
+    }
+
+    @Test
+    public void blockedItemUnblockedWhenTaskCompletes() throws Exception {
+        Queue.INCREMENTAL_MAINTENANCE = true;
+        try {
+            FreeStyleProject p = r.createFreeStyleProject();
+            p.getBuildersList().add(new SleepBuilder(1000));
+            QueueTaskFuture<FreeStyleBuild> first = p.scheduleBuild2(0);
+            first.waitForStart();
+            QueueTaskFuture<FreeStyleBuild> second = p.scheduleBuild2(0, new Cause.UserIdCause());
+            r.assertBuildStatusSuccess(first);
+            r.assertBuildStatusSuccess(second);
+            assertEquals(2, p.getLastBuild().getNumber());
+        } finally {
+            Queue.INCREMENTAL_MAINTENANCE = false;
+        }
+    }
+}
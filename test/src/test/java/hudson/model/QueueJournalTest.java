@@ -0,0 +1,82 @@
+package hudson.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import org.junit.Rule;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+public class QueueJournalTest {
+
+    @Rule public JenkinsRule r = new JenkinsRule();
+
+    @Test
+    public void replayOnLoad() throws Exception {
+        Queue.JOURNAL = true;
+        try {
+            Queue q = r.jenkins.getQueue();
+            // prevent execution to keep stuff in the queue
+            r.jenkins.setNumExecutors(0);
+            q.save();
+
+            FreeStyleProject p1 = r.createFreeStyleProject("p1");
+            FreeStyleProject p2 = r.createFreeStyleProject("p2");
+            q.schedule2(p1, 0);
+            q.schedule2(p2, 0);
+            q.flushJournal();
+            File journal = new File(q.getXMLQueueFile().getPath() + ".journal");
+            assertTrue(journal.exists());
+
+            // queue.xml is empty, so both items come from the journal
+            q.load();
+            assertEquals(2, q.getItems().length);
+            assertTrue(q.contains(p1));
+            assertSame(p2, q.getItem(p2).task);
+            // loading writes everything back to queue.xml
+            assertFalse(journal.exists());
+
+            assertTrue(q.cancel(p1));
+            q.flushJournal();
+            q.load();
+            assertEquals(1, q.getItems().length);
+            assertFalse(q.contains(p1));
+            assertTrue(q.contains(p2));
+
+            q.clear();
+        } finally {
+            Queue.JOURNAL = false;
+        }
+    }
+
+    @Test
+    public void replayedIdsAreNotReused() throws Exception {
+        Queue.JOURNAL = true;
+        try {
+            Queue q = r.jenkins.getQueue();
+            r.jenkins.setNumExecutors(0);
+            q.save();
+
+            FreeStyleProject p1 = r.createFreeStyleProject("p1");
+            FreeStyleProject p2 = r.createFreeStyleProject("p2");
+            FreeStyleProject p3 = r.createFreeStyleProject("p3");
+            long id1 = q.schedule2(p1, 0).getItem().getId();
+            long id2 = q.schedule2(p2, 0).getItem().getId();
+            assertTrue(q.cancel(p2));
+            q.flushJournal();
+
+            // as after a crash: queue.xml restores the id counter from before both items were scheduled
+            q.load();
+            assertEquals(id1, q.getItem(p1).getId());
+            long id3 = q.schedule2(p3, 0).getItem().getId();
+            assertTrue(id3 > id1 && id3 > id2, id3 + " reuses a replayed id");
+
+            q.clear();
+        } finally {
+            Queue.JOURNAL = false;
+        }
+    }
+}
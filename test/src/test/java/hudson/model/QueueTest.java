@@ -29,6 +29,7 @@ import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.hasProperty;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.lessThan;
@@ -42,6 +43,7 @@ import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import edu.umd.cs.findbugs.annotations.NonNull;
@@ -60,8 +62,11 @@ import hudson.model.Queue.Executable;
 import hudson.model.Queue.WaitingItem;
 import hudson.model.listeners.SaveableListener;
 import hudson.model.queue.CauseOfBlockage;
+import hudson.model.queue.QueueMaintenanceMetrics;
 import hudson.model.queue.QueueTaskDispatcher;
+import hudson.model.queue.QueueTaskDispatcherTimings;
 import hudson.model.queue.QueueTaskFuture;
+import hudson.model.queue.ScheduleRequest;
 import hudson.model.queue.ScheduleResult;
 import hudson.model.queue.SubTask;
 import hudson.security.ACL;
@@ -86,6 +91,7 @@ import java.net.HttpURLConnection;
 import java.net.URI;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -106,6 +112,7 @@ import jenkins.model.BlockedBecauseOfBuildInProgress;
 import jenkins.model.Jenkins;
 import jenkins.model.queue.QueueIdStrategy;
 import jenkins.security.QueueItemAuthenticatorConfiguration;
+import net.sf.json.JSONObject;
 import org.acegisecurity.acls.sid.PrincipalSid;
 import org.htmlunit.HttpMethod;
 import org.htmlunit.Page;
@@ -483,7 +490,7 @@ public class QueueTest {
     }
 
 
-    @TestExtension({"upstreamProjectsInQueueBlock", "downstreamProjectsInQueueBlock", "handleCauseOfBlockageThatIsNull"})
+    @TestExtension({"upstreamProjectsInQueueBlock", "downstreamProjectsInQueueBlock", "handleCauseOfBlockageThatIsNull", "parallelBlockageEvaluation"})
     public static class BlockingQueueTaskDispatcher extends QueueTaskDispatcher {
 
         public static final String NAME_OF_BLOCKED_PROJECT = "blocked project";
@@ -1238,6 +1245,204 @@ public class QueueTest {
         assertTrue(r.jenkins.getQueue().cancel(p));
     }
 
+    @Test
+    public void snapshotLookups() throws Exception {
+        Queue q = r.jenkins.getQueue();
+        FreeStyleProject p = r.createFreeStyleProject();
+        FreeStyleProject idle = r.createFreeStyleProject();
+        Label label = Label.get("nowhere");
+        p.setAssignedLabel(label);
+
+        long version = q.getSnapshotVersion();
+        Queue.Item item = q.schedule2(p, 0).getItem();
+        assertNotNull(item);
+        assertThat(q.getSnapshotVersion(), not(equalTo(version)));
+        Queue.withLock(() -> {
+            // nothing changed, even though the lock was taken and released
+            long unchanged = q.getSnapshotVersion();
+            assertFalse(q.cancel(idle));
+            assertEquals(unchanged, q.getSnapshotVersion());
+        });
+        assertSame(item, q.getItem(item.getId()));
+        assertTrue(q.contains(p));
+
+        q.maintain();
+        assertEquals(1, q.countBuildableItemsFor(label));
+        assertEquals(1, q.countBuildableItemsFor(null));
+        assertEquals(1, q.strictCountBuildableItemsFor(label));
+        assertEquals(0, q.strictCountBuildableItemsFor(null));
+        assertEquals(item.getId(), q.getItem(p).getId());
+
+        assertTrue(q.cancel(p));
+        assertFalse(q.contains(p));
+        assertEquals(0, q.countBuildableItemsFor(label));
+    }
+
+    @Test
+    public void scheduleAll() throws Exception {
+        Queue q = r.jenkins.getQueue();
+        r.jenkins.setNumExecutors(0);
+        FreeStyleProject p1 = r.createFreeStyleProject();
+        FreeStyleProject p2 = r.createFreeStyleProject();
+        Queue.Item existing = q.schedule2(p1, 100).getItem();
+        assertNotNull(existing);
+
+        List<ScheduleResult> results = q.scheduleAll(List.of(
+                new ScheduleRequest(p1, 0),
+                new ScheduleRequest(p2, 0, new CauseAction(new UserIdCause())),
+                new ScheduleRequest(p2, 0, new CauseAction(new UserIdCause()))));
+        assertEquals(3, results.size());
+        assertFalse(results.get(0).isCreated());
+        assertSame(existing, results.get(0).getItem());
+        // the shorter quiet period wins, as with schedule2
+        assertThat(existing.timestamp.getTimeInMillis(), lessThan(System.currentTimeMillis() + 50_000));
+        assertTrue(results.get(1).isCreated());
+        // deduplicated against the item created for the first occurrence
+        assertFalse(results.get(2).isCreated());
+        assertSame(results.get(1).getItem(), results.get(2).getItem());
+        assertEquals(2, results.get(1).getItem().getAction(CauseAction.class).getCauseCounts().get(new UserIdCause()));
+        assertEquals(2, q.getItems().length);
+        q.clear();
+    }
+
+    @Test
+    public void duplicateDetectionFollowsItemsAcrossStates() throws Exception {
+        Queue q = r.jenkins.getQueue();
+        r.jenkins.setNumExecutors(0);
+        FreeStyleProject p = r.createFreeStyleProject();
+
+        Queue.Item waiting = q.schedule2(p, 0).getItem();
+        assertThat(waiting, instanceOf(WaitingItem.class));
+        q.maintain();
+        Queue.Item buildable = q.getItem(p);
+        assertThat(buildable, instanceOf(Queue.BuildableItem.class));
+        assertEquals(waiting.getId(), buildable.getId());
+
+        ScheduleResult again = q.schedule2(p, 0);
+        assertFalse(again.isCreated());
+        assertSame(buildable, again.getItem());
+
+        assertTrue(q.cancel(p));
+        assertFalse(q.contains(p));
+        assertTrue(q.schedule2(p, 0).isCreated());
+        q.clear();
+    }
+
+    @Test
+    public void wakesUpWhenQuietPeriodExpires() throws Exception {
+        Queue q = r.jenkins.getQueue();
+        FreeStyleProject p = r.createFreeStyleProject();
+
+        WaitingItem late = (WaitingItem) q.schedule2(p, 1000).getItem();
+        assertEquals(late.timestamp.getTimeInMillis(), q.getNextWakeUp());
+        // a shorter quiet period moves the wake-up earlier
+        WaitingItem early = (WaitingItem) q.schedule2(p, 1).getItem();
+        assertSame(late, early);
+        assertEquals(early.timestamp.getTimeInMillis(), q.getNextWakeUp());
+        // promoted on expiry rather than by the next periodic pass
+        early.getFuture().get(4, TimeUnit.SECONDS);
+        assertEquals(1, p.getBuilds().size());
+    }
+
+    @Test
+    public void parallelBlockageEvaluation() throws Exception {
+        Queue.PARALLEL_BLOCKAGE_EVALUATION = true;
+        try {
+            Queue q = r.jenkins.getQueue();
+            FreeStyleProject a = r.createFreeStyleProject(BlockingQueueTaskDispatcher.NAME_OF_BLOCKED_PROJECT);
+            FreeStyleProject b = r.createFreeStyleProject();
+            b.setDisplayName(BlockingQueueTaskDispatcher.NAME_OF_BLOCKED_PROJECT);
+            FreeStyleProject c = r.createFreeStyleProject();
+
+            a.scheduleBuild2(0);
+            b.scheduleBuild2(0);
+            waitUntilWaitingListIsEmpty(q);
+            // evaluated together now that both are blocked
+            q.scheduleMaintenance().get();
+            assertEquals(2, q.getBlockedItems().size());
+            for (Queue.Item i : q.getBlockedItems()) {
+                assertEquals(BlockingQueueTaskDispatcher.NAME_OF_BLOCKED_PROJECT + " is permanently blocked.", i.getWhy());
+            }
+            r.assertBuildStatusSuccess(c.scheduleBuild2(0));
+
+            boolean timed = false;
+            for (QueueTaskDispatcherTimings.Timing t : q.getDispatcherTimings().getTimings()) {
+                if (t.getName().equals(BlockingQueueTaskDispatcher.class.getName() + "#canRun")) {
+                    timed = t.getCount() > 0;
+                }
+            }
+            assertTrue(timed);
+
+            q.clear();
+            r.waitUntilNoActivity();
+        } finally {
+            Queue.PARALLEL_BLOCKAGE_EVALUATION = false;
+        }
+    }
+
+    @Test
+    public void parallelBlockageEvaluationWithLockHeld() throws Exception {
+        Queue.PARALLEL_BLOCKAGE_EVALUATION = true;
+        try {
+            Queue q = r.jenkins.getQueue();
+            FreeStyleProject a = r.createFreeStyleProject(LockingQueueTaskDispatcher.NAME_OF_BLOCKED_PROJECT);
+            FreeStyleProject b = r.createFreeStyleProject();
+            b.setDisplayName(LockingQueueTaskDispatcher.NAME_OF_BLOCKED_PROJECT);
+            a.scheduleBuild2(0);
+            b.scheduleBuild2(0);
+            waitUntilWaitingListIsEmpty(q);
+            q.scheduleMaintenance().get();
+            assertEquals(2, q.getBlockedItems().size());
+
+            // evaluated serially, as the dispatcher could not get the lock from another thread
+            assertTimeoutPreemptively(Duration.ofSeconds(30), () -> Queue.withLock(q::maintain));
+            assertEquals(2, q.getBlockedItems().size());
+
+            q.clear();
+        } finally {
+            Queue.PARALLEL_BLOCKAGE_EVALUATION = false;
+        }
+    }
+
+    @TestExtension("parallelBlockageEvaluationWithLockHeld")
+    public static class LockingQueueTaskDispatcher extends QueueTaskDispatcher {
+
+        public static final String NAME_OF_BLOCKED_PROJECT = "locking project";
+
+        @Override
+        public CauseOfBlockage canRun(Queue.Item item) {
+            if (item.task.getOwnerTask().getDisplayName().equals(NAME_OF_BLOCKED_PROJECT)) {
+                // like dispatchers looking at the queue through its helpers
+                Queue.withLock(() -> {});
+                return CauseOfBlockage.fromMessage(Messages._Queue_Unknown());
+            }
+            return null;
+        }
+    }
+
+    @Test
+    public void maintenanceMetrics() throws Exception {
+        Queue q = r.jenkins.getQueue();
+        q.getMetrics().reset();
+        q.maintain();
+        JSONObject json = r.getJSON("queue/metrics/api/json").getJSONObject();
+        assertTrue(json.getBoolean("enabled"));
+        assertThat(json.getLong("fullPasses"), greaterThan(0L));
+        JSONObject maintain = json.getJSONArray("phases").getJSONObject(0);
+        assertEquals("maintain", maintain.getString("name"));
+        assertThat(maintain.getLong("count"), greaterThan(0L));
+
+        QueueMaintenanceMetrics.ENABLED = false;
+        try {
+            q.getMetrics().reset();
+            q.maintain();
+            assertEquals(0, q.getMetrics().getHistogram(QueueMaintenanceMetrics.Phase.MAINTAIN).getCount());
+            assertEquals(0, q.getMetrics().getFullPasses());
+        } finally {
+            QueueMaintenanceMetrics.ENABLED = true;
+        }
+    }
+
     private String buildAndExtractTooltipAttribute() throws Exception {
         JenkinsRule.WebClient wc = r.createWebClient();
 
@@ -0,0 +1,50 @@
+package hudson.model;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import hudson.Launcher;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.junit.Rule;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.TestBuilder;
+
+public class RunSaveCoalescerTest {
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @Test
+    public void coalesceWhileBuilding() throws Exception {
+        RunSaveCoalescer.INTERVAL = 60_000;
+        try {
+            FreeStyleProject p = j.createFreeStyleProject();
+            p.getBuildersList().add(new TestBuilder() {
+                @Override
+                public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener) throws Exception {
+                    File xml = new File(build.getRootDir(), "build.xml");
+                    build.setDescription("first");
+                    build.setDescription("second");
+                    build.setDescription("third");
+                    assertThat(Files.readString(xml.toPath(), StandardCharsets.UTF_8), not(containsString("third")));
+                    assertEquals(1, RunSaveCoalescer.getPendingCount());
+                    RunSaveCoalescer.flushAll();
+                    assertThat(Files.readString(xml.toPath(), StandardCharsets.UTF_8), containsString("third"));
+                    build.setDescription("last");
+                    return true;
+                }
+            });
+            FreeStyleBuild b = j.buildAndAssertSuccess(p);
+            assertEquals(0, RunSaveCoalescer.getPendingCount());
+            assertEquals(1, RunSaveCoalescer.getCoalescedCount());
+            assertThat(Files.readString(new File(b.getRootDir(), "build.xml").toPath(), StandardCharsets.UTF_8), containsString("last"));
+        } finally {
+            RunSaveCoalescer.INTERVAL = 0;
+        }
+    }
+}
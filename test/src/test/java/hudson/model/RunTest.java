@@ -37,6 +37,7 @@ import hudson.ExtensionList;
 import hudson.FilePath;
 import hudson.Launcher;
 import hudson.XmlFile;
+import hudson.console.HyperlinkNote;
 import hudson.model.listeners.SaveableListener;
 import hudson.tasks.ArtifactArchiver;
 import hudson.tasks.BuildTrigger;
@@ -44,6 +45,7 @@ import hudson.tasks.Builder;
 import hudson.tasks.Fingerprinter;
 import java.io.IOException;
 import java.net.HttpURLConnection;
+import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.Collection;
 import java.util.Collections;
@@ -57,6 +59,8 @@ import jenkins.model.ArtifactManagerFactoryDescriptor;
 import jenkins.model.Jenkins;
 import jenkins.util.VirtualFile;
 import org.htmlunit.ScriptResult;
+import org.htmlunit.WebRequest;
+import org.htmlunit.WebResponse;
 import org.htmlunit.html.HtmlPage;
 import org.junit.Rule;
 import org.junit.jupiter.api.Test;
@@ -65,6 +69,7 @@ import org.jvnet.hudson.test.Issue;
 import org.jvnet.hudson.test.JenkinsRule;
 import org.jvnet.hudson.test.SleepBuilder;
 import org.jvnet.hudson.test.SmokeTest;
+import org.jvnet.hudson.test.TestBuilder;
 import org.jvnet.hudson.test.TestExtension;
 import org.kohsuke.stapler.DataBoundConstructor;
 
@@ -142,6 +147,49 @@ public class RunTest  {
         b.delete(); // Works fine.
     }
 
+    @Test public void consoleTextRangesAndValidation() throws Exception {
+        var p = j.createFreeStyleProject();
+        p.getBuildersList().add(new TestBuilder() {
+            @Override
+            public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener) {
+                listener.getLogger().println("see " + HyperlinkNote.encodeTo("/", "this link") + " and " + HyperlinkNote.encodeTo("/", "that one"));
+                return true;
+            }
+        });
+        var b = j.buildAndAssertSuccess(p);
+        var wc = j.createWebClient().withThrowExceptionOnFailingStatusCode(false);
+        var url = new URL(j.getURL(), b.getUrl() + "consoleText");
+
+        WebResponse rsp = wc.getPage(new WebRequest(url)).getWebResponse();
+        assertEquals(HttpURLConnection.HTTP_OK, rsp.getStatusCode());
+        String text = rsp.getContentAsString(StandardCharsets.UTF_8);
+        assertThat(text, containsString("see this link and that one\n"));
+        assertThat(text, not(containsString("ha:")));
+        assertEquals("bytes", rsp.getResponseHeaderValue("Accept-Ranges"));
+        String etag = rsp.getResponseHeaderValue("ETag");
+        assertNotNull(etag);
+
+        var req = new WebRequest(url);
+        req.setAdditionalHeader("If-None-Match", etag);
+        assertEquals(HttpURLConnection.HTTP_NOT_MODIFIED, wc.getPage(req).getWebResponse().getStatusCode());
+
+        int start = text.indexOf("this link");
+        req = new WebRequest(url);
+        req.setAdditionalHeader("Range", "bytes=" + start + "-" + (start + "this link and that one".length() - 1));
+        rsp = wc.getPage(req).getWebResponse();
+        assertEquals(HttpURLConnection.HTTP_PARTIAL, rsp.getStatusCode());
+        assertEquals("this link and that one", rsp.getContentAsString(StandardCharsets.UTF_8));
+        assertEquals("bytes " + start + "-" + (start + 21) + "/" + text.length(), rsp.getResponseHeaderValue("Content-Range"));
+
+        req = new WebRequest(url);
+        req.setAdditionalHeader("Range", "bytes=-8");
+        assertEquals(text.substring(text.length() - 8), wc.getPage(req).getWebResponse().getContentAsString(StandardCharsets.UTF_8));
+
+        req = new WebRequest(url);
+        req.setAdditionalHeader("Range", "bytes=" + text.length() + "-");
+        assertEquals(416, wc.getPage(req).getWebResponse().getStatusCode());
+    }
+
     @Issue("SECURITY-1902")
     @Test public void preventXssInBadgeTooltip() throws Exception {
         j.jenkins.setQuietPeriod(0);
@@ -0,0 +1,89 @@
+package hudson.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import hudson.model.FreeStyleProject;
+import hudson.model.Result;
+import hudson.model.Run;
+import hudson.model.View;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.FailureBuilder;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.RunLoadCounter;
+
+public class MergedRunsTest {
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void onlyLoadsReturnedRuns() throws Exception {
+        FreeStyleProject older = j.createFreeStyleProject("older");
+        FreeStyleProject newer = j.createFreeStyleProject("newer");
+        for (int i = 0; i < 5; i++) {
+            j.buildAndAssertSuccess(older);
+        }
+        for (int i = 0; i < 4; i++) {
+            j.buildAndAssertSuccess(newer);
+        }
+        newer.getBuildersList().add(new FailureBuilder());
+        j.buildAndAssertStatus(Result.FAILURE, newer);
+        older._getRuns().purgeCache();
+        newer._getRuns().purgeCache();
+
+        List<FreeStyleProject> jobs = List.of(older, newer);
+        assertEquals(List.of("newer#5", "newer#4", "newer#3"),
+                RunLoadCounter.assertMaxLoads(older, 0, () -> ids(RunList.fromJobs(jobs).limit(3))));
+        assertEquals(List.of("newer#2", "newer#1", "older#5"),
+                RunLoadCounter.assertMaxLoads(older, 1, () -> ids(RunList.fromJobs(jobs).after("newer#3").limit(3))));
+        assertEquals(List.of("newer#5"), RunLoadCounter.assertMaxLoads(older, 0, () -> ids(RunList.fromJobs(jobs).failureOnly())));
+        assertEquals(10, RunLoadCounter.assertMaxLoads(newer, 0, () -> RunList.fromJobs(jobs).size()).intValue());
+        assertEquals("older#2", RunLoadCounter.assertMaxLoads(older, 1, () -> RunList.fromJobs(jobs).get(8).getExternalizableId()));
+        assertEquals(List.of("older#3", "older#2"), ids(RunList.fromJobs(jobs).subList(7, 9)));
+    }
+
+    @Test
+    public void filtersApplyAfterLimit() throws Exception {
+        FreeStyleProject older = j.createFreeStyleProject("older");
+        FreeStyleProject newer = j.createFreeStyleProject("newer");
+        older.getBuildersList().add(new FailureBuilder());
+        j.buildAndAssertStatus(Result.FAILURE, older);
+        for (int i = 0; i < 3; i++) {
+            j.buildAndAssertSuccess(newer);
+        }
+
+        List<FreeStyleProject> jobs = List.of(older, newer);
+        assertEquals(List.of(), ids(RunList.fromJobs(jobs).limit(2).failureOnly()));
+        assertEquals(List.of("older#1"), ids(RunList.fromJobs(jobs).failureOnly().limit(2)));
+        assertEquals(List.of("newer#2"), ids(RunList.fromJobs(jobs).limit(2).after("newer#3")));
+        assertEquals(List.of("newer#2", "newer#1"), ids(RunList.fromJobs(jobs).after("newer#3").limit(2)));
+    }
+
+    @Test
+    public void pagesFollowDeletedBuilds() throws Exception {
+        FreeStyleProject older = j.createFreeStyleProject("older");
+        FreeStyleProject newer = j.createFreeStyleProject("newer");
+        j.buildAndAssertSuccess(older);
+        for (int i = 0; i < 3; i++) {
+            j.buildAndAssertSuccess(newer);
+        }
+
+        View view = j.jenkins.getPrimaryView();
+        View.BuildsPage page = view.getBuildsPage(null, "2");
+        assertEquals(List.of("newer#3", "newer#2"), ids(page.builds()));
+        newer.getBuildByNumber(2).delete();
+        assertEquals(List.of("newer#1", "older#1"), ids(view.getBuildsPage(page.next(), "2").builds()));
+    }
+
+    private static List<String> ids(Iterable<? extends Run> builds) {
+        List<String> ids = new ArrayList<>();
+        for (Run<?, ?> b : builds) {
+            ids.add(b.getExternalizableId());
+        }
+        return ids;
+    }
+}
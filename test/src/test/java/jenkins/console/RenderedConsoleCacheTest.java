@@ -0,0 +1,87 @@
+package jenkins.console;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import hudson.Launcher;
+import hudson.console.ConsoleAnnotator;
+import hudson.console.ConsoleAnnotatorFactory;
+import hudson.console.HyperlinkNote;
+import hudson.model.AbstractBuild;
+import hudson.model.BuildListener;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import org.junit.Rule;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.TestBuilder;
+
+public class RenderedConsoleCacheTest {
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @BeforeEach
+    public void enable() {
+        RenderedConsoleCache.ENABLED = true;
+    }
+
+    @AfterEach
+    public void disable() {
+        RenderedConsoleCache.ENABLED = false;
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void cachesCompletedBuilds() throws Exception {
+        FreeStyleProject p = j.createFreeStyleProject();
+        p.getBuildersList().add(new TestBuilder() {
+            @Override
+            public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener) {
+                listener.getLogger().println("see " + HyperlinkNote.encodeTo("/target", "this link"));
+                return true;
+            }
+        });
+        FreeStyleBuild b1 = j.buildAndAssertSuccess(p);
+        FreeStyleBuild b2 = j.buildAndAssertSuccess(p);
+        RenderedConsoleCache cache = RenderedConsoleCache.get();
+        JenkinsRule.WebClient wc = j.createWebClient();
+
+        String rendered = console(wc, b1);
+        assertThat(rendered, containsString("/target"));
+        assertEquals(0, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(rendered, console(wc, b1));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getSize());
+
+        // too small for both logs
+        cache.budget = cache.getUsedBytes() * 3 / 2;
+        console(wc, b2);
+        assertEquals(1, cache.getSize());
+        assertEquals(1, cache.getEvictions());
+        console(wc, b1);
+        assertEquals(1, cache.getHits());
+
+        ConsoleAnnotatorFactory.all().add(new NoAnnotatorFactory());
+        console(wc, b1);
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getSize());
+        console(wc, b1);
+        assertEquals(2, cache.getHits());
+    }
+
+    private static String console(JenkinsRule.WebClient wc, FreeStyleBuild b) throws Exception {
+        return wc.getPage(b, "console").getElementById("out").asXml();
+    }
+
+    private static final class NoAnnotatorFactory extends ConsoleAnnotatorFactory<Object> {
+        @Override
+        public ConsoleAnnotator<Object> newInstance(Object context) {
+            return null;
+        }
+    }
+}
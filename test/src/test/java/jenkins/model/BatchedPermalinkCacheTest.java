@@ -0,0 +1,72 @@
+package jenkins.model;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import hudson.model.FreeStyleProject;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import jenkins.model.PeepholePermalink.Cache;
+import org.junit.Rule;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+public class BatchedPermalinkCacheTest {
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @Test
+    public void journalUntilCheckpoint() throws Exception {
+        FreeStyleProject p = j.createFreeStyleProject();
+        j.buildAndAssertSuccess(p);
+        File journal = new File(j.jenkins.getRootDir(), "test-" + BatchedPermalinkCache.JOURNAL);
+        File storage = PeepholePermalink.DefaultCache.storageFor(p.getBuildDir());
+
+        BatchedPermalinkCache cache = new BatchedPermalinkCache(journal, true);
+        assertEquals(new Cache.Some(1), cache.get(p, "lastSuccessfulBuild"));
+        cache.put(p, "lastFailedBuild", Cache.NONE);
+        cache.put(p, "lastUnstableBuild", Cache.NONE);
+        assertEquals(Cache.NONE, cache.get(p, "lastFailedBuild"));
+        assertEquals(2, Files.readAllLines(journal.toPath(), StandardCharsets.UTF_8).size());
+        assertThat(Files.readString(storage.toPath(), StandardCharsets.UTF_8), not(containsString("lastUnstableBuild")));
+
+        // as if Jenkins had crashed
+        BatchedPermalinkCache recovered = new BatchedPermalinkCache(journal, true);
+        assertEquals(Cache.NONE, recovered.get(p, "lastUnstableBuild"));
+        assertFalse(journal.exists());
+        assertThat(Files.readString(storage.toPath(), StandardCharsets.UTF_8), containsString("lastUnstableBuild -1"));
+
+        recovered.put(p, "lastUnstableBuild", new Cache.Some(1));
+        assertTrue(journal.exists());
+        recovered.checkpoint();
+        assertFalse(journal.exists());
+        assertThat(Files.readString(storage.toPath(), StandardCharsets.UTF_8), containsString("lastUnstableBuild 1"));
+    }
+
+    @Test
+    public void readsAloneDoNotGrowTheCache() throws Exception {
+        File journal = new File(j.jenkins.getRootDir(), "test-" + BatchedPermalinkCache.JOURNAL);
+        BatchedPermalinkCache cache = new BatchedPermalinkCache(journal, true, 3);
+        List<FreeStyleProject> projects = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            FreeStyleProject p = j.createFreeStyleProject();
+            j.buildAndAssertSuccess(p);
+            projects.add(p);
+        }
+        for (FreeStyleProject p : projects) {
+            assertEquals(new Cache.Some(1), cache.get(p, "lastSuccessfulBuild"));
+            assertTrue(cache.size() <= 3);
+        }
+        // evicted permalinks are read again
+        assertEquals(new Cache.Some(1), cache.get(projects.get(0), "lastSuccessfulBuild"));
+        assertFalse(journal.exists());
+    }
+}
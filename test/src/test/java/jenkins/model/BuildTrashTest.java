@@ -0,0 +1,67 @@
+package jenkins.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import hudson.ExtensionList;
+import hudson.model.FreeStyleProject;
+import hudson.model.TaskListener;
+import hudson.tasks.LogRotator;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+public class BuildTrashTest {
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @Test
+    public void discardWithoutLoadingKeptBuilds() throws Exception {
+        FreeStyleProject p = j.createFreeStyleProject();
+        for (int i = 0; i < 5; i++) {
+            j.buildAndAssertSuccess(p);
+        }
+        p._getRuns().purgeCache();
+
+        new LogRotator(-1, 2, -1, -1).perform(p);
+        // only the last successful build was loaded, to be kept
+        assertEquals("[5]", p._getRuns().getLoadedBuilds().keySet().toString());
+
+        assertTrue(BuildTrash.awaitIdle(1, TimeUnit.MINUTES));
+        assertTrue(new File(p.getBuildDir(), "4").isDirectory());
+        for (int n = 1; n <= 3; n++) {
+            assertFalse(new File(p.getBuildDir(), Integer.toString(n)).exists());
+            assertFalse(new File(p.getBuildDir(), "." + n).exists());
+        }
+    }
+
+    @Test
+    public void reclaimLeftovers() throws Exception {
+        FreeStyleProject p = j.createFreeStyleProject();
+        j.buildAndAssertSuccess(p);
+        File leftover = new File(p.getBuildDir(), ".7");
+        Files.createDirectories(leftover.toPath().resolve("archive"));
+        Files.writeString(leftover.toPath().resolve("build.xml"), "<build/>");
+
+        p._getRuns().purgeCache();
+        assertTrue(BuildTrash.awaitIdle(1, TimeUnit.MINUTES));
+        assertFalse(leftover.exists());
+    }
+
+    @Test
+    public void reclaimLeftoversPeriodically() throws Exception {
+        FreeStyleProject p = j.createFreeStyleProject();
+        j.buildAndAssertSuccess(p);
+        File leftover = new File(p.getBuildDir(), ".8");
+        Files.createDirectories(leftover.toPath());
+
+        ExtensionList.lookupSingleton(BackgroundGlobalBuildDiscarder.class).execute(TaskListener.NULL);
+        assertTrue(BuildTrash.awaitIdle(1, TimeUnit.MINUTES));
+        assertFalse(leftover.exists());
+    }
+}
@@ -0,0 +1,143 @@
+package jenkins.model.lazy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.Result;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.FailureBuilder;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.RunLoadCounter;
+
+public class BuildSummaryIndexTest {
+
+    @Rule public JenkinsRule r = new JenkinsRule();
+
+    @Test
+    public void historyQueriesOnlyLoadMatchingBuilds() throws Exception {
+        FreeStyleProject p = r.createFreeStyleProject();
+        for (int i = 0; i < 5; i++) {
+            r.buildAndAssertSuccess(p);
+        }
+        p.getBuildersList().add(new FailureBuilder());
+        FreeStyleBuild failed = r.buildAndAssertStatus(Result.FAILURE, p);
+        p.getBuildersList().clear();
+        for (int i = 0; i < 5; i++) {
+            r.buildAndAssertSuccess(p);
+        }
+        assertTrue(new File(p.getBuildDir(), BuildSummaryIndex.FILE_NAME).isFile());
+
+        assertEquals(6, RunLoadCounter.assertMaxLoads(p, 1, () -> p.getBuilds().failureOnly().getLastBuild().getNumber()).intValue());
+        long start = p.getBuildByNumber(3).getTimeInMillis();
+        long end = p.getBuildByNumber(5).getTimeInMillis();
+        assertEquals(List.of(4, 3), RunLoadCounter.assertMaxLoads(p, 2, () -> numbers(p.getBuilds().byTimestamp(start, end))));
+        // counting only loads the oldest build, as getFirstBuild may be called next
+        assertEquals(10, RunLoadCounter.assertMaxLoads(p, 1, () -> p.getBuilds().completedOnly().overThresholdOnly(Result.SUCCESS).size()).intValue());
+        assertTrue(RunLoadCounter.assertMaxLoads(p, 0, p::getEstimatedDuration) >= 0);
+
+        failed.delete();
+        assertFalse(p.getBuilds().failureOnly().iterator().hasNext());
+        p._getRuns().purgeCache();
+        assertFalse(p.getBuilds().failureOnly().iterator().hasNext());
+    }
+
+    @Test
+    public void summariesFollowBuildChanges() throws Exception {
+        FreeStyleProject p = r.createFreeStyleProject();
+        FreeStyleBuild b = r.buildAndAssertSuccess(p);
+        b.setDisplayName("first build");
+        File file = new File(p.getBuildDir(), BuildSummaryIndex.FILE_NAME);
+        long size = file.length();
+        b.save();
+        b.save();
+        assertEquals(size, file.length(), "saving an unchanged build does not add to the index");
+
+        // a fresh index reads back what was recorded
+        BuildSummaryIndex index = new BuildSummaryIndex(p._getRuns());
+        p._getRuns().purgeCache();
+        BuildSummary s = index.newestFirst(false).iterator().next();
+        assertEquals(1, s.getNumber());
+        assertEquals("1", s.getId());
+        assertEquals("first build", s.getDisplayName());
+        assertEquals(Result.SUCCESS, s.getResult());
+        assertFalse(s.isBuilding());
+        assertEquals(b.getTimeInMillis(), s.getTimeInMillis());
+        assertEquals(b.getDuration(), s.getDuration());
+        assertEquals(s, BuildSummary.fromLine(s.toLine()));
+        BuildSummary blank = new BuildSummary(2, "2", 0, 0, 0, null, true, "");
+        assertEquals(blank, BuildSummary.fromLine(blank.toLine()));
+    }
+
+    @Test
+    public void statisticsDoNotLoadBuilds() throws Exception {
+        FreeStyleProject p = r.createFreeStyleProject();
+        for (int i = 0; i < 3; i++) {
+            r.buildAndAssertSuccess(p);
+        }
+        p.getBuildersList().add(new FailureBuilder());
+        FreeStyleBuild failed = r.buildAndAssertStatus(Result.FAILURE, p);
+        p.getBuildersList().clear();
+        r.buildAndAssertSuccess(p);
+        // the last successful build, then the next two successful ones within the last six builds
+        long estimate = Math.round((p.getBuildByNumber(5).getDuration() + p.getBuildByNumber(3).getDuration() + p.getBuildByNumber(2).getDuration()) / 3.0);
+
+        p._getRuns().purgeCache();
+        BuildStatistics stats = p.getBuildSummaryIndex().getStatistics();
+        assertEquals(new BuildStatistics.Stability(5, 1), RunLoadCounter.assertMaxLoads(p, 0, () -> stats.getStability(5)));
+        assertNull(stats.getStability(6));
+        double successRate = RunLoadCounter.assertMaxLoads(p, 0, stats::getSuccessRate);
+        assertEquals(0.8, successRate, 0.001);
+        assertTrue(RunLoadCounter.assertMaxLoads(p, 0, () -> stats.getDurationPercentile(50)) >= 0);
+        assertTrue(RunLoadCounter.assertMaxLoads(p, 0, stats::getSmoothedDuration) >= 0);
+        assertTrue(RunLoadCounter.assertMaxLoads(p, 0, p::getEstimatedDuration) >= 0);
+        assertEquals(estimate, RunLoadCounter.assertMaxLoads(p, 0, stats::getEstimatedDuration).longValue());
+
+        // completed and deleted builds are taken into account
+        r.buildAndAssertSuccess(p);
+        assertEquals(new BuildStatistics.Stability(6, 1), stats.getStability(6));
+        failed.delete();
+        assertEquals(new BuildStatistics.Stability(5, 0), stats.getStability(5));
+        assertEquals(1.0, stats.getSuccessRate(), 0.001);
+    }
+
+    @Test
+    public void statisticsIncludeBuildsRecordedLater() throws Exception {
+        FreeStyleProject p = r.createFreeStyleProject();
+        BuildSummaryIndex.ENABLED = false;
+        try {
+            for (int i = 0; i < 8; i++) {
+                r.buildAndAssertSuccess(p);
+            }
+        } finally {
+            BuildSummaryIndex.ENABLED = true;
+        }
+        assertFalse(new File(p.getBuildDir(), BuildSummaryIndex.FILE_NAME).exists());
+
+        // the last builds are recorded as needed for the estimate
+        p._getRuns().purgeCache();
+        BuildStatistics stats = p.getBuildSummaryIndex().getStatistics();
+        assertEquals(new BuildStatistics.Stability(BuildStatistics.ESTIMATE_WINDOW, 0), stats.getStability(BuildStatistics.ESTIMATE_WINDOW));
+        assertNull(stats.getStability(8));
+        assertTrue(stats.getEstimatedDuration() >= 0);
+
+        // and older ones once they get recorded too
+        p.getBuildSummaryIndex().newestFirst(true).forEach(s -> {});
+        assertEquals(new BuildStatistics.Stability(8, 0), stats.getStability(8));
+    }
+
+    private static List<Integer> numbers(Iterable<FreeStyleBuild> builds) {
+        List<Integer> numbers = new ArrayList<>();
+        for (FreeStyleBuild b : builds) {
+            numbers.add(b.getNumber());
+        }
+        return numbers;
+    }
+}
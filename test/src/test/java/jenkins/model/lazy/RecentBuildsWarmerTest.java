@@ -0,0 +1,32 @@
+package jenkins.model.lazy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import hudson.model.FreeStyleProject;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+public class RecentBuildsWarmerTest {
+
+    @Rule public JenkinsRule r = new JenkinsRule();
+
+    @Test
+    public void loadsNewestBuildsOfMostRecentJobs() throws Exception {
+        FreeStyleProject idle = r.createFreeStyleProject("idle");
+        FreeStyleProject active = r.createFreeStyleProject("active");
+        for (int i = 0; i < 3; i++) {
+            r.buildAndAssertSuccess(idle);
+            r.buildAndAssertSuccess(active);
+        }
+        assertTrue(idle.getBuildDir().setLastModified(System.currentTimeMillis() - 60_000));
+        idle._getRuns().purgeCache();
+        active._getRuns().purgeCache();
+
+        assertTrue(RecentBuildsWarmer.warmUp(2, 1).awaitTermination(1, TimeUnit.MINUTES));
+        assertEquals("[3, 2]", active._getRuns().getLoadedBuilds().keySet().toString());
+        assertEquals("[]", idle._getRuns().getLoadedBuilds().keySet().toString());
+    }
+}